@@ -24,6 +24,10 @@ public enum ErrorCode {
     FAILED_ADDING_COMMAND(40),
 
 
+    UNKNOWN_SCOPE(50),
+    UNKNOWN_VARIABLE(51),
+
+
     INVALID_REQUEST(80),
     INVALID_SOURCE_CODE(81),
     UNKNOWN_USER(82),
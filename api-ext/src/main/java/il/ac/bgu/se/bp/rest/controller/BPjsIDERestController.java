@@ -4,8 +4,13 @@ import il.ac.bgu.se.bp.rest.request.*;
 import il.ac.bgu.se.bp.rest.response.BooleanResponse;
 import il.ac.bgu.se.bp.rest.response.DebugResponse;
 import il.ac.bgu.se.bp.rest.response.EventsHistoryResponse;
+import il.ac.bgu.se.bp.rest.response.ScopeVariableResponse;
 import il.ac.bgu.se.bp.rest.response.SyncSnapshot;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.security.Principal;
 
 public interface BPjsIDERestController {
@@ -14,6 +19,7 @@ public interface BPjsIDERestController {
 
     BooleanResponse run(String userId, RunRequest code);
     DebugResponse debug(String userId, DebugRequest code);
+    DebugResponse replay(String userId, ReplayRequest replayRequest);
 
     BooleanResponse setBreakpoint(String userId, SetBreakpointRequest setBreakpointRequest);
     BooleanResponse toggleMuteBreakpoints(String userId, ToggleBreakpointsRequest toggleBreakpointsRequest);
@@ -31,7 +37,19 @@ public interface BPjsIDERestController {
     BooleanResponse externalEvent(String userId, ExternalEventRequest externalEventRequest);
     EventsHistoryResponse getEventsHistory(String userId, int from, int to);
 
+    ScopeVariableResponse getBThreadVariable(String userId, String bThreadName, int frame, String path, int from, int to);
+    ScopeVariableResponse getGlobalVariable(String userId, String path, int from, int to);
+    ResponseEntity<StreamingResponseBody> getConsoleLog(String userId);
+
     BooleanResponse setSyncSnapshot(String userId, SetSyncSnapshotRequest setSyncSnapshotRequest);
     SyncSnapshot exportSyncSnapshot(String userId);
     BooleanResponse importSyncSnapshot(String userId, ImportSyncSnapshotRequest importSyncSnapshotRequest);
+    ResponseEntity<StreamingResponseBody> exportBinarySyncSnapshot(String userId);
+    BooleanResponse importBinarySyncSnapshot(String userId, ImportSyncSnapshotRequest importSyncSnapshotRequest,
+                                             MultipartFile syncSnapshot) throws IOException;
+    ResponseEntity<StreamingResponseBody> exportSessionArchive(String userId);
+    DebugResponse importSessionArchive(String userId, MultipartFile sessionArchive) throws IOException;
+
+    BooleanResponse toggleStateDelta(String userId, ToggleStateDeltaRequest toggleStateDeltaRequest);
+    BooleanResponse resyncState(String userId);
 }
@@ -0,0 +1,65 @@
+package il.ac.bgu.se.bp.rest.request;
+
+import il.ac.bgu.se.bp.socket.state.EventInfo;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+
+public class ReplayRequest extends DebugRequest {
+    private static final long serialVersionUID = -2364906471783316482L;
+
+    private List<EventInfo> events = new LinkedList<>();
+    private Integer targetIndex;
+
+    public ReplayRequest() {
+    }
+
+    public ReplayRequest(String code, List<EventInfo> events, Integer targetIndex) {
+        super(code);
+        this.events = events;
+        this.targetIndex = targetIndex;
+    }
+
+    public List<EventInfo> getEvents() {
+        return events;
+    }
+
+    public void setEvents(List<EventInfo> events) {
+        this.events = events;
+    }
+
+    public Integer getTargetIndex() {
+        return targetIndex;
+    }
+
+    public void setTargetIndex(Integer targetIndex) {
+        this.targetIndex = targetIndex;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        if (!super.equals(o)) return false;
+        ReplayRequest that = (ReplayRequest) o;
+        return Objects.equals(events, that.events) && Objects.equals(targetIndex, that.targetIndex);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), events, targetIndex);
+    }
+
+    @Override
+    public String toString() {
+        return "ReplayRequest{" +
+                "events=" + events +
+                ", targetIndex=" + targetIndex +
+                ", breakpoints=" + getBreakpoints() +
+                ", skipBreakpointsToggle=" + isSkipBreakpointsToggle() +
+                ", skipSyncStateToggle=" + isSkipSyncStateToggle() +
+                ", sourceCode='" + sourceCode + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,50 @@
+package il.ac.bgu.se.bp.rest.request;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+public class ToggleStateDeltaRequest implements Serializable {
+
+    private static final long serialVersionUID = -1489093377208150266L;
+
+    private boolean stateDelta;
+
+    public ToggleStateDeltaRequest() {
+    }
+
+    public ToggleStateDeltaRequest(boolean stateDelta) {
+        this.stateDelta = stateDelta;
+    }
+
+    public boolean isStateDelta() {
+        return stateDelta;
+    }
+
+    public void setStateDelta(boolean stateDelta) {
+        this.stateDelta = stateDelta;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ToggleStateDeltaRequest that = (ToggleStateDeltaRequest) o;
+        return stateDelta == that.stateDelta;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(stateDelta);
+    }
+
+    @Override
+    public String toString() {
+        return "ToggleStateDeltaRequest{" +
+                "stateDelta=" + stateDelta +
+                '}';
+    }
+}
@@ -0,0 +1,94 @@
+package il.ac.bgu.se.bp.rest.response;
+
+import il.ac.bgu.se.bp.error.ErrorCode;
+
+import java.util.Map;
+import java.util.Objects;
+
+public class ScopeVariableResponse extends BooleanResponse {
+
+    private String path;
+    private String value;
+    private int size;
+    private Map<String, String> children;
+
+    public ScopeVariableResponse() {
+    }
+
+    public ScopeVariableResponse(ErrorCode errorCode) {
+        super(false, errorCode);
+    }
+
+    public ScopeVariableResponse(String path, String value, int size, Map<String, String> children) {
+        super(true);
+        this.path = path;
+        this.value = value;
+        this.size = size;
+        this.children = children;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    /**
+     * @return summary of the variable, as in the debugger state
+     */
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    /**
+     * @return number of the variable's elements/properties, not only of the requested page
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    /**
+     * @return summaries of the requested page of the variable's elements/properties, by index/name
+     */
+    public Map<String, String> getChildren() {
+        return children;
+    }
+
+    public void setChildren(Map<String, String> children) {
+        this.children = children;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        if (!super.equals(o)) return false;
+        ScopeVariableResponse that = (ScopeVariableResponse) o;
+        return size == that.size && Objects.equals(path, that.path) && Objects.equals(value, that.value) && Objects.equals(children, that.children);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), path, value, size, children);
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() +
+                ", path='" + path + '\'' +
+                ", value='" + value + '\'' +
+                ", size=" + size +
+                ", children=" + children +
+                '}';
+    }
+}
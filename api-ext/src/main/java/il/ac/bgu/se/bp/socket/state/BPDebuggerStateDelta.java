@@ -0,0 +1,220 @@
+package il.ac.bgu.se.bp.socket.state;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Changes between two consecutive {@link BPDebuggerState}s sent to the same user.
+ * A delta applies on top of the state with version {@code baseVersion}; when {@code fullState} is set it carries the
+ * whole state and replaces whatever the client holds.
+ * Fields that did not change are left {@code null}, changed b-threads carry only their changed scopes and variables.
+ */
+public class BPDebuggerStateDelta implements Serializable {
+    private static final long serialVersionUID = -3378431096577032412L;
+
+    public static final long NO_BASE_VERSION = -1;
+
+    private long version;
+    private long baseVersion = NO_BASE_VERSION;
+    private boolean fullState;
+
+    private List<BThreadInfo> bThreadInfoList = new ArrayList<>();
+    private Set<String> removedBThreads = new HashSet<>();
+    private Map<String, Set<Integer>> removedScopes = new HashMap<>();
+    private Map<String, Map<Integer, Set<String>>> removedVariables = new HashMap<>();
+
+    private EventsStatus eventsStatus;
+    private SortedMap<Long, EventInfo> eventsHistory;
+    private String currentRunningBT;
+    private Integer currentLineNumber;
+    private DebuggerConfigs debuggerConfigs;
+    private Boolean[] breakpoints;
+
+    private Map<String, String> globalEnv = new LinkedHashMap<>();
+    private Set<String> removedGlobals = new HashSet<>();
+
+    public BPDebuggerStateDelta() {
+    }
+
+    public BPDebuggerStateDelta(long version, long baseVersion, boolean fullState) {
+        this.version = version;
+        this.baseVersion = baseVersion;
+        this.fullState = fullState;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public void setBaseVersion(long baseVersion) {
+        this.baseVersion = baseVersion;
+    }
+
+    public boolean isFullState() {
+        return fullState;
+    }
+
+    public void setFullState(boolean fullState) {
+        this.fullState = fullState;
+    }
+
+    public List<BThreadInfo> getbThreadInfoList() {
+        return bThreadInfoList;
+    }
+
+    public void setbThreadInfoList(List<BThreadInfo> bThreadInfoList) {
+        this.bThreadInfoList = bThreadInfoList;
+    }
+
+    public Set<String> getRemovedBThreads() {
+        return removedBThreads;
+    }
+
+    public void setRemovedBThreads(Set<String> removedBThreads) {
+        this.removedBThreads = removedBThreads;
+    }
+
+    public Map<String, Set<Integer>> getRemovedScopes() {
+        return removedScopes;
+    }
+
+    public void setRemovedScopes(Map<String, Set<Integer>> removedScopes) {
+        this.removedScopes = removedScopes;
+    }
+
+    public Map<String, Map<Integer, Set<String>>> getRemovedVariables() {
+        return removedVariables;
+    }
+
+    public void setRemovedVariables(Map<String, Map<Integer, Set<String>>> removedVariables) {
+        this.removedVariables = removedVariables;
+    }
+
+    public EventsStatus getEventsStatus() {
+        return eventsStatus;
+    }
+
+    public void setEventsStatus(EventsStatus eventsStatus) {
+        this.eventsStatus = eventsStatus;
+    }
+
+    public SortedMap<Long, EventInfo> getEventsHistory() {
+        return eventsHistory;
+    }
+
+    public void setEventsHistory(SortedMap<Long, EventInfo> eventsHistory) {
+        this.eventsHistory = eventsHistory;
+    }
+
+    public String getCurrentRunningBT() {
+        return currentRunningBT;
+    }
+
+    public void setCurrentRunningBT(String currentRunningBT) {
+        this.currentRunningBT = currentRunningBT;
+    }
+
+    public Integer getCurrentLineNumber() {
+        return currentLineNumber;
+    }
+
+    public void setCurrentLineNumber(Integer currentLineNumber) {
+        this.currentLineNumber = currentLineNumber;
+    }
+
+    public DebuggerConfigs getDebuggerConfigs() {
+        return debuggerConfigs;
+    }
+
+    public void setDebuggerConfigs(DebuggerConfigs debuggerConfigs) {
+        this.debuggerConfigs = debuggerConfigs;
+    }
+
+    public Boolean[] getBreakpoints() {
+        return breakpoints;
+    }
+
+    public void setBreakpoints(Boolean[] breakpoints) {
+        this.breakpoints = breakpoints;
+    }
+
+    public Map<String, String> getGlobalEnv() {
+        return globalEnv;
+    }
+
+    public void setGlobalEnv(Map<String, String> globalEnv) {
+        this.globalEnv = globalEnv;
+    }
+
+    public Set<String> getRemovedGlobals() {
+        return removedGlobals;
+    }
+
+    public void setRemovedGlobals(Set<String> removedGlobals) {
+        this.removedGlobals = removedGlobals;
+    }
+
+    public boolean isEmpty() {
+        return bThreadInfoList.isEmpty() && removedBThreads.isEmpty() && removedScopes.isEmpty() && removedVariables.isEmpty() &&
+                eventsStatus == null && eventsHistory == null && debuggerConfigs == null && breakpoints == null &&
+                globalEnv.isEmpty() && removedGlobals.isEmpty();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        BPDebuggerStateDelta that = (BPDebuggerStateDelta) o;
+        return version == that.version &&
+                baseVersion == that.baseVersion &&
+                fullState == that.fullState &&
+                Objects.equals(bThreadInfoList, that.bThreadInfoList) &&
+                Objects.equals(removedBThreads, that.removedBThreads) &&
+                Objects.equals(removedScopes, that.removedScopes) &&
+                Objects.equals(removedVariables, that.removedVariables) &&
+                Objects.equals(eventsStatus, that.eventsStatus) &&
+                Objects.equals(eventsHistory, that.eventsHistory) &&
+                Objects.equals(currentRunningBT, that.currentRunningBT) &&
+                Objects.equals(currentLineNumber, that.currentLineNumber) &&
+                Objects.equals(debuggerConfigs, that.debuggerConfigs) &&
+                Arrays.equals(breakpoints, that.breakpoints) &&
+                Objects.equals(globalEnv, that.globalEnv) &&
+                Objects.equals(removedGlobals, that.removedGlobals);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(version, baseVersion, fullState);
+    }
+
+    @Override
+    public String toString() {
+        return "BPDebuggerStateDelta{" +
+                "version=" + version +
+                ", baseVersion=" + baseVersion +
+                ", fullState=" + fullState +
+                ", bThreadInfoList=" + bThreadInfoList +
+                ", removedBThreads=" + removedBThreads +
+                ", removedScopes=" + removedScopes +
+                ", removedVariables=" + removedVariables +
+                ", eventsStatus=" + eventsStatus +
+                ", eventsHistory=" + eventsHistory +
+                ", currentRunningBT='" + currentRunningBT + '\'' +
+                ", currentLineNumber=" + currentLineNumber +
+                ", globalEnv=" + globalEnv +
+                ", removedGlobals=" + removedGlobals +
+                '}';
+    }
+}
@@ -7,6 +7,7 @@ public class EventInfo implements Serializable {
     private static final long serialVersionUID = 983874658293202351L;
 
     private String name;
+    private String data;
 
     public EventInfo() {
     }
@@ -15,6 +16,11 @@ public class EventInfo implements Serializable {
         this.name = name;
     }
 
+    public EventInfo(String name, String data) {
+        this.name = name;
+        this.data = data;
+    }
+
     public String getName() {
         return name;
     }
@@ -23,21 +29,32 @@ public class EventInfo implements Serializable {
         this.name = name;
     }
 
+    /**
+     * @return the JSON of the event's data, or null if the event carries none (or it is not known)
+     */
+    public String getData() {
+        return data;
+    }
+
+    public void setData(String data) {
+        this.data = data;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         EventInfo eventInfo = (EventInfo) o;
-        return name.equals(eventInfo.name);
+        return name.equals(eventInfo.name) && Objects.equals(data, eventInfo.data);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(name);
+        return Objects.hash(name, data);
     }
 
     @Override
     public String toString() {
-        return name;
+        return data == null ? name : name + data;
     }
 }
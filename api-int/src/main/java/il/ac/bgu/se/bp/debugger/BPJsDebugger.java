@@ -2,11 +2,16 @@ package il.ac.bgu.se.bp.debugger;
 
 import il.ac.bgu.se.bp.rest.response.DebugResponse;
 import il.ac.bgu.se.bp.rest.response.GetSyncSnapshotsResponse;
+import il.ac.bgu.se.bp.rest.response.ScopeVariableResponse;
 import il.ac.bgu.se.bp.rest.response.SyncSnapshot;
 import il.ac.bgu.se.bp.socket.state.EventInfo;
 import il.ac.bgu.se.bp.utils.observer.BPEvent;
 import il.ac.bgu.se.bp.utils.observer.Publisher;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 
@@ -27,11 +32,43 @@ public interface BPJsDebugger<T> extends Debugger<T>, Publisher<BPEvent> {
 
     DebugResponse startSync(Map<Integer, Boolean> breakpointsMap, boolean isSkipSyncPoints, boolean isSkipBreakpoints, boolean isWaitForExternalEvents);
 
+    /**
+     * Like {@link #startSync}, but first fast-forwards the program through a recorded events trace: the first
+     * {@code targetIndex} events are selected one after the other, with breakpoints muted and without generating states
+     * or notifying on the sync points on the way. The debugger then stops on the sync point reached, or on the first one
+     * where the recorded event is not selectable, and is debugged as usual from there.
+     * A recorded event with data is only matched by an equal event (name and data), one without data by its name.
+     *
+     * @param events      the selected events, oldest first (the reverse of {@link #getEventsHistory})
+     * @param targetIndex number of events to replay, at most the size of the trace
+     */
+    DebugResponse replay(Map<Integer, Boolean> breakpointsMap, boolean isSkipSyncPoints, boolean isSkipBreakpoints, boolean isWaitForExternalEvents,
+                         List<EventInfo> events, int targetIndex);
+
     T nextSync();
     T toggleMuteSyncPoints(boolean toggleMuteSyncPoints);
 
     GetSyncSnapshotsResponse getSyncSnapshotsHistory();
     byte[] getSyncSnapshot();
+
+    /**
+     * Writes the current sync snapshot, as returned by {@link #getSyncSnapshot()}, to the stream, which is left open.
+     */
+    void writeSyncSnapshot(OutputStream outputStream) throws IOException;
+
+    /**
+     * Writes the session's settings, breakpoints, sync snapshots history and current sync snapshot, see
+     * {@link #importSession}. The stream is left open.
+     */
+    void exportSession(OutputStream outputStream) throws IOException;
+
+    /**
+     * Sets up the debugger, instead of {@link #setup}, from a session written by {@link #exportSession}. The sync
+     * snapshots history is restored without running the program again, and the debugger stops on the current sync
+     * snapshot. The stream is read to its end.
+     */
+    DebugResponse importSession(InputStream inputStream);
+
     T setSyncSnapshot(long snapShotTime);
     T setSyncSnapshot(SyncSnapshot newSnapshot);
 
@@ -41,4 +78,35 @@ public interface BPJsDebugger<T> extends Debugger<T>, Publisher<BPEvent> {
 
 
     SortedMap<Long, EventInfo> getEventsHistory(int from, int to);
+
+    /**
+     * Expands a variable of a b-thread's scope, as of the last generated state.
+     *
+     * @param frame the scope's key in the b-thread's env
+     * @param path  dot separated property names/indices from the scope, empty for the scope itself
+     * @param from  first element/property of the page
+     * @param to    end (exclusive) of the page
+     */
+    ScopeVariableResponse getBThreadVariable(String bThreadName, int frame, String path, int from, int to);
+
+    /**
+     * Expands a global variable, as of the last generated state. See {@link #getBThreadVariable}.
+     */
+    ScopeVariableResponse getGlobalVariable(String path, int from, int to);
+
+    /**
+     * @return whether the full console output of the program, including lines dropped by the console rate limit, is
+     * spilled to a file on the server
+     */
+    boolean hasConsoleLog();
+
+    /**
+     * Writes the full console output of the program printed so far, see {@link #hasConsoleLog()}. The stream is left open.
+     */
+    void writeConsoleLog(OutputStream outputStream) throws IOException;
+
+    /**
+     * Deletes the console output file of the program, once its session is released.
+     */
+    void deleteConsoleLog();
 }
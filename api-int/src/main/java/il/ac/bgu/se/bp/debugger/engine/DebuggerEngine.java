@@ -4,6 +4,7 @@ import il.ac.bgu.se.bp.debugger.DebuggerLevel;
 import il.ac.bgu.se.bp.debugger.commands.DebuggerCommand;
 import il.ac.bgu.se.bp.utils.observer.BPEvent;
 import il.ac.bgu.se.bp.utils.observer.Publisher;
+import org.mozilla.javascript.ContextFactory;
 import org.mozilla.javascript.tools.debugger.GuiCallback;
 
 import java.util.Map;
@@ -24,10 +25,17 @@ public interface DebuggerEngine<S> extends GuiCallback, Publisher<BPEvent> {
     void addCommand(DebuggerCommand command) throws Exception;
 
     void onStateChanged();
+
+    /**
+     * Marks the last pushed state as stale, for changes the engine does not see (e.g. program configs).
+     */
+    void markStateChanged();
     void changeDebuggerLevel(DebuggerLevel debuggerLevel);
 
     boolean[] getBreakpoints();
 
     boolean isMuteBreakpoints();
     boolean isRunning();
+
+    ContextFactory getContextFactory();
 }
@@ -1,11 +1,16 @@
 package il.ac.bgu.se.bp.debugger.engine;
 import il.ac.bgu.se.bp.utils.Pair;
 import java.util.SortedMap;
+import java.util.function.BiConsumer;
 
 public interface SyncSnapshotHolder<T, U> {
     void addSyncSnapshot(T snapshot, U event);
-    T popKey(long snapshotTime);
-    U popValue(long snapshotTime);
+    T popKey(long snapshotKey);
+    U popValue(long snapshotKey);
+    long getSyncSnapshotTime(long snapshotKey);
     SortedMap<Long, Pair<T, U>> getAllSyncSnapshots();
+    void forEachSyncSnapshot(BiConsumer<T, U> consumer);
     SortedMap<Long,U> getEventsHistoryStack(int from, int to);
+    double getDeduplicationRatio();
+    void clear();
 }
@@ -3,7 +3,7 @@ package il.ac.bgu.se.bp.debugger.manage;
 import il.ac.bgu.se.bp.debugger.BPJsDebugger;
 import il.ac.bgu.se.bp.debugger.DebuggerLevel;
 
-@FunctionalInterface
 public interface DebuggerFactory<T> {
     BPJsDebugger<T> getBPJsDebugger(String debuggerId, String filename, DebuggerLevel debuggerLevel);
+    BPJsDebugger<T> getBPJsRunner(String runnerId, String filename);
 }
@@ -4,8 +4,11 @@ import il.ac.bgu.se.bp.rest.request.*;
 import il.ac.bgu.se.bp.rest.response.BooleanResponse;
 import il.ac.bgu.se.bp.rest.response.DebugResponse;
 import il.ac.bgu.se.bp.rest.response.EventsHistoryResponse;
+import il.ac.bgu.se.bp.rest.response.ScopeVariableResponse;
 import il.ac.bgu.se.bp.rest.response.SyncSnapshot;
 
+import java.io.InputStream;
+
 public interface BPjsIDEService {
 
     void subscribeUser(String sessionId, String userId);
@@ -13,6 +16,11 @@ public interface BPjsIDEService {
     BooleanResponse run(RunRequest runRequest, String userId);
     DebugResponse debug(DebugRequest debugRequest, String userId);
 
+    /**
+     * Starts a debug session like {@link #debug}, fast-forwarded through a recorded events trace to its target index.
+     */
+    DebugResponse replay(ReplayRequest replayRequest, String userId);
+
     BooleanResponse setBreakpoint(String userId, SetBreakpointRequest setBreakpointRequest);
     BooleanResponse toggleMuteBreakpoints(String userId, ToggleBreakpointsRequest toggleBreakPointStatus);
     BooleanResponse toggleWaitForExternal(String userId, ToggleWaitForExternalRequest toggleWaitForExternalRequest);
@@ -29,7 +37,43 @@ public interface BPjsIDEService {
     BooleanResponse externalEvent(String userId, ExternalEventRequest externalEventRequest);
     EventsHistoryResponse getEventsHistory(String userId, int from, int to);
 
+    ScopeVariableResponse getBThreadVariable(String userId, String bThreadName, int frame, String path, int from, int to);
+    ScopeVariableResponse getGlobalVariable(String userId, String path, int from, int to);
+
+    /**
+     * @return the full console output of the user's program, streamed as plain text, or null when the user has no
+     * program or its console is not spilled to a file on the server
+     */
+    BinarySyncSnapshotExport getConsoleLog(String userId);
+
     BooleanResponse setSyncSnapshot(String userId, SetSyncSnapshotRequest setSyncSnapshotRequest);
     SyncSnapshot exportSyncSnapshot(String userId);
     BooleanResponse importSyncSnapshot(String userId, ImportSyncSnapshotRequest importSyncSnapshotRequest);
+
+    /**
+     * @return the user's program and its current sync snapshot in the compressed binary format, or null when the user
+     * has no program
+     */
+    BinarySyncSnapshotExport exportBinarySyncSnapshot(String userId);
+
+    /**
+     * Same as {@link #importSyncSnapshot}, with the sync snapshot read from an export of
+     * {@link #exportBinarySyncSnapshot} instead of the request's.
+     */
+    BooleanResponse importBinarySyncSnapshot(String userId, ImportSyncSnapshotRequest importSyncSnapshotRequest, InputStream binarySyncSnapshot);
+
+    /**
+     * @return the user's debug session, with its sync snapshots history, as a compressed session archive, or null when
+     * the user has no program
+     */
+    BinarySyncSnapshotExport exportSessionArchive(String userId);
+
+    /**
+     * Starts a debug session from an archive of {@link #exportSessionArchive}, on its current sync snapshot and with its
+     * sync snapshots history.
+     */
+    DebugResponse importSessionArchive(String userId, InputStream sessionArchive);
+
+    BooleanResponse toggleStateDelta(String userId, ToggleStateDeltaRequest toggleStateDeltaRequest);
+    BooleanResponse resyncState(String userId);
 }
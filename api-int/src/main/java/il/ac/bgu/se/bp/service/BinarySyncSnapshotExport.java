@@ -0,0 +1,17 @@
+package il.ac.bgu.se.bp.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A sync snapshot exported in the binary format, written when the response is streamed. Also used for the other
+ * streamed downloads (session archive, console log).
+ */
+@FunctionalInterface
+public interface BinarySyncSnapshotExport {
+
+    /**
+     * Writes the export to the stream, which is left open.
+     */
+    void writeTo(OutputStream outputStream) throws IOException;
+}
@@ -19,4 +19,7 @@ public interface SessionHandler<T> extends PublisherVisitor, Subscriber<BPEvent>
 
     boolean validateUserId(String userId);
     String getUsersSourceCode(String userId);
+
+    void toggleStateDelta(String userId, boolean isStateDelta);
+    void resyncState(String userId);
 }
\ No newline at end of file
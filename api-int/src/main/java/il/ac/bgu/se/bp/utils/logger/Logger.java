@@ -1,67 +1,97 @@
 package il.ac.bgu.se.bp.utils.logger;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Logs through SLF4J, so the levels, format and appenders (the server logs asynchronously) are set by the logging
+ * backend's configuration.
+ * Messages use {0}, {1}, ... placeholders, which are only replaced when the level is enabled.
+ */
 public class Logger {
-    private final static String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss:SSS";
-    private enum LOG_LEVELS { DEBUG, INFO, WARN, ERROR }
-
-    private final String className;
+    private final org.slf4j.Logger logger;
+    private final String prefix;
 
     public Logger(Class<?> clazz) {
-        this.className = "[" + clazz.getSimpleName() + "]";
+        this.logger = LoggerFactory.getLogger(clazz);
+        this.prefix = "";
     }
 
     public Logger(Class<?> clazz, String debuggerId) {
-        this.className = "[" + clazz.getSimpleName() + "] [" + debuggerId + "]";
+        this.logger = LoggerFactory.getLogger(clazz);
+        this.prefix = "[" + debuggerId + "] ";
+    }
+
+    public boolean isDebugEnabled() {
+        return logger.isDebugEnabled();
     }
 
     public void debug(String msg, Object... args) {
-        loggerPrinter(msg, LOG_LEVELS.DEBUG, args);
+        if (logger.isDebugEnabled()) {
+            logger.debug(replacePlaceHolders(msg, args));
+        }
     }
 
     public void info(String msg, Object... args) {
-        loggerPrinter(msg, LOG_LEVELS.INFO, args);
+        if (logger.isInfoEnabled()) {
+            logger.info(replacePlaceHolders(msg, args));
+        }
     }
 
     public void warning(String msg, Object... args) {
-        loggerPrinter(msg, LOG_LEVELS.WARN, args);
+        if (logger.isWarnEnabled()) {
+            logger.warn(replacePlaceHolders(msg, args));
+        }
     }
 
     public void error(String msg, Object... args) {
-        loggerPrinter(msg, LOG_LEVELS.ERROR, args);
+        if (logger.isErrorEnabled()) {
+            logger.error(replacePlaceHolders(msg, args));
+        }
     }
 
     public void error(String msg, Throwable e, Object... args) {
-        loggerPrinter(msg, LOG_LEVELS.ERROR, args);
-        e.printStackTrace();
-    }
-
-    private void loggerPrinter(String msg, LOG_LEVELS logLevel, Object... args) {
-        String additionalInfo = replacePlaceHolders("{0}  {1} {2} --- {3} ", getDate(), logLevel, "Thread" + Thread.currentThread().getId(), className);
-        String replacedMsg = replacePlaceHolders(msg, args);
-
-        System.out.println(additionalInfo + replacedMsg);
-    }
-
-    private String getDate() {
-        SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT);
-        return sdf.format(new Date());
+        if (logger.isErrorEnabled()) {
+            logger.error(replacePlaceHolders(msg, args), e);
+        }
     }
 
     private String replacePlaceHolders(String msg, Object... args) {
         if (msg == null) {
-            return "";
+            return prefix;
         }
-        if (args == null) {
-            return msg;
+        if (args == null || args.length == 0) {
+            return prefix + msg;
         }
-        String newMsg = msg;
-        for (int i = 0; i < args.length; i++) {
-            newMsg = newMsg.replace("{" + i + "}", args[i] == null ? "null" : args[i].toString());
+        StringBuilder newMsg = new StringBuilder(prefix.length() + msg.length() + 16 * args.length).append(prefix);
+        int length = msg.length();
+        for (int i = 0; i < length; i++) {
+            char c = msg.charAt(i);
+            if (c == '{') {
+                int end = msg.indexOf('}', i + 1);
+                int argIndex = end > i + 1 ? parseIndex(msg, i + 1, end) : -1;
+                if (argIndex >= 0 && argIndex < args.length) {
+                    newMsg.append(args[argIndex]);
+                    i = end;
+                    continue;
+                }
+            }
+            newMsg.append(c);
         }
-        return newMsg;
+        return newMsg.toString();
     }
 
+    private static int parseIndex(String msg, int from, int to) {
+        if (to - from > 3) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = from; i < to; i++) {
+            char digit = msg.charAt(i);
+            if (digit < '0' || digit > '9') {
+                return -1;
+            }
+            index = index * 10 + (digit - '0');
+        }
+        return index;
+    }
 }
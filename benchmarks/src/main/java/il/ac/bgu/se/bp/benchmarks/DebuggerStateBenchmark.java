@@ -0,0 +1,70 @@
+package il.ac.bgu.se.bp.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import il.ac.bgu.cs.bp.bpjs.model.BEvent;
+import il.ac.bgu.cs.bp.bpjs.model.BProgramSyncSnapshot;
+import il.ac.bgu.se.bp.debugger.DebuggerLevel;
+import il.ac.bgu.se.bp.debugger.RunnerState;
+import il.ac.bgu.se.bp.debugger.engine.SyncSnapshotHolder;
+import il.ac.bgu.se.bp.debugger.engine.SyncSnapshotHolderImpl;
+import il.ac.bgu.se.bp.socket.state.BPDebuggerState;
+import il.ac.bgu.se.bp.utils.DebuggerStateHelper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of generating the debugger state pushed to the client on a sync point, and of encoding it to JSON the way
+ * the controller does. ManyBThreads has 500 b-threads waiting for / blocking Javascript event sets.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DebuggerStateBenchmark {
+    private static final int SYNC_POINTS = 50;
+
+    @Param({"Philosophers.js", "BPJSTicTacToe.js", "BPJSDebuggerForTesting.js", "ManyBThreads.js"})
+    public String program;
+
+    @Param({"LIGHT", "NORMAL"})
+    public DebuggerLevel debuggerLevel;
+
+    private ProgramFixture programFixture;
+    private DebuggerStateHelper debuggerStateHelper;
+    private BProgramSyncSnapshot syncSnapshot;
+    private BPDebuggerState debuggerState;
+    private final RunnerState state = new RunnerState();
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SyncSnapshotHolder<BProgramSyncSnapshot, BEvent> syncSnapshotHolder = new SyncSnapshotHolderImpl();
+        debuggerStateHelper = new DebuggerStateHelper(null, syncSnapshotHolder, debuggerLevel);
+        programFixture = new ProgramFixture(program, SYNC_POINTS, debuggerStateHelper);
+        programFixture.fillHistory(syncSnapshotHolder);
+
+        state.setDebuggerState(RunnerState.State.SYNC_STATE);
+        syncSnapshot = programFixture.getLastSnapshot();
+        debuggerState = debuggerStateHelper.generateDebuggerState(syncSnapshot, state, null, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        programFixture.close();
+    }
+
+    @Benchmark
+    public BPDebuggerState generateDebuggerState() {
+        return debuggerStateHelper.generateDebuggerState(syncSnapshot, state, null, null);
+    }
+
+    @Benchmark
+    public byte[] encodeDebuggerState() throws Exception {
+        return objectMapper.writeValueAsBytes(debuggerState);
+    }
+}
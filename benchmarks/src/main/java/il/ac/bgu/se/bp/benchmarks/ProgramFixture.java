@@ -0,0 +1,118 @@
+package il.ac.bgu.se.bp.benchmarks;
+
+import il.ac.bgu.cs.bp.bpjs.model.BEvent;
+import il.ac.bgu.cs.bp.bpjs.model.BProgram;
+import il.ac.bgu.cs.bp.bpjs.model.BProgramSyncSnapshot;
+import il.ac.bgu.cs.bp.bpjs.model.ResourceBProgram;
+import il.ac.bgu.cs.bp.bpjs.model.eventselection.EventSelectionResult;
+import il.ac.bgu.cs.bp.bpjs.model.eventselection.EventSelectionStrategy;
+import il.ac.bgu.se.bp.debugger.RunnerState;
+import il.ac.bgu.se.bp.debugger.engine.DebuggerEngineImpl;
+import il.ac.bgu.se.bp.debugger.engine.SyncSnapshotHolder;
+import il.ac.bgu.se.bp.utils.DebuggerExecutorServiceMaker;
+import il.ac.bgu.se.bp.utils.DebuggerStateHelper;
+import org.mozilla.javascript.ContextFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import static il.ac.bgu.cs.bp.bpjs.model.StorageModificationStrategy.PASSTHROUGH;
+
+/**
+ * One of the bundled programs, run up to a number of sync points, either under a debugger session's instrumented
+ * context or under a plain one (as in the run mode).
+ * Keeps the snapshot of every sync point reached and the event selected on it.
+ *
+ * Snapshots taken under an instrumented context hold the debugger's frames and cannot be serialized.
+ */
+class ProgramFixture {
+    private static final String FIXTURE_ID = "benchmark";
+
+    private final DebuggerEngineImpl debuggerEngine;
+    private final ExecutorService executorService;
+    private final BProgram bProgram;
+    private final List<BProgramSyncSnapshot> snapshots = new ArrayList<>();
+    private final List<BEvent> events = new ArrayList<>();
+
+    /**
+     * Runs the program under a plain context.
+     */
+    ProgramFixture(String filename, int maxSyncPoints) throws Exception {
+        this(filename, maxSyncPoints, null, new ContextFactory());
+    }
+
+    /**
+     * Runs the program under an instrumented context of a debugger session that uses the given state helper.
+     */
+    ProgramFixture(String filename, int maxSyncPoints, DebuggerStateHelper debuggerStateHelper) throws Exception {
+        this(filename, maxSyncPoints, new DebuggerEngineImpl(FIXTURE_ID, filename, new RunnerState(), debuggerStateHelper, "BenchmarkEngine"));
+    }
+
+    private ProgramFixture(String filename, int maxSyncPoints, DebuggerEngineImpl debuggerEngine) throws Exception {
+        this(filename, maxSyncPoints, debuggerEngine, debuggerEngine.getContextFactory());
+    }
+
+    private ProgramFixture(String filename, int maxSyncPoints, DebuggerEngineImpl debuggerEngine, ContextFactory contextFactory) throws Exception {
+        this.debuggerEngine = debuggerEngine;
+        executorService = new DebuggerExecutorServiceMaker().makeWithName("BenchmarkRunner", contextFactory);
+        bProgram = new ResourceBProgram(filename);
+
+        BProgramSyncSnapshot syncSnapshot = executorService.submit(bProgram::setup).get();
+        syncSnapshot = syncSnapshot.start(executorService, PASSTHROUGH);
+        EventSelectionStrategy eventSelectionStrategy = bProgram.getEventSelectionStrategy();
+        while (snapshots.size() < maxSyncPoints && syncSnapshot.isStateValid()) {
+            Set<BEvent> possibleEvents = eventSelectionStrategy.selectableEvents(syncSnapshot);
+            Optional<EventSelectionResult> eventOptional = possibleEvents.isEmpty() ? Optional.empty() :
+                    eventSelectionStrategy.select(syncSnapshot, possibleEvents);
+            if (!eventOptional.isPresent()) {
+                break;
+            }
+            BEvent event = eventOptional.get().getEvent();
+            snapshots.add(syncSnapshot);
+            events.add(event);
+            syncSnapshot = syncSnapshot.triggerEvent(event, executorService, Collections.emptyList(), PASSTHROUGH);
+        }
+        snapshots.add(syncSnapshot);
+    }
+
+    BProgram getBProgram() {
+        return bProgram;
+    }
+
+    /**
+     * @return the snapshots of all the sync points reached, the last one has no selected event
+     */
+    List<BProgramSyncSnapshot> getSnapshots() {
+        return snapshots;
+    }
+
+    List<BEvent> getEvents() {
+        return events;
+    }
+
+    BProgramSyncSnapshot getLastSnapshot() {
+        return snapshots.get(snapshots.size() - 1);
+    }
+
+    /**
+     * Adds the sync points to the holder the way a debugger session does: the first one without an event, then each
+     * one with the event selected on it.
+     */
+    void fillHistory(SyncSnapshotHolder<BProgramSyncSnapshot, BEvent> syncSnapshotHolder) {
+        syncSnapshotHolder.addSyncSnapshot(snapshots.get(0), null);
+        for (int i = 0; i < events.size(); i++) {
+            syncSnapshotHolder.addSyncSnapshot(snapshots.get(i), events.get(i));
+        }
+    }
+
+    void close() {
+        executorService.shutdownNow();
+        if (debuggerEngine != null) {
+            debuggerEngine.stop();
+        }
+    }
+}
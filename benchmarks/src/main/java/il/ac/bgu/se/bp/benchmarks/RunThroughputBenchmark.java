@@ -0,0 +1,122 @@
+package il.ac.bgu.se.bp.benchmarks;
+
+import il.ac.bgu.se.bp.debugger.BPJsDebugger;
+import il.ac.bgu.se.bp.debugger.DebuggerLevel;
+import il.ac.bgu.se.bp.debugger.engine.events.BPConsoleEvent;
+import il.ac.bgu.se.bp.execution.BPJsDebuggerImpl;
+import il.ac.bgu.se.bp.execution.BPJsRunnerImpl;
+import il.ac.bgu.se.bp.execution.manage.ProgramValidatorImpl;
+import il.ac.bgu.se.bp.rest.response.BooleanResponse;
+import il.ac.bgu.se.bp.utils.observer.BPEvent;
+import il.ac.bgu.se.bp.utils.observer.Subscriber;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a program to its end (or up to {@link #MAX_EVENTS} events) with sync points and breakpoints skipped:
+ * the headless runner of the run mode against debugger sessions of each level.
+ * Besides runs per second, reports selected events per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class RunThroughputBenchmark {
+    private static final int MAX_EVENTS = 1000;
+    private static final long RUN_TIMEOUT_SECONDS = 60;
+    private static final String EVENT_SELECTED_PREFIX = " --:";
+    private static final String EVENT_SELECTED_MESSAGE = " Event ";
+    private static final String PROGRAM_MESSAGE_PREFIX = "---:";
+    private static final String PROGRAM_ENDED_MESSAGE = " Ended";
+
+    public enum RunMode {
+        RUNNER,
+        LIGHT,
+        NORMAL
+    }
+
+    @Param({"Philosophers.js", "BPJSDebuggerForTesting.js"})
+    public String program;
+
+    @Param({"RUNNER", "LIGHT", "NORMAL"})
+    public RunMode runMode;
+
+    private BPJsDebugger<BooleanResponse> session;
+    private RunListener runListener;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class EventCounters {
+        public long events;
+    }
+
+    @Setup(Level.Invocation)
+    public void setUp() throws Exception {
+        session = newSession();
+        runListener = new RunListener();
+        session.subscribe(runListener);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        if (!runListener.isEnded) {
+            session.stop();
+        }
+    }
+
+    @Benchmark
+    public void runProgram(EventCounters eventCounters) throws InterruptedException {
+        session.startSync(new HashMap<>(), true, true, false);
+        if (!runListener.runDone.await(RUN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException(program + " did not end within " + RUN_TIMEOUT_SECONDS + " seconds");
+        }
+        eventCounters.events += runListener.selectedEvents.get();
+    }
+
+    private BPJsDebugger<BooleanResponse> newSession() throws ReflectiveOperationException {
+        if (runMode == RunMode.RUNNER) {
+            return new BPJsRunnerImpl("benchmark", program);
+        }
+
+        BPJsDebuggerImpl bpJsDebugger = new BPJsDebuggerImpl("benchmark", program, DebuggerLevel.valueOf(runMode.name()));
+        Field programValidator = BPJsDebuggerImpl.class.getDeclaredField("bPjsProgramValidator");
+        programValidator.setAccessible(true);
+        programValidator.set(bpJsDebugger, new ProgramValidatorImpl());
+        return bpJsDebugger;
+    }
+
+    /**
+     * Follows the console of one session. A listener per session, since ended sessions keep printing while they exit.
+     */
+    private static class RunListener implements Subscriber<BPEvent> {
+        private final CountDownLatch runDone = new CountDownLatch(1);
+        private final AtomicInteger selectedEvents = new AtomicInteger();
+        private volatile boolean isEnded = false;
+
+        @Override
+        public void update(BPEvent event) {
+            if (!(event instanceof BPConsoleEvent)) {
+                return;
+            }
+            String message = ((BPConsoleEvent) event).getEvent().getMessage();
+            if (message == null) {
+                return;
+            }
+            if (message.startsWith(PROGRAM_MESSAGE_PREFIX) && message.endsWith(PROGRAM_ENDED_MESSAGE)) {
+                isEnded = true;
+                runDone.countDown();
+            }
+            else if (message.startsWith(EVENT_SELECTED_PREFIX) && message.contains(EVENT_SELECTED_MESSAGE)
+                    && selectedEvents.incrementAndGet() >= MAX_EVENTS) {
+                runDone.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package il.ac.bgu.se.bp.benchmarks;
+
+import il.ac.bgu.cs.bp.bpjs.model.BEvent;
+import il.ac.bgu.cs.bp.bpjs.model.BProgramSyncSnapshot;
+import il.ac.bgu.se.bp.debugger.engine.SyncSnapshotHolderImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sync snapshots history operations on a full history, so adding a snapshot also spills and drops older ones.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SyncSnapshotHolderBenchmark {
+    private static final int SYNC_POINTS = 100;
+    private static final int EVENTS_HISTORY_PAGE = 10;
+
+    @Param({"Philosophers.js", "BPJSDebuggerForTesting.js"})
+    public String program;
+
+    private ProgramFixture programFixture;
+    private SyncSnapshotHolderImpl syncSnapshotHolder;
+    private List<BProgramSyncSnapshot> snapshots;
+    private List<BEvent> events;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        programFixture = new ProgramFixture(program, SYNC_POINTS);
+        snapshots = programFixture.getSnapshots();
+        events = programFixture.getEvents();
+        if (events.isEmpty()) {
+            throw new IllegalStateException(program + " selected no events");
+        }
+
+        syncSnapshotHolder = new SyncSnapshotHolderImpl();
+        programFixture.fillHistory(syncSnapshotHolder);
+        while (syncSnapshotHolder.getEventsHistoryStack(0, Integer.MAX_VALUE).size() < SyncSnapshotHolderImpl.DEFAULT_MAX_HISTORY_SIZE) {
+            addNext();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        syncSnapshotHolder.clear();
+        programFixture.close();
+    }
+
+    @Benchmark
+    public void addSyncSnapshot() {
+        addNext();
+    }
+
+    @Benchmark
+    public BProgramSyncSnapshot addAndPopSyncSnapshot() {
+        addNext();
+        long newestKey = syncSnapshotHolder.getEventsHistoryStack(0, 1).firstKey();
+        return syncSnapshotHolder.popKey(newestKey);
+    }
+
+    @Benchmark
+    public SortedMap<Long, BEvent> eventsHistoryStack() {
+        return syncSnapshotHolder.getEventsHistoryStack(0, EVENTS_HISTORY_PAGE);
+    }
+
+    private void addNext() {
+        int index = next++ % events.size();
+        syncSnapshotHolder.addSyncSnapshot(snapshots.get(index), events.get(index));
+    }
+}
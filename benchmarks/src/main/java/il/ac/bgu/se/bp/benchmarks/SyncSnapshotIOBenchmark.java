@@ -0,0 +1,56 @@
+package il.ac.bgu.se.bp.benchmarks;
+
+import il.ac.bgu.cs.bp.bpjs.bprogramio.BProgramSyncSnapshotIO;
+import il.ac.bgu.cs.bp.bpjs.model.BProgramSyncSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sync snapshot serialization, as used by export/import and by the spilled snapshots history.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SyncSnapshotIOBenchmark {
+    private static final int SYNC_POINTS = 20;
+
+    @Param({"Philosophers.js", "BPJSTicTacToe.js", "BPJSDebuggerForTesting.js"})
+    public String program;
+
+    private ProgramFixture programFixture;
+    private BProgramSyncSnapshotIO snapshotIO;
+    private BProgramSyncSnapshot syncSnapshot;
+    private byte[] serializedSnapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        programFixture = new ProgramFixture(program, SYNC_POINTS);
+        snapshotIO = new BProgramSyncSnapshotIO(programFixture.getBProgram());
+        syncSnapshot = programFixture.getLastSnapshot();
+        serializedSnapshot = snapshotIO.serialize(syncSnapshot);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        programFixture.close();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return snapshotIO.serialize(syncSnapshot);
+    }
+
+    @Benchmark
+    public BProgramSyncSnapshot deserialize() throws Exception {
+        return snapshotIO.deserialize(serializedSnapshot);
+    }
+
+    @Benchmark
+    public BProgramSyncSnapshot roundTrip() throws Exception {
+        return snapshotIO.deserialize(snapshotIO.serialize(syncSnapshot));
+    }
+}
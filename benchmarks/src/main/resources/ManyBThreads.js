@@ -0,0 +1,34 @@
+const WORKER_COUNT = 500;
+const WORK_KINDS = 50;
+
+const ticks = bp.EventSet("Ticks", function (e) {
+    return e.name.startsWith("Tick");
+});
+const guarded = bp.EventSet("Guarded", function (e) {
+    return e.name === "Work0";
+});
+
+function addWorker(i) {
+    bp.registerBThread("Worker" + i, function () {
+        while (true) {
+            bp.sync({request: bp.Event("Work" + (i % WORK_KINDS)), waitFor: ticks});
+        }
+    });
+}
+
+for (var i = 0; i < WORKER_COUNT; i++) {
+    addWorker(i);
+}
+
+bp.registerBThread("Ticker", function () {
+    var n = 0;
+    while (true) {
+        bp.sync({request: bp.Event("Tick" + (n++ % 10))});
+    }
+});
+
+bp.registerBThread("Guard", function () {
+    while (true) {
+        bp.sync({block: guarded, waitFor: ticks});
+    }
+});
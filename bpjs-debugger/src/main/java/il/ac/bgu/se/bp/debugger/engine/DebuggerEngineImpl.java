@@ -24,7 +24,7 @@ import org.mozilla.javascript.tools.debugger.Dim;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static il.ac.bgu.se.bp.utils.ProgramStatusHelper.getRunStatusByDebuggerLevel;
 
@@ -34,7 +34,8 @@ public class DebuggerEngineImpl implements DebuggerEngine<BProgramSyncSnapshot>
     private final DebuggerStateHelper debuggerStateHelper;
     private final String debuggerId;
     private final Logger logger;
-    private final ExecutorService execSvc;
+    private final LatestStatePublisher statePublisher;
+    private final ContextFactory contextFactory = new ContextFactory();
 
     private DimHelper dimHelper;
     private Dim.ContextData lastContextData = null;
@@ -43,6 +44,13 @@ public class DebuggerEngineImpl implements DebuggerEngine<BProgramSyncSnapshot>
     private BProgramSyncSnapshot syncSnapshot = null;
     private DebuggerLevel debuggerLevel;
 
+    /**
+     * Bumped on every change that is part of the debugger state, so a pushed state is known to be stale
+     * without generating a new state to compare with.
+     */
+    private final AtomicLong stateVersion = new AtomicLong();
+    private volatile long publishedStateVersion = -1;
+
     private final BlockingQueue<DebuggerCommand> debuggerCommands = new ArrayBlockingQueue<>(1);
     private Publisher<BPEvent> publisher = new BPEventPublisherImpl();
 
@@ -53,20 +61,26 @@ public class DebuggerEngineImpl implements DebuggerEngine<BProgramSyncSnapshot>
         this.debuggerStateHelper = debuggerStateHelper;
         this.debuggerId = debuggerId;
         this.logger = new Logger(DebuggerEngineImpl.class, debuggerId);
-        this.execSvc = BPjs.getExecutorServiceMaker().makeWithName(debuggerThreadId);
+        this.statePublisher = new LatestStatePublisher(debuggerId, BPjs.getExecutorServiceMaker().makeWithName(debuggerThreadId),
+                event -> publisher.notifySubscribers(event));
 
         initDim();
         setIsRunning(true);
     }
 
+    /**
+     * The Dim is attached to a context factory of this session only, so only contexts entered through
+     * {@link #getContextFactory()} are instrumented and report to this engine.
+     */
     private void initDim() {
         dimHelper = new DimHelperImpl();
         dimHelper.setGuiCallback(this);
-        dimHelper.attachTo(ContextFactory.getGlobal());
+        dimHelper.attachTo(contextFactory);
     }
 
     public void changeDebuggerLevel(DebuggerLevel debuggerLevel) {
         this.debuggerLevel = debuggerLevel;
+        markStateChanged();
     }
 
     public void setupBreakpoints(Map<Integer, Boolean> breakpoints) throws IllegalArgumentException {
@@ -85,6 +99,7 @@ public class DebuggerEngineImpl implements DebuggerEngine<BProgramSyncSnapshot>
         verifyState();
         state.setDebuggerState(RunnerState.State.JS_DEBUG);
         lastContextData = stackFrame.contextData();
+        markStateChanged();
         logger.debug("Get state from enterInterrupt, line number: {0}", stackFrame.getLineNumber());
         if (isMuteBreakpoints()) {
             continueRun();
@@ -104,13 +119,13 @@ public class DebuggerEngineImpl implements DebuggerEngine<BProgramSyncSnapshot>
     public void dispatchNextGuiEvent() {
         verifyState();
         try {
-            if (!debuggerStateHelper.getLastState().equals(debuggerStateHelper.peekNextState(syncSnapshot, state, lastContextData,dimHelper.getSourceInfo(filename)))) {
-                logger.info("Getting state from dispatchNextGuiEvent");
+            if (publishedStateVersion != stateVersion.get()) {
+                logger.debug("Getting state from dispatchNextGuiEvent");
                 onStateChanged();
             }
             if (isRunning()) {
                 DebuggerCommand debuggerCommand = debuggerCommands.take();
-                logger.info("applying command " + debuggerCommand.toString());
+                logger.debug("applying command {0}", debuggerCommand);
                 debuggerCommand.applyCommand(this);
             }
         } catch (Exception e) {
@@ -142,13 +157,15 @@ public class DebuggerEngineImpl implements DebuggerEngine<BProgramSyncSnapshot>
     @Override
     public synchronized void toggleMuteBreakpoints(boolean toggleBreakPointStatus) {
         this.areBreakpointsMuted = toggleBreakPointStatus;
+        markStateChanged();
     }
 
     @Override
     public void stop() {
         logger.info("stopping debugger engine");
         dimHelper.stop();
-        execSvc.shutdownNow();
+        dimHelper.detach();
+        statePublisher.close();
         setIsRunning(false);
     }
 
@@ -183,18 +200,26 @@ public class DebuggerEngineImpl implements DebuggerEngine<BProgramSyncSnapshot>
     public void setBreakpoint(int lineNumber, boolean stopOnBreakpoint) throws IllegalArgumentException {
         if(isBreakpointAllowed(lineNumber))
             dimHelper.setBreakpoint(lineNumber, stopOnBreakpoint, filename);
+        markStateChanged();
     }
 
     @Override
     public void setSyncSnapshot(BProgramSyncSnapshot syncSnapshot) {
         this.syncSnapshot = syncSnapshot;
+        markStateChanged();
+    }
+
+    @Override
+    public void markStateChanged() {
+        stateVersion.incrementAndGet();
     }
 
     @Override
     public void onStateChanged() {
         try {
+            publishedStateVersion = stateVersion.get();
             BPDebuggerState newState = debuggerStateHelper.generateDebuggerState(syncSnapshot, state, lastContextData, dimHelper.getSourceInfo(filename));
-            execSvc.submit(() -> notifySubscribers(new BPStateEvent(debuggerId, newState))).get();
+            statePublisher.publish(new BPStateEvent(debuggerId, newState));
         } catch (Exception e) {
             logger.error("onStateChanged: failed e: {0}", e, e.getMessage());
             e.printStackTrace();
@@ -216,6 +241,11 @@ public class DebuggerEngineImpl implements DebuggerEngine<BProgramSyncSnapshot>
         onStateChanged();
     }
 
+    @Override
+    public ContextFactory getContextFactory() {
+        return contextFactory;
+    }
+
     @Override
     public void subscribe(Subscriber subscriber) {
         publisher.subscribe(subscriber);
@@ -226,8 +256,11 @@ public class DebuggerEngineImpl implements DebuggerEngine<BProgramSyncSnapshot>
         publisher.unsubscribe(subscriber);
     }
 
+    /**
+     * Sends the event after the states published before it, see {@link LatestStatePublisher#publishInOrder}.
+     */
     @Override
     public void notifySubscribers(BPEvent event) {
-        publisher.notifySubscribers(event);
+        statePublisher.publishInOrder(event);
     }
 }
\ No newline at end of file
@@ -0,0 +1,105 @@
+package il.ac.bgu.se.bp.debugger.engine;
+
+import il.ac.bgu.se.bp.debugger.engine.events.BPStateEvent;
+import il.ac.bgu.se.bp.utils.logger.Logger;
+import il.ac.bgu.se.bp.utils.observer.BPEvent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Sends the debugger states of a session from a dedicated sender thread, so the program threads do not wait for the
+ * subscribers. Holds a single pending state: a state published before the previous one was sent replaces it, so a
+ * burst of states (e.g. when skipping sync points) sends only the latest one.
+ *
+ * Other events of the session (e.g. program status) are sent from the same thread with {@link #publishInOrder}, so
+ * subscribers get them in the order they were published relative to the states, e.g. a SYNCSTATE status after its
+ * state.
+ */
+public class LatestStatePublisher {
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+    private final Logger logger;
+    private final ExecutorService sender;
+    private final Consumer<BPEvent> send;
+    private BPStateEvent pendingState;
+
+    public LatestStatePublisher(String debuggerId, ExecutorService sender, Consumer<BPEvent> send) {
+        this.logger = new Logger(LatestStatePublisher.class, debuggerId);
+        this.sender = sender;
+        this.send = send;
+    }
+
+    /**
+     * Does not block. The state is sent after the states and events published before it, unless a newer state is
+     * published before it was sent and with no event published in between.
+     */
+    public synchronized void publish(BPStateEvent stateEvent) {
+        boolean isSendScheduled = pendingState != null;
+        pendingState = stateEvent;
+        if (isSendScheduled) {
+            return;
+        }
+        try {
+            sender.execute(this::sendPendingState);
+        } catch (RejectedExecutionException e) {
+            pendingState = null;
+            logger.warning("state publisher is closed, state was not sent");
+        }
+    }
+
+    /**
+     * Does not block. The event is sent after the states and events published before it. Once the publisher is closed,
+     * the event is sent on the calling thread.
+     */
+    public synchronized void publishInOrder(BPEvent event) {
+        BPStateEvent stateEvent = pendingState;
+        pendingState = null;
+        try {
+            sender.execute(() -> {
+                if (stateEvent != null) {
+                    sendSafely(stateEvent);
+                }
+                sendSafely(event);
+            });
+        } catch (RejectedExecutionException e) {
+            sendSafely(event);
+        }
+    }
+
+    private void sendPendingState() {
+        BPStateEvent stateEvent;
+        synchronized (this) {
+            stateEvent = pendingState;
+            pendingState = null;
+        }
+        if (stateEvent != null) {
+            sendSafely(stateEvent);
+        }
+    }
+
+    private void sendSafely(BPEvent event) {
+        try {
+            send.accept(event);
+        } catch (Exception e) {
+            logger.error("failed sending {0}, error: {1}", e, event.getEventType(), e.getMessage());
+        }
+    }
+
+    /**
+     * Sends the pending state and events, waiting for them up to a second, and stops the sender.
+     */
+    public void close() {
+        sender.shutdown();
+        try {
+            if (!sender.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                sender.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            sender.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,44 +1,134 @@
 package il.ac.bgu.se.bp.debugger.engine;
 
 import il.ac.bgu.cs.bp.bpjs.model.*;
+import il.ac.bgu.se.bp.utils.DebuggerMetrics;
 import il.ac.bgu.se.bp.utils.Pair;
+import il.ac.bgu.se.bp.utils.logger.Logger;
 
+import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
+/**
+ * Bounded history of sync snapshots, kept in an append-only ring.
+ * Every entry gets a monotonic sequence key (never reused, also after a rewind) and the time it was added.
+ * Once the ring is full, adding a snapshot drops the oldest one.
+ *
+ * Only the most recent snapshots are kept in memory, older ones are spilled to a {@link SyncSnapshotSpillStore}
+ * and read back when needed.
+ * Spilled bytes are limited per session and across all sessions. When the session's limit is reached its oldest
+ * snapshots are dropped. A snapshot that cannot be spilled, because it fails to serialize or the limit across all
+ * sessions is reached, is dropped alone: its entry stays in the history with its event, without a snapshot to go
+ * back to, so other sessions never lose their history to a heavy one.
+ */
 public class SyncSnapshotHolderImpl implements SyncSnapshotHolder<BProgramSyncSnapshot, BEvent> {
+    private static final Logger logger = new Logger(SyncSnapshotHolderImpl.class);
 
-    private SortedMap<Long, Pair<BProgramSyncSnapshot, BEvent>> snapshotsByTimeChosen = new TreeMap<>();
+    public static final int DEFAULT_MAX_HISTORY_SIZE = 1024;
+    public static final int DEFAULT_IN_MEMORY_SNAPSHOTS = 64;
+    public static final long DEFAULT_SESSION_SPILL_BYTES = 256L * 1024 * 1024;
+    public static final long NO_TIME = -1;
 
+    private static final AtomicInteger globalHistorySize = new AtomicInteger();
+
+    private final int capacity;
+    private final int inMemorySnapshots;
+    private final SyncSnapshotSpillStore spillStore;
+
+    private final long[] keys;
+    private final long[] times;
+    private final BProgramSyncSnapshot[] snapshots;
+    private final BEvent[] events;
+    private final SyncSnapshotSpillStore.SpilledSnapshot[] spilledSnapshots;
+
+    private int head = 0;
+    private int size = 0;
+    private long nextKey = 0;
+
+    private int spilledCount = 0;
+    private BProgram bProgram;
+
+    public SyncSnapshotHolderImpl() {
+        this(DEFAULT_MAX_HISTORY_SIZE);
+    }
+
+    public SyncSnapshotHolderImpl(int maxHistorySize) {
+        this(maxHistorySize, DEFAULT_IN_MEMORY_SNAPSHOTS, DEFAULT_SESSION_SPILL_BYTES);
+    }
+
+    public SyncSnapshotHolderImpl(int maxHistorySize, int inMemorySnapshots, long sessionSpillBytes) {
+        if (maxHistorySize <= 0 || inMemorySnapshots <= 0) {
+            throw new IllegalArgumentException("history sizes must be positive, got: " + maxHistorySize + ", " + inMemorySnapshots);
+        }
+        this.capacity = maxHistorySize;
+        this.inMemorySnapshots = inMemorySnapshots;
+        this.spillStore = new SyncSnapshotSpillStore(sessionSpillBytes);
+        this.keys = new long[maxHistorySize];
+        this.times = new long[maxHistorySize];
+        this.snapshots = new BProgramSyncSnapshot[maxHistorySize];
+        this.events = new BEvent[maxHistorySize];
+        this.spilledSnapshots = new SyncSnapshotSpillStore.SpilledSnapshot[maxHistorySize];
+    }
+
+    /**
+     * A snapshot without an event marks the start of a program run, so it also starts a new history.
+     */
     @Override
     public synchronized void addSyncSnapshot(BProgramSyncSnapshot snapshot, BEvent event) {
         if (snapshot == null) {
             return;
         }
 
-        long currentTime = System.currentTimeMillis();
-        snapshotsByTimeChosen.put(currentTime, Pair.of(snapshot, event));
+        if (event == null) {
+            truncate(0);
+        }
+        else if (size == capacity) {
+            dropOldest();
+        }
+
+        bProgram = snapshot.getBProgram();
+        int slot = slotOf(size);
+        keys[slot] = nextKey++;
+        times[slot] = System.currentTimeMillis();
+        snapshots[slot] = snapshot;
+        events[slot] = event;
+        size++;
+        globalHistorySize.incrementAndGet();
+
+        if (size - spilledCount > inMemorySnapshots) {
+            spillOldestInMemory();
+        }
     }
 
     @Override
-    public synchronized BProgramSyncSnapshot popKey(long snapshotTime) {
-        if (!snapshotsByTimeChosen.containsKey(snapshotTime)) {
+    public synchronized BProgramSyncSnapshot popKey(long snapshotKey) {
+        int position = positionOf(snapshotKey);
+        if (position < 0) {
             return null;
         }
 
-        BProgramSyncSnapshot oldBProgramSyncSnapshot = snapshotsByTimeChosen.get(snapshotTime).getLeft();
-        snapshotsByTimeChosen = cloneTreeMap(snapshotsByTimeChosen.headMap(snapshotTime));
+        BProgramSyncSnapshot oldBProgramSyncSnapshot = getSnapshotAt(position);
+        if (oldBProgramSyncSnapshot == null) {
+            return null;
+        }
+        truncate(position);
 
         return cloneBProgramSyncSnapshot(oldBProgramSyncSnapshot);
     }
+
     @Override
-    public synchronized BEvent popValue(long snapshotTime) {
-        if (!snapshotsByTimeChosen.containsKey(snapshotTime)) {
-            return null;
-        }
+    public synchronized BEvent popValue(long snapshotKey) {
+        int position = positionOf(snapshotKey);
+        return position < 0 ? null : events[slotOf(position)];
+    }
 
-        return snapshotsByTimeChosen.get(snapshotTime).getRight();
+    @Override
+    public synchronized long getSyncSnapshotTime(long snapshotKey) {
+        int position = positionOf(snapshotKey);
+        return position < 0 ? NO_TIME : times[slotOf(position)];
     }
+
     private BProgramSyncSnapshot cloneBProgramSyncSnapshot(BProgramSyncSnapshot oldBProgramSyncSnapshot) {
         BProgram aBProgram = oldBProgramSyncSnapshot.getBProgram();
         Set<BThreadSyncSnapshot> someThreadSnapshots = oldBProgramSyncSnapshot.getBThreadSnapshots();
@@ -49,30 +139,274 @@ public class SyncSnapshotHolderImpl implements SyncSnapshotHolder<BProgramSyncSn
     }
 
     @Override
-    public SortedMap<Long, Pair<BProgramSyncSnapshot, BEvent>> getAllSyncSnapshots() {
-        return cloneTreeMap(snapshotsByTimeChosen);
+    public synchronized SortedMap<Long, Pair<BProgramSyncSnapshot, BEvent>> getAllSyncSnapshots() {
+        SortedMap<Long, Pair<BProgramSyncSnapshot, BEvent>> allSyncSnapshots = new TreeMap<>();
+        for (int position = 0; position < size; position++) {
+            BProgramSyncSnapshot snapshot = getSnapshotAt(position);
+            if (snapshot != null) {
+                int slot = slotOf(position);
+                allSyncSnapshots.put(keys[slot], Pair.of(snapshot, events[slot]));
+            }
+        }
+        return allSyncSnapshots;
     }
 
+    /**
+     * Oldest snapshot first. The history is copied under the lock, then spilled snapshots are read one at a time and
+     * the consumer runs without the lock, so a slow consumer (e.g. a download) does not block the session.
+     * Spilled snapshots copied are kept in the store until they are read, also if they leave the history meanwhile.
+     */
     @Override
-    public SortedMap<Long, BEvent> getEventsHistoryStack(int from, int to) {
-        SortedMap<Long, BEvent> events = new TreeMap<>(Collections.reverseOrder());
-        if (snapshotsByTimeChosen.isEmpty() || from > snapshotsByTimeChosen.size() || from > to) {
-            return events;
+    public void forEachSyncSnapshot(BiConsumer<BProgramSyncSnapshot, BEvent> consumer) {
+        List<HistoryEntry> entries = new ArrayList<>();
+        BProgram entriesBProgram;
+        synchronized (this) {
+            for (int position = 0; position < size; position++) {
+                int slot = slotOf(position);
+                entries.add(position < spilledCount ?
+                        new HistoryEntry(keys[slot], null, retain(spilledSnapshots[slot]), events[slot]) :
+                        new HistoryEntry(keys[slot], snapshots[slot], null, events[slot]));
+            }
+            entriesBProgram = bProgram;
+        }
+
+        try {
+            for (HistoryEntry entry : entries) {
+                BProgramSyncSnapshot snapshot = entry.spilledSnapshot != null ? loadRetained(entry, entriesBProgram) : entry.snapshot;
+                if (snapshot != null) {
+                    consumer.accept(snapshot, entry.event);
+                }
+            }
+        } finally {
+            releaseRetained(entries);
         }
-        List<BEvent> eventsHistory = snapshotsByTimeChosen.values().stream().map(Pair::getRight).filter(Objects::nonNull).collect(Collectors.toList());
-        List<Long> eventsTime = snapshotsByTimeChosen.keySet().stream().skip(1).collect(Collectors.toList());
+    }
 
-        Collections.reverse(eventsHistory);
-        Collections.reverse(eventsTime);
+    /**
+     * Events are indexed from the most recent one (index 0), {@code to} is exclusive.
+     */
+    @Override
+    public synchronized SortedMap<Long, BEvent> getEventsHistoryStack(int from, int to) {
+        SortedMap<Long, BEvent> eventsHistory = new TreeMap<>(Collections.reverseOrder());
+        int eventsCount = getEventsCount();
         int startIdx = Math.max(from, 0);
-        int endIdx = to > eventsHistory.size() ? eventsHistory.size() : Math.max(to, 0);
+        int endIdx = Math.min(to, eventsCount);
         for (int i = startIdx; i < endIdx; i++) {
-            events.put(eventsTime.get(i), eventsHistory.get(i));
+            int slot = slotOf(size - 1 - i);
+            eventsHistory.put(keys[slot], events[slot]);
+        }
+        return eventsHistory;
+    }
+
+    @Override
+    public synchronized double getDeduplicationRatio() {
+        return spillStore.getDeduplicationRatio();
+    }
+
+    @Override
+    public synchronized void clear() {
+        if (spilledCount > 0) {
+            logger.info("releasing {0} spilled sync snapshots, {1} bytes, deduplication ratio: {2}",
+                    spilledCount, spillStore.getStoredBytes(), spillStore.getDeduplicationRatio());
+            DebuggerMetrics.spillDeduplicationRatio().record(spillStore.getDeduplicationRatio());
+        }
+        truncate(0);
+        spillStore.close();
+        bProgram = null;
+    }
+
+    /**
+     * @return the number of snapshots kept by all the sessions
+     */
+    public static int getGlobalHistorySize() {
+        return globalHistorySize.get();
+    }
+
+    /**
+     * @return the bytes spilled by all the sessions
+     */
+    public static long getGlobalSpilledBytes() {
+        return SyncSnapshotSpillStore.getGlobalStoredBytes();
+    }
+
+    synchronized int getSpilledCount() {
+        return spilledCount;
+    }
+
+    synchronized long getSpilledBytes() {
+        return spillStore.getStoredBytes();
+    }
+
+    private int getEventsCount() {
+        return size > 0 && events[head] == null ? size - 1 : size;
+    }
+
+    private BProgramSyncSnapshot getSnapshotAt(int position) {
+        int slot = slotOf(position);
+        if (position >= spilledCount) {
+            return snapshots[slot];
+        }
+        if (spilledSnapshots[slot] == null) {
+            return null;
         }
-        return events;
+        try {
+            return spillStore.load(spilledSnapshots[slot], bProgram);
+        } catch (Exception e) {
+            logger.error("failed reading spilled sync snapshot {0}", e, keys[slot]);
+            return null;
+        }
+    }
+
+    private SyncSnapshotSpillStore.SpilledSnapshot retain(SyncSnapshotSpillStore.SpilledSnapshot spilledSnapshot) {
+        return spilledSnapshot == null ? null : spillStore.retain(spilledSnapshot);
     }
 
-    private TreeMap<Long, Pair<BProgramSyncSnapshot, BEvent>> cloneTreeMap(SortedMap<Long, Pair<BProgramSyncSnapshot, BEvent>> treeMap) {
-        return new TreeMap<>(treeMap);
+    private synchronized BProgramSyncSnapshot loadRetained(HistoryEntry entry, BProgram entryBProgram) {
+        try {
+            return spillStore.load(entry.spilledSnapshot, entryBProgram);
+        } catch (Exception e) {
+            logger.error("failed reading spilled sync snapshot {0}", e, entry.key);
+            return null;
+        } finally {
+            spillStore.release(entry.spilledSnapshot);
+        }
+    }
+
+    private synchronized void releaseRetained(List<HistoryEntry> entries) {
+        for (HistoryEntry entry : entries) {
+            if (entry.spilledSnapshot != null) {
+                spillStore.release(entry.spilledSnapshot);
+            }
+        }
+    }
+
+    /**
+     * Spilled entries are always the oldest ones, so positions [0, spilledCount) are on disk, or dropped alone.
+     */
+    private void spillOldestInMemory() {
+        int slot = slotOf(spilledCount);
+        SyncSnapshotSpillStore.SpilledSnapshot spilledSnapshot;
+        try {
+            spilledSnapshot = spillStore.prepare(snapshots[slot]);
+        } catch (Exception e) {
+            logger.error("failed serializing sync snapshot {0}, dropping its snapshot, its event is kept in history", e, keys[slot]);
+            dropSnapshotOf(slot);
+            return;
+        }
+
+        while (spilledCount > 0 && !spillStore.isWithinSessionBudget(spillStore.getNewBytes(spilledSnapshot))) {
+            dropOldest();
+            slot = slotOf(spilledCount);
+        }
+        long newBytes = spillStore.getNewBytes(spilledSnapshot);
+        if (!spillStore.isWithinSessionBudget(newBytes)) {
+            logger.warning("session sync snapshots spill budget exceeded, dropping sync snapshot {0}", keys[slot]);
+            dropOldest();
+            return;
+        }
+        if (!SyncSnapshotSpillStore.reserveGlobalBytes(newBytes)) {
+            logger.warning("sync snapshots spill budget of all sessions exceeded, dropping sync snapshot {0}, its event is kept in history", keys[slot]);
+            dropSnapshotOf(slot);
+            return;
+        }
+
+        try {
+            spillStore.store(spilledSnapshot, newBytes);
+        } catch (IOException e) {
+            logger.error("failed spilling sync snapshot {0}, dropping its snapshot, its event is kept in history", e, keys[slot]);
+            spillStore.release(spilledSnapshot);
+            dropSnapshotOf(slot);
+            return;
+        }
+
+        spilledSnapshots[slot] = spilledSnapshot;
+        snapshots[slot] = null;
+        spilledCount++;
+    }
+
+    /**
+     * Turns the oldest in-memory entry into a spilled one without a snapshot.
+     */
+    private void dropSnapshotOf(int slot) {
+        spilledSnapshots[slot] = null;
+        snapshots[slot] = null;
+        spilledCount++;
+    }
+
+    private void dropOldest() {
+        if (spilledCount > 0) {
+            releaseSpilled(head);
+            spilledCount--;
+        }
+        clearSlot(head);
+        head = slotOf(1);
+        size--;
+        globalHistorySize.decrementAndGet();
+    }
+
+    private int positionOf(long snapshotKey) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = keys[slotOf(mid)];
+            if (midKey < snapshotKey) {
+                low = mid + 1;
+            }
+            else if (midKey > snapshotKey) {
+                high = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private void truncate(int newSize) {
+        if (newSize < spilledCount) {
+            for (int position = newSize; position < spilledCount; position++) {
+                releaseSpilled(slotOf(position));
+            }
+            spilledCount = newSize;
+        }
+        for (int position = newSize; position < size; position++) {
+            clearSlot(slotOf(position));
+        }
+        globalHistorySize.addAndGet(newSize - size);
+        size = newSize;
+    }
+
+    private void releaseSpilled(int slot) {
+        if (spilledSnapshots[slot] != null) {
+            spillStore.release(spilledSnapshots[slot]);
+        }
+        spilledSnapshots[slot] = null;
+    }
+
+    private void clearSlot(int slot) {
+        snapshots[slot] = null;
+        events[slot] = null;
+    }
+
+    private int slotOf(int position) {
+        return (head + position) % capacity;
+    }
+
+    /**
+     * A history entry copied by {@link #forEachSyncSnapshot}, holding either its snapshot or a retained spilled one.
+     */
+    private static class HistoryEntry {
+        private final long key;
+        private final BProgramSyncSnapshot snapshot;
+        private final SyncSnapshotSpillStore.SpilledSnapshot spilledSnapshot;
+        private final BEvent event;
+
+        private HistoryEntry(long key, BProgramSyncSnapshot snapshot, SyncSnapshotSpillStore.SpilledSnapshot spilledSnapshot, BEvent event) {
+            this.key = key;
+            this.snapshot = snapshot;
+            this.spilledSnapshot = spilledSnapshot;
+            this.event = event;
+        }
     }
 }
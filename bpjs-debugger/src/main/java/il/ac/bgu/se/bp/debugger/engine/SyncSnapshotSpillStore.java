@@ -0,0 +1,336 @@
+package il.ac.bgu.se.bp.debugger.engine;
+
+import il.ac.bgu.cs.bp.bpjs.bprogramio.BProgramSyncSnapshotIO;
+import il.ac.bgu.cs.bp.bpjs.model.BProgram;
+import il.ac.bgu.cs.bp.bpjs.model.BProgramSyncSnapshot;
+import il.ac.bgu.cs.bp.bpjs.model.BThreadSyncSnapshot;
+import il.ac.bgu.se.bp.utils.SyncSnapshotWriter;
+import il.ac.bgu.se.bp.utils.logger.Logger;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Disk tier of {@link SyncSnapshotHolderImpl}: a per-session segment file of content-addressed blobs.
+ * A spilled snapshot is stored as one blob for its program part (data store, external events, violation tag) and one
+ * blob per b-thread continuation. Blobs are keyed by the SHA-256 of their bytes and reference counted, so b-threads
+ * that did not advance between sync points are written once and shared by all the snapshots that hold them.
+ */
+class SyncSnapshotSpillStore {
+    private static final Logger logger = new Logger(SyncSnapshotSpillStore.class);
+
+    static final long GLOBAL_SPILL_BYTES = 2L * 1024 * 1024 * 1024;
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final AtomicLong globalStoredBytes = new AtomicLong();
+
+    private final long sessionSpillBytes;
+    private final Map<ContentKey, Blob> blobsByContent = new HashMap<>();
+    private final MessageDigest digest;
+
+    private FileChannel segment;
+    private long segmentEnd = 0;
+    private long storedBytes = 0;
+    private long referencedBytes = 0;
+
+    SyncSnapshotSpillStore(long sessionSpillBytes) {
+        this.sessionSpillBytes = sessionSpillBytes;
+        try {
+            this.digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " is not available", e);
+        }
+    }
+
+    /**
+     * Serializes the snapshot into its blobs, without storing them yet.
+     */
+    SpilledSnapshot prepare(BProgramSyncSnapshot snapshot) throws IOException {
+        BProgramSyncSnapshot programPart = new BProgramSyncSnapshot(snapshot.getBProgram(), Collections.emptySet(),
+                snapshot.getDataStore(), snapshot.getExternalEvents(), snapshot.getViolationTag());
+
+        List<byte[]> parts = new ArrayList<>(snapshot.getBThreadSnapshots().size() + 1);
+        parts.add(SyncSnapshotWriter.serialize(programPart));
+        for (BThreadSyncSnapshot bThreadSnapshot : snapshot.getBThreadSnapshots()) {
+            parts.add(SyncSnapshotWriter.serializeBThread(snapshot.getBProgram(), bThreadSnapshot));
+        }
+
+        SpilledSnapshot spilledSnapshot = new SpilledSnapshot(parts.size());
+        for (int i = 0; i < parts.size(); i++) {
+            spilledSnapshot.keys[i] = new ContentKey(digest.digest(parts.get(i)));
+            spilledSnapshot.pendingParts[i] = parts.get(i);
+        }
+        return spilledSnapshot;
+    }
+
+    /**
+     * @return how many bytes storing the snapshot would add, blobs already in the store are free
+     */
+    long getNewBytes(SpilledSnapshot spilledSnapshot) {
+        long newBytes = 0;
+        Set<ContentKey> counted = new HashSet<>();
+        for (int i = 0; i < spilledSnapshot.keys.length; i++) {
+            ContentKey key = spilledSnapshot.keys[i];
+            if (!blobsByContent.containsKey(key) && counted.add(key)) {
+                newBytes += spilledSnapshot.pendingParts[i].length;
+            }
+        }
+        return newBytes;
+    }
+
+    boolean isWithinSessionBudget(long newBytes) {
+        return storedBytes + newBytes <= sessionSpillBytes;
+    }
+
+    /**
+     * Reserves bytes of the budget of all the sessions, before storing them with {@link #store}.
+     *
+     * @return false, reserving nothing, if the bytes do not fit in the budget
+     */
+    static boolean reserveGlobalBytes(long bytes) {
+        long stored;
+        do {
+            stored = globalStoredBytes.get();
+            if (stored + bytes > GLOBAL_SPILL_BYTES) {
+                return false;
+            }
+        } while (!globalStoredBytes.compareAndSet(stored, stored + bytes));
+        return true;
+    }
+
+    static void releaseGlobalBytes(long bytes) {
+        globalStoredBytes.addAndGet(-bytes);
+    }
+
+    /**
+     * @param reservedBytes bytes reserved for the snapshot by {@link #reserveGlobalBytes}, as given by
+     *                      {@link #getNewBytes}. What is not written is given back, also when storing fails.
+     */
+    void store(SpilledSnapshot spilledSnapshot, long reservedBytes) throws IOException {
+        long writtenBytes = 0;
+        try {
+            compactIfNeeded();
+            for (int i = 0; i < spilledSnapshot.keys.length; i++) {
+                Blob blob = blobsByContent.get(spilledSnapshot.keys[i]);
+                if (blob == null) {
+                    blob = write(spilledSnapshot.keys[i], spilledSnapshot.pendingParts[i]);
+                    writtenBytes += blob.length;
+                }
+                blob.refCount++;
+                referencedBytes += blob.length;
+                spilledSnapshot.blobs[i] = blob;
+                spilledSnapshot.pendingParts[i] = null;
+            }
+        } finally {
+            releaseGlobalBytes(reservedBytes - writtenBytes);
+        }
+    }
+
+    BProgramSyncSnapshot load(SpilledSnapshot spilledSnapshot, BProgram bProgram) throws IOException, ClassNotFoundException {
+        BProgramSyncSnapshotIO snapshotIO = new BProgramSyncSnapshotIO(bProgram);
+        BProgramSyncSnapshot programPart = snapshotIO.deserialize(read(spilledSnapshot.blobs[0]));
+
+        Set<BThreadSyncSnapshot> bThreadSnapshots = new HashSet<>();
+        for (int i = 1; i < spilledSnapshot.blobs.length; i++) {
+            bThreadSnapshots.add(snapshotIO.deserializeBThread(read(spilledSnapshot.blobs[i]), programPart.getDataStore()));
+        }
+        return new BProgramSyncSnapshot(bProgram, bThreadSnapshots, programPart.getDataStore(),
+                programPart.getExternalEvents(), programPart.getViolationTag());
+    }
+
+    /**
+     * @return a handle to the same blobs, which stay in the store until both handles are released
+     */
+    SpilledSnapshot retain(SpilledSnapshot spilledSnapshot) {
+        SpilledSnapshot retained = new SpilledSnapshot(spilledSnapshot.blobs.length);
+        for (int i = 0; i < spilledSnapshot.blobs.length; i++) {
+            Blob blob = spilledSnapshot.blobs[i];
+            blob.refCount++;
+            referencedBytes += blob.length;
+            retained.keys[i] = spilledSnapshot.keys[i];
+            retained.blobs[i] = blob;
+        }
+        return retained;
+    }
+
+    /**
+     * Handles of a closed store are already released.
+     */
+    void release(SpilledSnapshot spilledSnapshot) {
+        for (Blob blob : spilledSnapshot.blobs) {
+            if (blob == null || !isLive(blob)) {
+                continue;
+            }
+            referencedBytes -= blob.length;
+            if (--blob.refCount == 0) {
+                blobsByContent.remove(blob.key);
+                storedBytes -= blob.length;
+                releaseGlobalBytes(blob.length);
+            }
+        }
+        Arrays.fill(spilledSnapshot.blobs, null);
+    }
+
+    long getStoredBytes() {
+        return storedBytes;
+    }
+
+    /**
+     * @return bytes referenced by the spilled snapshots per byte actually stored, 1 when nothing is shared
+     */
+    double getDeduplicationRatio() {
+        return storedBytes == 0 ? 1 : (double) referencedBytes / storedBytes;
+    }
+
+    static long getGlobalStoredBytes() {
+        return globalStoredBytes.get();
+    }
+
+    void close() {
+        new ArrayList<>(blobsByContent.values()).forEach(blob -> {
+            storedBytes -= blob.length;
+            releaseGlobalBytes(blob.length);
+        });
+        blobsByContent.clear();
+        referencedBytes = 0;
+        segmentEnd = 0;
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.close();
+        } catch (IOException e) {
+            logger.error("failed closing sync snapshots segment", e);
+        }
+        segment = null;
+    }
+
+    private Blob write(ContentKey key, byte[] bytes) throws IOException {
+        if (segment == null) {
+            Path segmentFile = Files.createTempFile("bpjs-sync-snapshots-", ".seg");
+            segment = FileChannel.open(segmentFile, READ, WRITE, DELETE_ON_CLOSE);
+            segmentEnd = 0;
+        }
+        writeFully(ByteBuffer.wrap(bytes), segmentEnd);
+
+        Blob blob = new Blob(key, segmentEnd, bytes.length);
+        blobsByContent.put(key, blob);
+        segmentEnd += bytes.length;
+        storedBytes += bytes.length;
+        return blob;
+    }
+
+    private boolean isLive(Blob blob) {
+        return blobsByContent.get(blob.key) == blob;
+    }
+
+    /**
+     * Reads positionally rather than mapping the segment: a mapping cannot be unmapped before it is garbage collected,
+     * so it would keep the deleted segment on disk after {@link #close} and break truncating it in compaction.
+     */
+    private byte[] read(Blob blob) throws IOException {
+        if (!isLive(blob)) {
+            throw new IOException("sync snapshot blob was released");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(blob.length);
+        long position = blob.offset;
+        while (buffer.hasRemaining()) {
+            int read = segment.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("sync snapshots segment ended before the end of a blob");
+            }
+            position += read;
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Released blobs leave holes in the segment. Once the holes outgrow the live blobs, the live blobs are moved
+     * down to the start of the segment, keeping their order.
+     */
+    private void compactIfNeeded() throws IOException {
+        if (segment == null || segmentEnd - storedBytes <= storedBytes) {
+            return;
+        }
+
+        List<Blob> liveBlobs = new ArrayList<>(blobsByContent.values());
+        liveBlobs.sort(Comparator.comparingLong(blob -> blob.offset));
+        long position = 0;
+        for (Blob blob : liveBlobs) {
+            if (blob.offset != position) {
+                writeFully(ByteBuffer.wrap(read(blob)), position);
+                blob.offset = position;
+            }
+            position += blob.length;
+        }
+        segment.truncate(position);
+        segmentEnd = position;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += segment.write(buffer, position);
+        }
+    }
+
+    static class SpilledSnapshot {
+        private final ContentKey[] keys;
+        private final byte[][] pendingParts;
+        private final Blob[] blobs;
+
+        private SpilledSnapshot(int partsCount) {
+            this.keys = new ContentKey[partsCount];
+            this.pendingParts = new byte[partsCount][];
+            this.blobs = new Blob[partsCount];
+        }
+    }
+
+    private static class Blob {
+        private final ContentKey key;
+        private final int length;
+        private long offset;
+        private int refCount;
+
+        private Blob(ContentKey key, long offset, int length) {
+            this.key = key;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static class ContentKey {
+        private final byte[] hash;
+        private final int hashCode;
+
+        private ContentKey(byte[] hash) {
+            this.hash = hash;
+            this.hashCode = Arrays.hashCode(hash);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            return Arrays.equals(hash, ((ContentKey) o).hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
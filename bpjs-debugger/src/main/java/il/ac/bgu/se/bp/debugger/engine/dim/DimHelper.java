@@ -8,6 +8,7 @@ public interface DimHelper {
 
     void setGuiCallback(GuiCallback callback);
     void attachTo(ContextFactory factory);
+    void detach();
     void stop();
     void setReturnValue(int returnValue);
     void go();
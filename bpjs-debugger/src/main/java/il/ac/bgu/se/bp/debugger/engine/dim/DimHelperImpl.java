@@ -22,6 +22,11 @@ public class DimHelperImpl implements DimHelper {
         dim.attachTo(factory);
     }
 
+    @Override
+    public void detach() {
+        dim.detach();
+    }
+
     @Override
     public void stop() {
         dim.setReturnValue(Dim.EXIT);
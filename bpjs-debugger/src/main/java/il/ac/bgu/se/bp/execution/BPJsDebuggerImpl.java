@@ -19,9 +19,12 @@ import il.ac.bgu.se.bp.debugger.engine.events.BPConsoleEvent;
 import il.ac.bgu.se.bp.debugger.engine.events.ProgramStatusEvent;
 import il.ac.bgu.se.bp.debugger.manage.ProgramValidator;
 import il.ac.bgu.se.bp.error.ErrorCode;
+import il.ac.bgu.se.bp.execution.manage.CachedBProgram;
+import il.ac.bgu.se.bp.execution.manage.SessionArchiveIO;
 import il.ac.bgu.se.bp.rest.response.BooleanResponse;
 import il.ac.bgu.se.bp.rest.response.DebugResponse;
 import il.ac.bgu.se.bp.rest.response.GetSyncSnapshotsResponse;
+import il.ac.bgu.se.bp.rest.response.ScopeVariableResponse;
 import il.ac.bgu.se.bp.rest.response.SyncSnapshot;
 import il.ac.bgu.se.bp.socket.console.ConsoleMessage;
 import il.ac.bgu.se.bp.socket.console.LogType;
@@ -30,19 +33,31 @@ import il.ac.bgu.se.bp.socket.state.EventInfo;
 import il.ac.bgu.se.bp.socket.status.Status;
 import il.ac.bgu.se.bp.utils.DebuggerBProgramRunnerListener;
 import il.ac.bgu.se.bp.utils.DebuggerExecutorServiceMaker;
+import il.ac.bgu.se.bp.utils.DebuggerMetrics;
 import il.ac.bgu.se.bp.utils.DebuggerPrintStream;
 import il.ac.bgu.se.bp.utils.DebuggerStateHelper;
+import il.ac.bgu.se.bp.utils.SyncSnapshotWriter;
 import il.ac.bgu.se.bp.utils.logger.Logger;
 import il.ac.bgu.se.bp.utils.observer.BPEvent;
 import il.ac.bgu.se.bp.utils.observer.Subscriber;
+import io.micrometer.core.instrument.Timer;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.json.JsonParser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.StringUtils;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static il.ac.bgu.cs.bp.bpjs.model.StorageModificationStrategy.PASSTHROUGH;
 import static il.ac.bgu.se.bp.utils.Common.NO_MORE_WAIT_EXTERNAL;
@@ -53,6 +68,10 @@ import static java.util.Collections.reverseOrder;
 
 public class BPJsDebuggerImpl implements BPJsDebugger<BooleanResponse> {
     private final static AtomicInteger debuggerThreadIdGenerator = new AtomicInteger(0);
+    private final static Timer syncStepTimer = DebuggerMetrics.syncStepTimer(DebuggerMetrics.DEBUG_MODE);
+    private final static Timer eventSelectionTimer = DebuggerMetrics.eventSelectionTimer(DebuggerMetrics.DEBUG_MODE);
+    private final static Timer triggerEventTimer = DebuggerMetrics.triggerEventTimer(DebuggerMetrics.DEBUG_MODE);
+    private final static Timer replayTimer = DebuggerMetrics.replayTimer();
     private Logger logger;
 
     private String debuggerId;
@@ -77,7 +96,6 @@ public class BPJsDebuggerImpl implements BPJsDebugger<BooleanResponse> {
     private final DebuggerStateHelper debuggerStateHelper;
     private final DebuggerPrintStream debuggerPrintStream = new DebuggerPrintStream();
     private final List<BProgramRunnerListener> listeners = new ArrayList<>();
-    private final List<Subscriber<BPEvent>> subscribers = new ArrayList<>();
 
     @Autowired
     private ProgramValidator<BPJsDebugger> bPjsProgramValidator;
@@ -97,13 +115,14 @@ public class BPJsDebuggerImpl implements BPJsDebugger<BooleanResponse> {
 
     private void initDebugger() {
         debuggerExecutorId = "BPJsDebuggerRunner-" + debuggerThreadIdGenerator.incrementAndGet();
-        jsExecutorService = BPjs.getExecutorServiceMaker().makeWithName(debuggerExecutorId);
-        bpExecutorService = BPjs.getExecutorServiceMaker().makeWithName(debuggerExecutorId);
         logger = new Logger(BPJsDebuggerImpl.class, debuggerId);
         debuggerEngine = new DebuggerEngineImpl(debuggerId, filename, state, debuggerStateHelper, debuggerExecutorId);
         debuggerEngine.changeDebuggerLevel(debuggerLevel);
+        DebuggerExecutorServiceMaker executorServiceMaker = new DebuggerExecutorServiceMaker();
+        jsExecutorService = executorServiceMaker.makeWithName(debuggerExecutorId, debuggerEngine.getContextFactory());
+        bpExecutorService = executorServiceMaker.makeWithName(debuggerExecutorId, debuggerEngine.getContextFactory());
         debuggerPrintStream.setDebuggerId(debuggerId);
-        bprog = new ResourceBProgram(filename);
+        bprog = new CachedBProgram(filename);
         initListeners(bprog);
     }
 
@@ -150,6 +169,7 @@ public class BPJsDebuggerImpl implements BPJsDebugger<BooleanResponse> {
     public synchronized BooleanResponse toggleMuteSyncPoints(boolean toggleMuteSyncPoints) {
         logger.info("toggleMuteSyncPoints to: {0}", toggleMuteSyncPoints);
         this.isSkipSyncPoints = toggleMuteSyncPoints;
+        debuggerEngine.markStateChanged();
         return createSuccessResponse();
     }
 
@@ -167,16 +187,71 @@ public class BPJsDebuggerImpl implements BPJsDebugger<BooleanResponse> {
     @Override
     public byte[] getSyncSnapshot() {
         try {
-            return new BProgramSyncSnapshotIO(bprog).serialize(syncSnapshot);
+            return SyncSnapshotWriter.serialize(syncSnapshot);
         } catch (Exception e) {
             logger.error("failed serializing bprog SyncSnapshot", e);
             return null;
         }
     }
 
+    @Override
+    public void writeSyncSnapshot(OutputStream outputStream) throws IOException {
+        SyncSnapshotWriter.write(syncSnapshot, outputStream);
+    }
+
+    @Override
+    public void exportSession(OutputStream outputStream) throws IOException {
+        boolean[] breakpoints = debuggerEngine.getBreakpoints();
+        List<Integer> breakpointLines = new ArrayList<>();
+        for (int lineNumber = 0; lineNumber < breakpoints.length; lineNumber++) {
+            if (breakpoints[lineNumber]) {
+                breakpointLines.add(lineNumber);
+            }
+        }
+        SessionArchiveIO.Settings settings = new SessionArchiveIO.Settings(isMuteBreakPoints(), isSkipSyncPoints, isWaitForExternalEvents(), breakpointLines);
+        new SessionArchiveIO(bprog).write(outputStream, settings, syncSnapshotHolder, syncSnapshot);
+    }
+
+    @Override
+    public DebugResponse importSession(InputStream inputStream) {
+        notifySubscribers(new ProgramStatusEvent(debuggerId, getRunStatusByDebuggerLevel(debuggerLevel)));
+        SessionArchiveIO sessionArchiveIO = new SessionArchiveIO(bprog);
+        SessionArchiveIO.Settings settings;
+        try {
+            settings = sessionArchiveIO.readSettings(inputStream);
+        } catch (Exception e) {
+            logger.error("failed reading session settings, error: {0}", e, e.getMessage());
+            return new DebugResponse(false, ErrorCode.IMPORT_SYNC_SNAPSHOT_FAILURE, new boolean[0]);
+        }
+
+        Map<Integer, Boolean> breakpointsMap = settings.getBreakpoints().stream()
+                .collect(Collectors.toMap(Function.identity(), b -> Boolean.TRUE, (b1, b2) -> b1));
+        DebugResponse debugResponse = setup(breakpointsMap, settings.isSkipBreakpoints(), settings.isSkipSyncPoints(), settings.isWaitForExternalEvents());
+        if (!debugResponse.isSuccess()) {
+            return debugResponse;
+        }
+
+        BProgramSyncSnapshot currentSnapshot;
+        try {
+            currentSnapshot = sessionArchiveIO.readSyncSnapshots(inputStream, syncSnapshotHolder);
+        } catch (Exception e) {
+            logger.error("failed reading session sync snapshots, error: {0}", e, e.getMessage());
+            onExit();
+            notifySubscribers(new ProgramStatusEvent(debuggerId, Status.STOP));
+            return new DebugResponse(false, ErrorCode.IMPORT_SYNC_SNAPSHOT_FAILURE, debugResponse.getBreakpoints());
+        }
+
+        setIsStarted(true);
+        listeners.forEach(l -> l.started(bprog));
+        state.setDebuggerState(RunnerState.State.SYNC_STATE);
+        setSyncSnapshot(currentSnapshot);
+        notifySubscribers(new ProgramStatusEvent(debuggerId, Status.SYNCSTATE));
+        return debugResponse;
+    }
+
     @Override
     public BooleanResponse setSyncSnapshot(long snapShotTime) {
-        logger.info("setSyncSnapshot() snapShotTime: {0}, state: {1}", snapShotTime, state.getDebuggerState().toString());
+        logger.info("setSyncSnapshot() snapShotTime: {0}, taken at: {1}, state: {2}", snapShotTime, syncSnapshotHolder.getSyncSnapshotTime(snapShotTime), state.getDebuggerState().toString());
         if (!checkStateEquals(RunnerState.State.SYNC_STATE)) {
             return createErrorResponse(ErrorCode.NOT_IN_BP_SYNC_STATE);
         }
@@ -224,6 +299,44 @@ public class BPJsDebuggerImpl implements BPJsDebugger<BooleanResponse> {
         return debuggerStateHelper.generateEventsHistory(from, to);
     }
 
+    @Override
+    public ScopeVariableResponse getBThreadVariable(String bThreadName, int frame, String path, int from, int to) {
+        if (!isPaused()) {
+            return new ScopeVariableResponse(ErrorCode.NOT_IN_BP_SYNC_STATE);
+        }
+        return debuggerStateHelper.getBThreadVariable(bThreadName, frame, path, from, to);
+    }
+
+    @Override
+    public ScopeVariableResponse getGlobalVariable(String path, int from, int to) {
+        if (!isPaused()) {
+            return new ScopeVariableResponse(ErrorCode.NOT_IN_BP_SYNC_STATE);
+        }
+        return debuggerStateHelper.getGlobalVariable(path, from, to);
+    }
+
+    /**
+     * The kept scopes are live Rhino objects, they are only read while the program does not run.
+     */
+    private boolean isPaused() {
+        return checkStateEquals(RunnerState.State.SYNC_STATE) || checkStateEquals(RunnerState.State.JS_DEBUG);
+    }
+
+    @Override
+    public boolean hasConsoleLog() {
+        return debuggerPrintStream.isSpilled();
+    }
+
+    @Override
+    public void writeConsoleLog(OutputStream outputStream) throws IOException {
+        debuggerPrintStream.writeSpilledLog(outputStream);
+    }
+
+    @Override
+    public void deleteConsoleLog() {
+        debuggerPrintStream.deleteSpilledLog();
+    }
+
     private synchronized void setIsStarted(boolean isStarted) {
         this.isStarted = isStarted;
     }
@@ -288,6 +401,147 @@ public class BPJsDebuggerImpl implements BPJsDebugger<BooleanResponse> {
         }
     }
 
+    @Override
+    public DebugResponse replay(Map<Integer, Boolean> breakpointsMap, boolean isSkipSyncPoints, boolean isSkipBreakpoints, boolean isWaitForExternalEvents,
+                                List<EventInfo> events, int targetIndex) {
+        if (events == null || targetIndex < 0 || targetIndex > events.size()) {
+            return new DebugResponse(createErrorResponse(ErrorCode.INVALID_REQUEST));
+        }
+        List<BEvent> replayedEvents = toRecordedEvents(events.subList(0, targetIndex));
+        if (replayedEvents == null) {
+            return new DebugResponse(createErrorResponse(ErrorCode.INVALID_REQUEST));
+        }
+        notifySubscribers(new ProgramStatusEvent(debuggerId, getRunStatusByDebuggerLevel(debuggerLevel)));
+        DebugResponse debugResponse = setup(breakpointsMap, isSkipBreakpoints, isSkipSyncPoints, isWaitForExternalEvents);
+        if (debugResponse.isSuccess()) {
+            bpExecutorService.execute(() -> runReplay(replayedEvents, isSkipBreakpoints));
+        }
+        return debugResponse;
+    }
+
+    /**
+     * Rebuilds the recorded events with their data parsed from JSON, numbers as doubles like the numbers of the program.
+     *
+     * @return the recorded events, or null if the data of one of them is not valid JSON
+     */
+    private List<BEvent> toRecordedEvents(List<EventInfo> events) {
+        Context cx = Context.enter();
+        try {
+            Scriptable scope = cx.initSafeStandardObjects();
+            List<BEvent> recordedEvents = new ArrayList<>(events.size());
+            for (EventInfo event : events) {
+                if (event == null || event.getName() == null) {
+                    return null;
+                }
+                Object data = event.getData() == null ? null : toJsNumbers(new JsonParser(cx, scope).parseValue(event.getData()));
+                recordedEvents.add(new BEvent(event.getName(), data));
+            }
+            return recordedEvents;
+        } catch (JsonParser.ParseException e) {
+            logger.error("invalid replayed event data, error: {0}", e.getMessage());
+            return null;
+        } finally {
+            Context.exit();
+        }
+    }
+
+    private static Object toJsNumbers(Object value) {
+        if (value instanceof Integer) {
+            return ((Integer) value).doubleValue();
+        }
+        if (value instanceof ScriptableObject) {
+            ScriptableObject object = (ScriptableObject) value;
+            for (Object id : object.getIds()) {
+                if (id instanceof Integer) {
+                    object.put((Integer) id, object, toJsNumbers(object.get((Integer) id, object)));
+                } else {
+                    object.put((String) id, object, toJsNumbers(object.get((String) id, object)));
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Selects the recorded events one after the other, straight on the sync snapshots: no state is generated, no
+     * subscriber or runner listener is notified and nothing is added to the sync snapshots history until the target
+     * sync point, which starts the history.
+     */
+    private void runReplay(List<BEvent> events, boolean isSkipBreakpoints) {
+        Timer.Sample replay = Timer.start();
+        try {
+            setIsStarted(true);
+            listeners.forEach(l -> l.started(bprog));
+            state.setDebuggerState(RunnerState.State.RUNNING);
+            int replayedEvents;
+            debuggerEngine.toggleMuteBreakpoints(true);
+            try {
+                syncSnapshot = syncSnapshot.start(jsExecutorService, PASSTHROUGH);
+                replayedEvents = replayEvents(events);
+            } finally {
+                debuggerEngine.toggleMuteBreakpoints(isSkipBreakpoints);
+            }
+            if (!syncSnapshot.isStateValid()) {
+                onInvalidStateError("Replay fatal error");
+                onExit();
+                return;
+            }
+            replay.stop(replayTimer);
+            logger.info("replayed {0} of {1} events", replayedEvents, events.size());
+            if (replayedEvents < events.size()) {
+                String message = "Replay stopped after " + replayedEvents + " events, " + events.get(replayedEvents) + " is not selectable";
+                notifySubscribers(new BPConsoleEvent(debuggerId, new ConsoleMessage(message, LogType.warning)));
+            }
+
+            state.setDebuggerState(RunnerState.State.SYNC_STATE);
+            debuggerEngine.setSyncSnapshot(syncSnapshot);
+            syncSnapshotHolder.addSyncSnapshot(syncSnapshot, null);
+            debuggerEngine.onStateChanged();
+            notifySubscribers(new ProgramStatusEvent(debuggerId, Status.SYNCSTATE));
+        } catch (InterruptedException e) {
+            if (debuggerEngine.isRunning()) {
+                logger.warning("got InterruptedException in replay");
+                onExit();
+            }
+        } catch (RejectedExecutionException e) {
+            logger.error("Forced to stop");
+            onExit();
+        } catch (Exception e) {
+            logger.error("runReplay failed, error: {0}", e.getMessage());
+            notifySubscribers(new BPConsoleEvent(debuggerId, new ConsoleMessage(e.getMessage(), LogType.error)));
+        }
+    }
+
+    /**
+     * Recorded events with data are matched by {@link BEvent#equals} among the selectable events, so the replay stops
+     * rather than selecting an event of the same name with other data. Recorded events without data are matched by
+     * name, the event selection strategy chooses between selectable events of the same name.
+     *
+     * @return the number of events replayed, less than the trace's size if the program diverged from it
+     */
+    private int replayEvents(List<BEvent> events) throws InterruptedException {
+        EventSelectionStrategy eventSelectionStrategy = bprog.getEventSelectionStrategy();
+        int replayedEvents = 0;
+        while (replayedEvents < events.size() && syncSnapshot.isStateValid()) {
+            BEvent recordedEvent = events.get(replayedEvents);
+            Set<BEvent> recordedEvents = eventSelectionStrategy.selectableEvents(syncSnapshot).stream()
+                    .filter(event -> recordedEvent.getData() == null ? event.getName().equals(recordedEvent.getName()) : event.equals(recordedEvent))
+                    .collect(Collectors.toSet());
+            Optional<EventSelectionResult> eventOptional = recordedEvents.isEmpty() ? Optional.empty()
+                    : eventSelectionStrategy.select(syncSnapshot, recordedEvents);
+            if (!eventOptional.isPresent()) {
+                break;
+            }
+            EventSelectionResult eventSelectionResult = eventOptional.get();
+            if (!eventSelectionResult.getIndicesToRemove().isEmpty()) {
+                removeExternalEvents(eventSelectionResult);
+            }
+            syncSnapshot = syncSnapshot.triggerEvent(eventSelectionResult.getEvent(), jsExecutorService, Collections.emptyList(), PASSTHROUGH);
+            replayedEvents++;
+        }
+        return replayedEvents;
+    }
+
     private void onInvalidStateError(String error) {
         SafetyViolationTag violationTag = syncSnapshot.getViolationTag();
         listeners.forEach(l -> l.assertionFailed(bprog, violationTag));
@@ -313,7 +567,7 @@ public class BPJsDebuggerImpl implements BPJsDebugger<BooleanResponse> {
     }
 
     private void runNextSync() {
-        logger.info("runNextSync state: {0}", state.getDebuggerState());
+        logger.debug("runNextSync state: {0}", state.getDebuggerState());
         if (!isThereAnyPossibleEvents()) {
             if (!bprog.isWaitForExternalEvents()) {
                 debuggerEngine.onStateChanged();
@@ -335,12 +589,16 @@ public class BPJsDebuggerImpl implements BPJsDebugger<BooleanResponse> {
         state.setDebuggerState(RunnerState.State.RUNNING);
         notifySubscribers(new ProgramStatusEvent(debuggerId, getRunStatusByDebuggerLevel(debuggerLevel)));
 
-        logger.info("External events: {0}, possibleEvents: {1}", syncSnapshot.getExternalEvents(), possibleEvents);
+        logger.debug("External events: {0}, possibleEvents: {1}", syncSnapshot.getExternalEvents(), possibleEvents);
 
+        Timer.Sample syncStep = Timer.start();
         try {
+            Timer.Sample eventSelection = Timer.start();
             Optional<EventSelectionResult> eventOptional = eventSelectionStrategy.select(syncSnapshot, possibleEvents);
+            eventSelection.stop(eventSelectionTimer);
             if (eventOptional.isPresent()) {
                 nextSyncOnChosenEvent(eventOptional.get());
+                syncStep.stop(syncStepTimer);
             }
             else {
                 logger.info("Events queue is empty");
@@ -366,11 +624,13 @@ public class BPJsDebuggerImpl implements BPJsDebugger<BooleanResponse> {
         if (!eventSelectionResult.getIndicesToRemove().isEmpty()) {
             removeExternalEvents(eventSelectionResult);
         }
-        logger.info("Triggering event " + event);
+        logger.debug("Triggering event {0}", event);
         debuggerStateHelper.updateCurrentEvent(event.getName());
         BProgramSyncSnapshot lastSnapshot = syncSnapshot;
         debuggerEngine.setSyncSnapshot(syncSnapshot);
+        Timer.Sample trigger = Timer.start();
         syncSnapshot = syncSnapshot.triggerEvent(event, jsExecutorService, listeners, PASSTHROUGH);
+        trigger.stop(triggerEventTimer);
         if (!syncSnapshot.isStateValid()) {
             onInvalidStateError("Next Sync fatal error");
             return;
@@ -380,7 +640,7 @@ public class BPJsDebuggerImpl implements BPJsDebugger<BooleanResponse> {
             syncSnapshotHolder.addSyncSnapshot(lastSnapshot, event);
         }
         debuggerEngine.setSyncSnapshot(syncSnapshot);
-        logger.info("~NEW SYNC STATE~");
+        logger.debug("~NEW SYNC STATE~");
         if (isSkipSyncPoints || event.equals(NO_MORE_WAIT_EXTERNAL)) {
             nextSync();
         }
@@ -413,6 +673,7 @@ public class BPJsDebuggerImpl implements BPJsDebugger<BooleanResponse> {
 
     private void onExit() {
         logger.info("started onExit process");
+        debuggerPrintStream.close();
         debuggerEngine.stop();
         jsExecutorService.shutdownNow();
         bpExecutorService.shutdownNow();
@@ -420,6 +681,7 @@ public class BPJsDebuggerImpl implements BPJsDebugger<BooleanResponse> {
         if (!jsExecutorService.isTerminated()) {
             forceStopDebugger();
         }
+        syncSnapshotHolder.clear();
     }
 
     private void forceStopDebugger() {
@@ -558,6 +820,7 @@ public class BPJsDebuggerImpl implements BPJsDebugger<BooleanResponse> {
     @Override
     public BooleanResponse toggleWaitForExternalEvents(boolean shouldWait) {
         bprog.setWaitForExternalEvents(shouldWait);
+        debuggerEngine.markStateChanged();
         return createSuccessResponse();
     }
 
@@ -581,23 +844,23 @@ public class BPJsDebuggerImpl implements BPJsDebugger<BooleanResponse> {
 
     @Override
     public void subscribe(Subscriber<BPEvent> subscriber) {
-        subscribers.add(subscriber);
         debuggerEngine.subscribe(subscriber);
         debuggerPrintStream.subscribe(subscriber);
     }
 
     @Override
     public void unsubscribe(Subscriber<BPEvent> subscriber) {
-        subscribers.remove(subscriber);
         debuggerEngine.unsubscribe(subscriber);
         debuggerPrintStream.unsubscribe(subscriber);
     }
 
+    /**
+     * Console output is sent when printed, status events are sent after the states published before them.
+     */
     @Override
     public void notifySubscribers(BPEvent event) {
-        for (Subscriber<BPEvent> subscriber : subscribers) {
-            subscriber.update(event);
-        }
+        debuggerPrintStream.flush();
+        debuggerEngine.notifySubscribers(event);
     }
 
     @Override
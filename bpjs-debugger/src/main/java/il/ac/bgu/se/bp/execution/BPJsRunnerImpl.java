@@ -0,0 +1,470 @@
+package il.ac.bgu.se.bp.execution;
+
+import il.ac.bgu.cs.bp.bpjs.execution.listeners.BProgramRunnerListener;
+import il.ac.bgu.cs.bp.bpjs.execution.listeners.PrintBProgramRunnerListener;
+import il.ac.bgu.cs.bp.bpjs.model.*;
+import il.ac.bgu.cs.bp.bpjs.model.eventselection.EventSelectionResult;
+import il.ac.bgu.cs.bp.bpjs.model.eventselection.EventSelectionStrategy;
+import il.ac.bgu.se.bp.debugger.BPJsDebugger;
+import il.ac.bgu.se.bp.debugger.RunnerState;
+import il.ac.bgu.se.bp.debugger.engine.events.BPConsoleEvent;
+import il.ac.bgu.se.bp.debugger.engine.events.ProgramStatusEvent;
+import il.ac.bgu.se.bp.error.ErrorCode;
+import il.ac.bgu.se.bp.execution.manage.CachedBProgram;
+import il.ac.bgu.se.bp.execution.manage.SessionArchiveIO;
+import il.ac.bgu.se.bp.rest.response.BooleanResponse;
+import il.ac.bgu.se.bp.rest.response.DebugResponse;
+import il.ac.bgu.se.bp.rest.response.GetSyncSnapshotsResponse;
+import il.ac.bgu.se.bp.rest.response.ScopeVariableResponse;
+import il.ac.bgu.se.bp.rest.response.SyncSnapshot;
+import il.ac.bgu.se.bp.socket.console.ConsoleMessage;
+import il.ac.bgu.se.bp.socket.console.LogType;
+import il.ac.bgu.se.bp.socket.state.EventInfo;
+import il.ac.bgu.se.bp.socket.status.Status;
+import il.ac.bgu.se.bp.utils.DebuggerExecutorServiceMaker;
+import il.ac.bgu.se.bp.utils.DebuggerMetrics;
+import il.ac.bgu.se.bp.utils.DebuggerPrintStream;
+import il.ac.bgu.se.bp.utils.Pair;
+import il.ac.bgu.se.bp.utils.SyncSnapshotWriter;
+import il.ac.bgu.se.bp.utils.logger.Logger;
+import il.ac.bgu.se.bp.utils.observer.BPEvent;
+import il.ac.bgu.se.bp.utils.observer.Subscriber;
+import io.micrometer.core.instrument.Timer;
+import org.mozilla.javascript.ContextFactory;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static il.ac.bgu.cs.bp.bpjs.model.StorageModificationStrategy.PASSTHROUGH;
+import static il.ac.bgu.se.bp.utils.Common.NO_MORE_WAIT_EXTERNAL;
+import static il.ac.bgu.se.bp.utils.ResponseHelper.createErrorResponse;
+import static il.ac.bgu.se.bp.utils.ResponseHelper.createSuccessResponse;
+import static java.util.Collections.reverseOrder;
+
+/**
+ * Headless runner for the run mode.
+ * The program runs on executor threads that hold a plain Rhino context, with no {@code Dim} debugger attached and
+ * no debug information generated, and no debugger state is generated on sync points.
+ * Subscribers get console output (including the selected events) and program status events only.
+ * Debugging operations are not supported.
+ */
+public class BPJsRunnerImpl implements BPJsDebugger<BooleanResponse> {
+    private final static AtomicInteger runnerThreadIdGenerator = new AtomicInteger(0);
+    private final static ContextFactory runnerContextFactory = new ContextFactory();
+    private final static Timer syncStepTimer = DebuggerMetrics.syncStepTimer(DebuggerMetrics.RUN_MODE);
+    private final static Timer eventSelectionTimer = DebuggerMetrics.eventSelectionTimer(DebuggerMetrics.RUN_MODE);
+    private final static Timer triggerEventTimer = DebuggerMetrics.triggerEventTimer(DebuggerMetrics.RUN_MODE);
+
+    public static final int DEFAULT_MAX_EVENTS_HISTORY_SIZE = 1024;
+
+    private Logger logger;
+
+    private final String runnerId;
+    private final String filename;
+    private String runnerExecutorId;
+
+    private volatile boolean isSetup = false;
+    private volatile boolean isStarted = false;
+
+    private ExecutorService jsExecutorService;
+    private ExecutorService bpExecutorService;
+    private BProgram bprog;
+    private volatile BProgramSyncSnapshot syncSnapshot;
+
+    private final RunnerState state = new RunnerState();
+    private final DebuggerPrintStream debuggerPrintStream = new DebuggerPrintStream();
+    private final List<BProgramRunnerListener> listeners = new ArrayList<>();
+    private final List<Subscriber<BPEvent>> subscribers = new CopyOnWriteArrayList<>();
+    private final Deque<Pair<Long, String>> eventsHistory = new ArrayDeque<>();
+    private long nextEventKey = 0;
+
+    public BPJsRunnerImpl(String runnerId, String filename) {
+        this.runnerId = runnerId;
+        this.filename = filename;
+        initRunner();
+    }
+
+    private void initRunner() {
+        runnerExecutorId = "BPJsRunner-" + runnerThreadIdGenerator.incrementAndGet();
+        DebuggerExecutorServiceMaker executorServiceMaker = new DebuggerExecutorServiceMaker();
+        jsExecutorService = executorServiceMaker.makeWithName(runnerExecutorId, runnerContextFactory);
+        bpExecutorService = executorServiceMaker.makeWithName(runnerExecutorId, runnerContextFactory);
+        logger = new Logger(BPJsRunnerImpl.class, runnerId);
+        debuggerPrintStream.setDebuggerId(runnerId);
+        bprog = new CachedBProgram(filename);
+        listeners.add(new PrintBProgramRunnerListener(debuggerPrintStream));
+        bprog.setAddBThreadCallback((bp, bt) -> listeners.forEach(l -> l.bthreadAdded(bp, bt)));
+    }
+
+    @Override
+    public DebugResponse setup(Map<Integer, Boolean> breakpoints, boolean isSkipBreakpoints, boolean isSkipSyncPoints, boolean isWaitForExternalEvents) {
+        logger.info("setup isWaitForExternalEvents: {0}", isWaitForExternalEvents);
+        if (!isSetup) {
+            listeners.forEach(l -> l.starting(bprog));
+            bprog.setLoggerOutputStreamer(debuggerPrintStream);
+            try {
+                syncSnapshot = jsExecutorService.submit(bprog::setup).get();
+            } catch (Exception e) {
+                logger.error("failed setting up bprog, error: {0}", e, e.getMessage());
+                notifySubscribers(new BPConsoleEvent(runnerId, new ConsoleMessage(e.getMessage(), LogType.error)));
+                onExit();
+                return new DebugResponse(false, ErrorCode.BP_SETUP_FAIL, new boolean[0]);
+            }
+            syncSnapshot.getBThreadSnapshots().forEach(sn -> listeners.forEach(l -> l.bthreadAdded(bprog, sn)));
+            SafetyViolationTag violationTag = syncSnapshot.getViolationTag();
+            if (violationTag != null && !StringUtils.isEmpty(violationTag.getMessage())) {
+                onExit();
+                return new DebugResponse(false, ErrorCode.BP_SETUP_FAIL, new boolean[0]);
+            }
+            isSetup = true;
+        }
+        state.setDebuggerState(RunnerState.State.STOPPED);
+        bprog.setWaitForExternalEvents(isWaitForExternalEvents);
+        return new DebugResponse(true, new boolean[0]);
+    }
+
+    @Override
+    public DebugResponse startSync(Map<Integer, Boolean> breakpointsMap, boolean isSkipSyncPoints, boolean isSkipBreakpoints, boolean isWaitForExternalEvents) {
+        notifySubscribers(new ProgramStatusEvent(runnerId, Status.RUN));
+        DebugResponse debugResponse = setup(breakpointsMap, isSkipBreakpoints, isSkipSyncPoints, isWaitForExternalEvents);
+        if (debugResponse.isSuccess()) {
+            bpExecutorService.execute(this::runProgram);
+        }
+        return debugResponse;
+    }
+
+    private void runProgram() {
+        try {
+            isStarted = true;
+            state.setDebuggerState(RunnerState.State.RUNNING);
+            listeners.forEach(l -> l.started(bprog));
+            syncSnapshot = syncSnapshot.start(jsExecutorService, PASSTHROUGH);
+
+            EventSelectionStrategy eventSelectionStrategy = bprog.getEventSelectionStrategy();
+            while (isStarted && syncSnapshot.isStateValid()) {
+                Set<BEvent> possibleEvents = eventSelectionStrategy.selectableEvents(syncSnapshot);
+                if (possibleEvents.isEmpty()) {
+                    if (!bprog.isWaitForExternalEvents() || !waitForExternalEvent()) {
+                        break;
+                    }
+                    continue;
+                }
+
+                Timer.Sample syncStep = Timer.start();
+                Optional<EventSelectionResult> eventOptional = eventSelectionStrategy.select(syncSnapshot, possibleEvents);
+                syncStep.stop(eventSelectionTimer);
+                if (!eventOptional.isPresent()) {
+                    logger.info("Events queue is empty");
+                    break;
+                }
+                triggerEvent(eventOptional.get());
+                syncStep.stop(syncStepTimer);
+            }
+
+            if (!syncSnapshot.isStateValid()) {
+                SafetyViolationTag violationTag = syncSnapshot.getViolationTag();
+                listeners.forEach(l -> l.assertionFailed(bprog, violationTag));
+            }
+            else if (isStarted) {
+                listeners.forEach(l -> l.ended(bprog));
+            }
+        } catch (InterruptedException | RejectedExecutionException e) {
+            logger.info("runner stopped");
+        } catch (Exception e) {
+            logger.error("runProgram failed, error: {0}", e, e.getMessage());
+            notifySubscribers(new BPConsoleEvent(runnerId, new ConsoleMessage(e.getMessage(), LogType.error)));
+        }
+
+        if (isStarted) {
+            onExit();
+            notifySubscribers(new ProgramStatusEvent(runnerId, Status.SUPERSTEPDONE));
+        }
+    }
+
+    /**
+     * @return false if the program should end instead
+     */
+    private boolean waitForExternalEvent() throws InterruptedException {
+        state.setDebuggerState(RunnerState.State.WAITING_FOR_EXTERNAL_EVENT);
+        notifySubscribers(new ProgramStatusEvent(runnerId, Status.WAITING_FOR_EXTERNAL_EVENT));
+        BEvent next = bprog.takeExternalEvent();
+        if (next == null) {
+            logger.info("Event queue empty, not need to wait to external event. terminating....");
+            return false;
+        }
+        syncSnapshot.getExternalEvents().add(next);
+        state.setDebuggerState(RunnerState.State.RUNNING);
+        notifySubscribers(new ProgramStatusEvent(runnerId, Status.RUN));
+        return true;
+    }
+
+    private void triggerEvent(EventSelectionResult eventSelectionResult) throws InterruptedException {
+        BEvent event = eventSelectionResult.getEvent();
+        if (!eventSelectionResult.getIndicesToRemove().isEmpty()) {
+            List<BEvent> updatedExternals = new ArrayList<>(syncSnapshot.getExternalEvents());
+            eventSelectionResult.getIndicesToRemove().stream().sorted(reverseOrder())
+                    .forEach(idxObj -> updatedExternals.remove(idxObj.intValue()));
+            syncSnapshot = syncSnapshot.copyWith(updatedExternals);
+        }
+        Timer.Sample trigger = Timer.start();
+        syncSnapshot = syncSnapshot.triggerEvent(event, jsExecutorService, listeners, PASSTHROUGH);
+        trigger.stop(triggerEventTimer);
+        if (!event.equals(NO_MORE_WAIT_EXTERNAL)) {
+            addToEventsHistory(event);
+        }
+    }
+
+    private void addToEventsHistory(BEvent event) {
+        synchronized (eventsHistory) {
+            if (eventsHistory.size() == DEFAULT_MAX_EVENTS_HISTORY_SIZE) {
+                eventsHistory.removeFirst();
+            }
+            eventsHistory.addLast(Pair.of(nextEventKey++, event.getName()));
+        }
+    }
+
+    private void onExit() {
+        logger.info("started onExit process");
+        debuggerPrintStream.close();
+        isStarted = false;
+        state.setDebuggerState(RunnerState.State.STOPPED);
+        jsExecutorService.shutdownNow();
+        bpExecutorService.shutdownNow();
+    }
+
+    @Override
+    public BooleanResponse stop() {
+        if (!isSetup()) {
+            return createErrorResponse(ErrorCode.SETUP_REQUIRED);
+        }
+        onExit();
+        notifySubscribers(new ProgramStatusEvent(runnerId, Status.STOP));
+        return createSuccessResponse();
+    }
+
+    @Override
+    public BooleanResponse addExternalEvent(String externalEvent) {
+        if (StringUtils.isEmpty(externalEvent)) {
+            return createErrorResponse(ErrorCode.INVALID_EVENT);
+        }
+        logger.info("Adding external event: {0}, runner state: {1}", externalEvent, state.getDebuggerState());
+        bprog.enqueueExternalEvent(new BEvent(externalEvent));
+        return createSuccessResponse();
+    }
+
+    /**
+     * External events are handed to the running program as soon as they are added, so they cannot be taken back.
+     */
+    @Override
+    public BooleanResponse removeExternalEvent(String externalEvent) {
+        return createErrorResponse(ErrorCode.NOT_SUPPORTED);
+    }
+
+    @Override
+    public BooleanResponse toggleWaitForExternalEvents(boolean shouldWait) {
+        bprog.setWaitForExternalEvents(shouldWait);
+        return createSuccessResponse();
+    }
+
+    @Override
+    public SortedMap<Long, EventInfo> getEventsHistory(int from, int to) {
+        if (from < 0 || to < 0 || to < from) {
+            return null;
+        }
+        SortedMap<Long, EventInfo> history = new TreeMap<>(reverseOrder());
+        synchronized (eventsHistory) {
+            Iterator<Pair<Long, String>> newestFirst = eventsHistory.descendingIterator();
+            for (int i = 0; i < to && newestFirst.hasNext(); i++) {
+                Pair<Long, String> event = newestFirst.next();
+                if (i >= from) {
+                    history.put(event.getLeft(), new EventInfo(event.getRight()));
+                }
+            }
+        }
+        return history;
+    }
+
+    @Override
+    public ScopeVariableResponse getBThreadVariable(String bThreadName, int frame, String path, int from, int to) {
+        return new ScopeVariableResponse(ErrorCode.NOT_SUPPORTED);
+    }
+
+    @Override
+    public ScopeVariableResponse getGlobalVariable(String path, int from, int to) {
+        return new ScopeVariableResponse(ErrorCode.NOT_SUPPORTED);
+    }
+
+    @Override
+    public boolean hasConsoleLog() {
+        return debuggerPrintStream.isSpilled();
+    }
+
+    @Override
+    public void writeConsoleLog(OutputStream outputStream) throws IOException {
+        debuggerPrintStream.writeSpilledLog(outputStream);
+    }
+
+    @Override
+    public void deleteConsoleLog() {
+        debuggerPrintStream.deleteSpilledLog();
+    }
+
+    @Override
+    public byte[] getSyncSnapshot() {
+        try {
+            return SyncSnapshotWriter.serialize(syncSnapshot);
+        } catch (Exception e) {
+            logger.error("failed serializing bprog SyncSnapshot", e);
+            return null;
+        }
+    }
+
+    @Override
+    public void writeSyncSnapshot(OutputStream outputStream) throws IOException {
+        SyncSnapshotWriter.write(syncSnapshot, outputStream);
+    }
+
+    @Override
+    public void exportSession(OutputStream outputStream) throws IOException {
+        SessionArchiveIO.Settings settings = new SessionArchiveIO.Settings(false, false, isWaitForExternalEvents(), Collections.emptyList());
+        new SessionArchiveIO(bprog).write(outputStream, settings, null, syncSnapshot);
+    }
+
+    @Override
+    public DebugResponse importSession(InputStream inputStream) {
+        return new DebugResponse(createErrorResponse(ErrorCode.NOT_SUPPORTED));
+    }
+
+    @Override
+    public DebugResponse replay(Map<Integer, Boolean> breakpointsMap, boolean isSkipSyncPoints, boolean isSkipBreakpoints, boolean isWaitForExternalEvents,
+                                List<EventInfo> events, int targetIndex) {
+        return new DebugResponse(createErrorResponse(ErrorCode.NOT_SUPPORTED));
+    }
+
+    @Override
+    public GetSyncSnapshotsResponse getSyncSnapshotsHistory() {
+        return new GetSyncSnapshotsResponse(new TreeMap<>());
+    }
+
+    @Override
+    public BooleanResponse setSyncSnapshot(long snapShotTime) {
+        return createErrorResponse(ErrorCode.NOT_SUPPORTED);
+    }
+
+    @Override
+    public BooleanResponse setSyncSnapshot(SyncSnapshot newSnapshot) {
+        return createErrorResponse(ErrorCode.NOT_SUPPORTED);
+    }
+
+    @Override
+    public BooleanResponse nextSync() {
+        return createErrorResponse(ErrorCode.NOT_SUPPORTED);
+    }
+
+    @Override
+    public BooleanResponse toggleMuteSyncPoints(boolean toggleMuteSyncPoints) {
+        return createErrorResponse(ErrorCode.NOT_SUPPORTED);
+    }
+
+    @Override
+    public BooleanResponse setBreakpoint(int lineNumber, boolean stopOnBreakpoint) {
+        return createErrorResponse(ErrorCode.NOT_SUPPORTED);
+    }
+
+    @Override
+    public BooleanResponse stepOut() {
+        return createErrorResponse(ErrorCode.NOT_SUPPORTED);
+    }
+
+    @Override
+    public BooleanResponse stepInto() {
+        return createErrorResponse(ErrorCode.NOT_SUPPORTED);
+    }
+
+    @Override
+    public BooleanResponse stepOver() {
+        return createErrorResponse(ErrorCode.NOT_SUPPORTED);
+    }
+
+    @Override
+    public BooleanResponse continueRun() {
+        return createErrorResponse(ErrorCode.NOT_SUPPORTED);
+    }
+
+    @Override
+    public BooleanResponse toggleMuteBreakpoints(boolean toggleBreakPointStatus) {
+        return createErrorResponse(ErrorCode.NOT_SUPPORTED);
+    }
+
+    @Override
+    public BooleanResponse getState() {
+        return createErrorResponse(ErrorCode.NOT_SUPPORTED);
+    }
+
+    @Override
+    public boolean isSetup() {
+        return isSetup;
+    }
+
+    @Override
+    public boolean isStarted() {
+        return isStarted;
+    }
+
+    @Override
+    public boolean isSkipSyncPoints() {
+        return true;
+    }
+
+    @Override
+    public boolean isWaitForExternalEvents() {
+        return bprog.isWaitForExternalEvents();
+    }
+
+    @Override
+    public boolean isMuteBreakPoints() {
+        return true;
+    }
+
+    @Override
+    public RunnerState getDebuggerState() {
+        return state;
+    }
+
+    @Override
+    public String getDebuggerId() {
+        return runnerId;
+    }
+
+    @Override
+    public String getDebuggerExecutorId() {
+        return runnerExecutorId;
+    }
+
+    @Override
+    public void subscribe(Subscriber<BPEvent> subscriber) {
+        subscribers.add(subscriber);
+        debuggerPrintStream.subscribe(subscriber);
+    }
+
+    @Override
+    public void unsubscribe(Subscriber<BPEvent> subscriber) {
+        subscribers.remove(subscriber);
+        debuggerPrintStream.unsubscribe(subscriber);
+    }
+
+    @Override
+    public void notifySubscribers(BPEvent event) {
+        debuggerPrintStream.flush();
+        for (Subscriber<BPEvent> subscriber : subscribers) {
+            subscriber.update(event);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package il.ac.bgu.se.bp.execution.manage;
+
+import il.ac.bgu.cs.bp.bpjs.exceptions.BPjsCodeEvaluationException;
+import il.ac.bgu.cs.bp.bpjs.exceptions.BPjsException;
+import il.ac.bgu.cs.bp.bpjs.exceptions.BPjsRuntimeException;
+import il.ac.bgu.cs.bp.bpjs.model.BProgram;
+import org.mozilla.javascript.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A program run from the {@link ProgramCache}: the source is taken from the cache (or its source loader), otherwise
+ * it is read once from the classpath resource of the same name. Its compiled script is reused by every run of the
+ * same program.
+ * Errors are reported the same way {@link BProgram#evaluate(String, String, Context)} reports them.
+ */
+public class CachedBProgram extends BProgram {
+    private final String source;
+
+    public CachedBProgram(String name) {
+        super(name);
+        String cachedSource = ProgramCache.getOrLoadSource(name);
+        if (cachedSource == null) {
+            cachedSource = readResource(name);
+            ProgramCache.putSource(name, cachedSource);
+        }
+        this.source = cachedSource;
+    }
+
+    @Override
+    protected void setupProgramScope(Scriptable scope) {
+        Context cx = Context.getCurrentContext();
+        try {
+            Script script = ProgramCache.getScript(getName(), source, cx);
+            script.exec(cx, getGlobalScope());
+        } catch (EcmaError e) {
+            throw new BPjsCodeEvaluationException(e);
+        } catch (WrappedException e) {
+            throw unwrap(e);
+        } catch (EvaluatorException e) {
+            throw new BPjsCodeEvaluationException(e);
+        } catch (Exception e) {
+            throw new BPjsRuntimeException("Error evaluating BProgram code: " + e.getMessage(), e);
+        }
+    }
+
+    private static RuntimeException unwrap(WrappedException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof BPjsException) {
+            return (BPjsException) cause;
+        }
+        if (cause instanceof IllegalStateException) {
+            String message = cause.getMessage();
+            if (message != null && message.contains("Cannot capture continuation") &&
+                    message.contains("executeScriptWithContinuations or callFunctionWithContinuations")) {
+                return new BPjsCodeEvaluationException("bp.sync called outside of a b-thread");
+            }
+            return (IllegalStateException) cause;
+        }
+        return new BPjsRuntimeException("(Wrapped) Exception evaluating BProgram code: " + cause.getMessage(), cause);
+    }
+
+    private static String readResource(String name) {
+        try (InputStream inputStream = Thread.currentThread().getContextClassLoader().getResourceAsStream(name)) {
+            if (inputStream == null) {
+                throw new IllegalArgumentException("Cannot find resource '" + name + "'");
+            }
+            ByteArrayOutputStream source = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read = inputStream.read(buffer); read != -1; read = inputStream.read(buffer)) {
+                source.write(buffer, 0, read);
+            }
+            return new String(source.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading resource: '" + name + "': " + e.getMessage(), e);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import il.ac.bgu.se.bp.debugger.BPJsDebugger;
 import il.ac.bgu.se.bp.debugger.DebuggerLevel;
 import il.ac.bgu.se.bp.debugger.manage.DebuggerFactory;
 import il.ac.bgu.se.bp.execution.BPJsDebuggerImpl;
+import il.ac.bgu.se.bp.execution.BPJsRunnerImpl;
 import il.ac.bgu.se.bp.rest.response.BooleanResponse;
 import il.ac.bgu.se.bp.utils.logger.Logger;
 import org.springframework.beans.BeansException;
@@ -21,8 +22,16 @@ public class DebuggerFactoryImpl implements DebuggerFactory<BooleanResponse>, Ap
     @Override
     public BPJsDebugger<BooleanResponse> getBPJsDebugger(String debuggerId, String filename, DebuggerLevel debuggerLevel) {
         logger.info("generating new debugger for debuggerId: {0}, with filename: {1}", debuggerId, filename);
-        BPJsDebugger<BooleanResponse> bpJsDebugger = new BPJsDebuggerImpl(debuggerId, filename, debuggerLevel);
+        return autowire(new BPJsDebuggerImpl(debuggerId, filename, debuggerLevel));
+    }
+
+    @Override
+    public BPJsDebugger<BooleanResponse> getBPJsRunner(String runnerId, String filename) {
+        logger.info("generating new runner for runnerId: {0}, with filename: {1}", runnerId, filename);
+        return autowire(new BPJsRunnerImpl(runnerId, filename));
+    }
 
+    private BPJsDebugger<BooleanResponse> autowire(BPJsDebugger<BooleanResponse> bpJsDebugger) {
         AutowireCapableBeanFactory factory = applicationContext.getAutowireCapableBeanFactory();
         factory.autowireBean(bpJsDebugger);
         factory.initializeBean(bpJsDebugger, bpJsDebugger.getClass().getSimpleName());
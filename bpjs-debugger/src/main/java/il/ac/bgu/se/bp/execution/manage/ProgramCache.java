@@ -0,0 +1,122 @@
+package il.ac.bgu.se.bp.execution.manage;
+
+import il.ac.bgu.se.bp.utils.DebuggerMetrics;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.debug.Debugger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Sources of the programs and their compiled scripts, by program name. Programs submitted to the server are named by
+ * the hash of their source, so a program submitted again is not compiled again.
+ *
+ * A program is compiled once per compilation mode (with or without debug information, optimization level), since
+ * debugger contexts and runner contexts compile differently.
+ * Holds up to 256 programs, the least recently used one is evicted first. The size can be set with
+ * {@code -Dbpjs.debugger.programCache.size}. The source of an evicted program is loaded again with the
+ * {@link #setSourceLoader(Function) source loader}.
+ */
+public final class ProgramCache {
+    static final String SIZE_PROPERTY = "bpjs.debugger.programCache.size";
+
+    private static final int maxPrograms = Integer.getInteger(SIZE_PROPERTY, 256);
+    private static final Map<String, CachedProgram> programs = new LinkedHashMap<String, CachedProgram>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedProgram> eldest) {
+            return size() > maxPrograms;
+        }
+    };
+    private static volatile Function<String, String> sourceLoader = name -> null;
+
+    private ProgramCache() {
+    }
+
+    public static synchronized void putSource(String name, String source) {
+        getOrCreate(name, source);
+    }
+
+    /**
+     * @return the source of the program, or null when it is not cached
+     */
+    public static synchronized String getSource(String name) {
+        CachedProgram program = programs.get(name);
+        return program == null ? null : program.source;
+    }
+
+    /**
+     * @param sourceLoader returns the source of a program by its name, or null when there is no such program
+     */
+    public static void setSourceLoader(Function<String, String> sourceLoader) {
+        ProgramCache.sourceLoader = sourceLoader;
+    }
+
+    /**
+     * @return the source of the program, loaded with the source loader when it is not cached, or null
+     */
+    static String getOrLoadSource(String name) {
+        String source = getSource(name);
+        if (source == null) {
+            source = sourceLoader.apply(name);
+            if (source != null) {
+                putSource(name, source);
+            }
+        }
+        return source;
+    }
+
+    static synchronized void clear() {
+        programs.clear();
+    }
+
+    /**
+     * Compiles the program in the mode of the given context, or returns the script compiled before in that mode.
+     * Rhino tells the debugger of the context about the scripts it compiles, a cached script is told about the same
+     * way, so the debugger of every session knows the program lines.
+     *
+     * @throws org.mozilla.javascript.EvaluatorException when the source does not compile
+     */
+    static Script getScript(String name, String source, Context cx) {
+        CachedProgram program;
+        synchronized (ProgramCache.class) {
+            program = getOrCreate(name, source);
+        }
+
+        String compilationMode = cx.isGeneratingDebug() + ":" + cx.getOptimizationLevel();
+        Script script = program.scripts.get(compilationMode);
+        if (script == null) {
+            DebuggerMetrics.programCompilationCounter(false).increment();
+            script = cx.compileString(source, name, 1, null);
+            program.scripts.putIfAbsent(compilationMode, script);
+            return script;
+        }
+
+        DebuggerMetrics.programCompilationCounter(true).increment();
+        Debugger debugger = cx.getDebugger();
+        if (debugger != null) {
+            debugger.handleCompilationDone(cx, Context.getDebuggableView(script), source);
+        }
+        return script;
+    }
+
+    private static CachedProgram getOrCreate(String name, String source) {
+        CachedProgram program = programs.get(name);
+        if (program == null || !program.source.equals(source)) {
+            program = new CachedProgram(source);
+            programs.put(name, program);
+        }
+        return program;
+    }
+
+    private static class CachedProgram {
+        private final String source;
+        private final Map<String, Script> scripts = new ConcurrentHashMap<>();
+
+        private CachedProgram(String source) {
+            this.source = source;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package il.ac.bgu.se.bp.execution.manage;
+
+import il.ac.bgu.cs.bp.bpjs.bprogramio.BProgramSyncSnapshotIO;
+import il.ac.bgu.cs.bp.bpjs.model.BEvent;
+import il.ac.bgu.cs.bp.bpjs.model.BProgram;
+import il.ac.bgu.cs.bp.bpjs.model.BProgramSyncSnapshot;
+import il.ac.bgu.cs.bp.bpjs.model.BThreadSyncSnapshot;
+import il.ac.bgu.se.bp.debugger.engine.SyncSnapshotHolder;
+import il.ac.bgu.se.bp.utils.SyncSnapshotWriter;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Reads and writes the debugger part of a session archive: the session settings and breakpoints, followed by every
+ * snapshot of the sync snapshots history (oldest first, with the event selected on it) and the current sync snapshot.
+ *
+ * Each snapshot is written as its program part (data store, external events and the selected event, violation tag)
+ * and its b-threads. A b-thread that did not change since the previous snapshot is written as a reference to it by
+ * name, so a long history costs about as much as the b-threads that actually advanced.
+ * The current sync snapshot is the last record, the stream is expected to end right after it.
+ *
+ * A serialized program part or b-thread read from an archive is at most 64MB ({@code -Dbpjs.archive.maxRecordBytes}),
+ * and its buffer grows with the bytes actually read, so the lengths written in an uploaded archive do not decide how
+ * much memory is allocated.
+ */
+public class SessionArchiveIO {
+    private static final byte HISTORY_SNAPSHOT = 1;
+    private static final byte CURRENT_SNAPSHOT = 2;
+    private static final byte NEW_BTHREAD = 1;
+    private static final byte UNCHANGED_BTHREAD = 2;
+    private static final int MAX_RECORD_BYTES = Integer.getInteger("bpjs.archive.maxRecordBytes", 64 * 1024 * 1024);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BProgram bProgram;
+    private final BProgramSyncSnapshotIO snapshotIO;
+    private Map<String, WrittenBThread> previousBThreads = new HashMap<>();
+
+    public SessionArchiveIO(BProgram bProgram) {
+        this.bProgram = bProgram;
+        this.snapshotIO = new BProgramSyncSnapshotIO(bProgram);
+    }
+
+    /**
+     * @param syncSnapshotHolder the sync snapshots history, null when the session has none
+     */
+    public void write(OutputStream outputStream, Settings settings, SyncSnapshotHolder<BProgramSyncSnapshot, BEvent> syncSnapshotHolder,
+                      BProgramSyncSnapshot currentSnapshot) throws IOException {
+        DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeBoolean(settings.isSkipBreakpoints());
+        output.writeBoolean(settings.isSkipSyncPoints());
+        output.writeBoolean(settings.isWaitForExternalEvents());
+        output.writeInt(settings.getBreakpoints().size());
+        for (int lineNumber : settings.getBreakpoints()) {
+            output.writeInt(lineNumber);
+        }
+
+        try {
+            if (syncSnapshotHolder != null) {
+                syncSnapshotHolder.forEachSyncSnapshot((snapshot, event) -> {
+                    try {
+                        output.writeByte(HISTORY_SNAPSHOT);
+                        writeSnapshot(output, snapshot, event);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        output.writeByte(CURRENT_SNAPSHOT);
+        writeSnapshot(output, currentSnapshot, null);
+        output.flush();
+    }
+
+    public Settings readSettings(InputStream inputStream) throws IOException {
+        DataInputStream input = new DataInputStream(inputStream);
+        boolean isSkipBreakpoints = input.readBoolean();
+        boolean isSkipSyncPoints = input.readBoolean();
+        boolean isWaitForExternalEvents = input.readBoolean();
+        int breakpointsCount = input.readInt();
+        if (breakpointsCount < 0) {
+            throw new IOException("invalid breakpoints count: " + breakpointsCount);
+        }
+        List<Integer> breakpoints = new ArrayList<>(Math.min(breakpointsCount, 1024));
+        for (int i = 0; i < breakpointsCount; i++) {
+            breakpoints.add(input.readInt());
+        }
+        return new Settings(isSkipBreakpoints, isSkipSyncPoints, isWaitForExternalEvents, breakpoints);
+    }
+
+    /**
+     * Adds the history snapshots to the holder, in their order, and reads the stream to its end.
+     * The program must be set up, the snapshots are read into its global scope.
+     *
+     * @return the current sync snapshot
+     */
+    public BProgramSyncSnapshot readSyncSnapshots(InputStream inputStream, SyncSnapshotHolder<BProgramSyncSnapshot, BEvent> syncSnapshotHolder)
+            throws IOException, ClassNotFoundException {
+        DataInputStream input = new DataInputStream(inputStream);
+        Map<String, byte[]> previousBThreadsBytes = new HashMap<>();
+        while (true) {
+            byte recordType = input.readByte();
+            if (recordType != HISTORY_SNAPSHOT && recordType != CURRENT_SNAPSHOT) {
+                throw new IOException("invalid session archive record: " + recordType);
+            }
+
+            boolean hasEvent = input.readBoolean();
+            BProgramSyncSnapshot programPart = snapshotIO.deserialize(readBytes(input));
+            List<BEvent> externalEvents = new ArrayList<>(programPart.getExternalEvents());
+            BEvent event = hasEvent ? externalEvents.remove(externalEvents.size() - 1) : null;
+
+            int bThreadsCount = input.readInt();
+            Set<BThreadSyncSnapshot> bThreadSnapshots = new HashSet<>();
+            Map<String, byte[]> bThreadsBytes = new HashMap<>();
+            for (int i = 0; i < bThreadsCount; i++) {
+                byte[] bThreadBytes = readBThreadBytes(input, previousBThreadsBytes);
+                BThreadSyncSnapshot bThreadSnapshot = snapshotIO.deserializeBThread(bThreadBytes, programPart.getDataStore());
+                bThreadSnapshots.add(bThreadSnapshot);
+                bThreadsBytes.put(bThreadSnapshot.getName(), bThreadBytes);
+            }
+            previousBThreadsBytes = bThreadsBytes;
+
+            BProgramSyncSnapshot snapshot = new BProgramSyncSnapshot(bProgram, bThreadSnapshots, programPart.getDataStore(),
+                    externalEvents, programPart.getViolationTag());
+            if (recordType == CURRENT_SNAPSHOT) {
+                if (input.read() != -1) {
+                    throw new IOException("unexpected data after the current sync snapshot");
+                }
+                return snapshot;
+            }
+            syncSnapshotHolder.addSyncSnapshot(snapshot, event);
+        }
+    }
+
+    private void writeSnapshot(DataOutputStream output, BProgramSyncSnapshot snapshot, BEvent event) throws IOException {
+        List<BEvent> externalEvents = new ArrayList<>(snapshot.getExternalEvents());
+        if (event != null) {
+            externalEvents.add(event);
+        }
+        BProgramSyncSnapshot programPart = new BProgramSyncSnapshot(bProgram, Collections.emptySet(), snapshot.getDataStore(),
+                externalEvents, snapshot.getViolationTag());
+        output.writeBoolean(event != null);
+        writeBytes(output, SyncSnapshotWriter.serialize(programPart));
+
+        output.writeInt(snapshot.getBThreadSnapshots().size());
+        Map<String, WrittenBThread> writtenBThreads = new HashMap<>();
+        for (BThreadSyncSnapshot bThreadSnapshot : snapshot.getBThreadSnapshots()) {
+            WrittenBThread previous = previousBThreads.get(bThreadSnapshot.getName());
+            byte[] bThreadBytes = previous != null && previous.bThreadSnapshot == bThreadSnapshot ? previous.bytes
+                    : SyncSnapshotWriter.serializeBThread(bProgram, bThreadSnapshot);
+            if (previous != null && Arrays.equals(previous.bytes, bThreadBytes)) {
+                output.writeByte(UNCHANGED_BTHREAD);
+                output.writeUTF(bThreadSnapshot.getName());
+            }
+            else {
+                output.writeByte(NEW_BTHREAD);
+                writeBytes(output, bThreadBytes);
+            }
+            writtenBThreads.put(bThreadSnapshot.getName(), new WrittenBThread(bThreadSnapshot, bThreadBytes));
+        }
+        previousBThreads = writtenBThreads;
+    }
+
+    private byte[] readBThreadBytes(DataInputStream input, Map<String, byte[]> previousBThreadsBytes) throws IOException {
+        byte bThreadType = input.readByte();
+        if (bThreadType == NEW_BTHREAD) {
+            return readBytes(input);
+        }
+        if (bThreadType != UNCHANGED_BTHREAD) {
+            throw new IOException("invalid session archive b-thread record: " + bThreadType);
+        }
+        String name = input.readUTF();
+        byte[] bThreadBytes = previousBThreadsBytes.get(name);
+        if (bThreadBytes == null) {
+            throw new IOException("b-thread " + name + " is not in the previous sync snapshot");
+        }
+        return bThreadBytes;
+    }
+
+    private static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0 || length > MAX_RECORD_BYTES) {
+            throw new IOException("invalid session archive length: " + length);
+        }
+        if (length <= BUFFER_SIZE) {
+            byte[] bytes = new byte[length];
+            input.readFully(bytes);
+            return bytes;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int remaining = length;
+        while (remaining > 0) {
+            int read = input.read(buffer, 0, Math.min(remaining, buffer.length));
+            if (read == -1) {
+                throw new EOFException("session archive ended " + remaining + " bytes before the end of a record");
+            }
+            bytes.write(buffer, 0, read);
+            remaining -= read;
+        }
+        return bytes.toByteArray();
+    }
+
+    private static class WrittenBThread {
+        private final BThreadSyncSnapshot bThreadSnapshot;
+        private final byte[] bytes;
+
+        private WrittenBThread(BThreadSyncSnapshot bThreadSnapshot, byte[] bytes) {
+            this.bThreadSnapshot = bThreadSnapshot;
+            this.bytes = bytes;
+        }
+    }
+
+    public static class Settings {
+        private final boolean isSkipBreakpoints;
+        private final boolean isSkipSyncPoints;
+        private final boolean isWaitForExternalEvents;
+        private final List<Integer> breakpoints;
+
+        public Settings(boolean isSkipBreakpoints, boolean isSkipSyncPoints, boolean isWaitForExternalEvents, List<Integer> breakpoints) {
+            this.isSkipBreakpoints = isSkipBreakpoints;
+            this.isSkipSyncPoints = isSkipSyncPoints;
+            this.isWaitForExternalEvents = isWaitForExternalEvents;
+            this.breakpoints = breakpoints;
+        }
+
+        public boolean isSkipBreakpoints() {
+            return isSkipBreakpoints;
+        }
+
+        public boolean isSkipSyncPoints() {
+            return isSkipSyncPoints;
+        }
+
+        public boolean isWaitForExternalEvents() {
+            return isWaitForExternalEvents;
+        }
+
+        public List<Integer> getBreakpoints() {
+            return breakpoints;
+        }
+    }
+}
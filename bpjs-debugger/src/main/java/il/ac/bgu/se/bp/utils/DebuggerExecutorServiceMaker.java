@@ -1,24 +1,174 @@
 package il.ac.bgu.se.bp.utils;
 
 import il.ac.bgu.cs.bp.bpjs.internal.ExecutorServiceMaker;
+import il.ac.bgu.se.bp.utils.logger.Logger;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Makes the single threaded executors of the debugger sessions.
+ * Threads are named {@code <threadNameTemplate>#<n>}, so the threads of a session can be told apart in thread dumps
+ * and logs.
+ *
+ * When started with {@code -Dbpjs.debugger.virtualThreads=true} on a JVM that has virtual threads, the executors
+ * run on virtual threads, so paused sessions do not hold platform threads. Otherwise platform threads are used.
+ *
+ * Tasks submitted to all the executors and not started yet are counted, see {@link #getQueuedTasks()}, and so are the
+ * threads holding a context of a session's factory, see {@link #getLiveSessionContexts()}.
+ */
 public class DebuggerExecutorServiceMaker extends ExecutorServiceMaker {
+    private static final Logger logger = new Logger(DebuggerExecutorServiceMaker.class);
+
+    public static final String VIRTUAL_THREADS_PROPERTY = "bpjs.debugger.virtualThreads";
+
+    private static final VirtualThreadFactoryMaker defaultVirtualThreadFactoryMaker = Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY) ?
+            VirtualThreadFactoryMaker.create() : null;
+
+    private static final AtomicLong queuedTasks = new AtomicLong();
+    private static final AtomicInteger liveSessionContexts = new AtomicInteger();
+
+    private final VirtualThreadFactoryMaker virtualThreadFactoryMaker;
+
+    public DebuggerExecutorServiceMaker() {
+        this.virtualThreadFactoryMaker = defaultVirtualThreadFactoryMaker;
+    }
+
+    /**
+     * Ignores {@value #VIRTUAL_THREADS_PROPERTY}: uses virtual threads if requested and available on this JVM.
+     */
+    DebuggerExecutorServiceMaker(boolean useVirtualThreads) {
+        this.virtualThreadFactoryMaker = useVirtualThreads ? VirtualThreadFactoryMaker.create() : null;
+    }
 
     public ExecutorService makeWithName(String threadNameTemplate ) {
+        ThreadFactory tf = virtualThreadFactoryMaker != null ?
+                virtualThreadFactoryMaker.makeWithName(threadNameTemplate + "#") :
+                makePlatformThreadFactory(threadNameTemplate);
+
+        return newSingleThreadExecutor(tf);
+    }
+
+    /**
+     * Same as {@link #makeWithName(String)}, but every executor thread enters a context of the given factory before
+     * running tasks and keeps it until the thread ends. BPjs code entering a context on these threads reuses it.
+     */
+    public ExecutorService makeWithName(String threadNameTemplate, ContextFactory contextFactory) {
+        ThreadFactory tf = virtualThreadFactoryMaker != null ?
+                virtualThreadFactoryMaker.makeWithName(threadNameTemplate + "#") :
+                makePlatformThreadFactory(threadNameTemplate);
+
+        return newSingleThreadExecutor(r -> tf.newThread(() -> {
+            contextFactory.enterContext();
+            liveSessionContexts.incrementAndGet();
+            try {
+                r.run();
+            } finally {
+                Context.exit();
+                liveSessionContexts.decrementAndGet();
+            }
+        }));
+    }
+
+    boolean isVirtualThreads() {
+        return virtualThreadFactoryMaker != null;
+    }
+
+    /**
+     * @return the tasks submitted to the executors of all the sessions and not started yet
+     */
+    public static long getQueuedTasks() {
+        return queuedTasks.get();
+    }
+
+    /**
+     * @return the executor threads of all the sessions that entered a context of their session's factory and did not end
+     */
+    public static int getLiveSessionContexts() {
+        return liveSessionContexts.get();
+    }
+
+    private static ExecutorService newSingleThreadExecutor(ThreadFactory tf) {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), tf) {
+            @Override
+            public void execute(Runnable command) {
+                queuedTasks.incrementAndGet();
+                try {
+                    super.execute(command);
+                } catch (RejectedExecutionException e) {
+                    queuedTasks.decrementAndGet();
+                    throw e;
+                }
+            }
+
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                queuedTasks.decrementAndGet();
+                super.beforeExecute(t, r);
+            }
+
+            @Override
+            public List<Runnable> shutdownNow() {
+                List<Runnable> neverStarted = super.shutdownNow();
+                queuedTasks.addAndGet(-neverStarted.size());
+                return neverStarted;
+            }
+        };
+    }
+
+    private static ThreadFactory makePlatformThreadFactory(String threadNameTemplate) {
         final ThreadFactory dtf = Executors.defaultThreadFactory();
         final AtomicInteger threadCoutner = new AtomicInteger(0);
-        ThreadFactory tf = (Runnable r) -> {
+        return (Runnable r) -> {
             Thread retVal = dtf.newThread(r);
             retVal.setName(threadNameTemplate + "#" + threadCoutner.incrementAndGet() );
             return retVal;
         };
-
-        return Executors.newFixedThreadPool(1, tf);
     }
 
+    /**
+     * Virtual threads are reached by reflection since the project is built for Java 8:
+     * {@code Thread.ofVirtual().name(prefix, 1).factory()}.
+     */
+    private static class VirtualThreadFactoryMaker {
+        private final Method ofVirtual;
+        private final Method name;
+        private final Method factory;
+
+        private VirtualThreadFactoryMaker(Method ofVirtual, Method name, Method factory) {
+            this.ofVirtual = ofVirtual;
+            this.name = name;
+            this.factory = factory;
+        }
+
+        private static VirtualThreadFactoryMaker create() {
+            try {
+                Class<?> ofVirtualBuilder = Class.forName("java.lang.Thread$Builder$OfVirtual");
+                VirtualThreadFactoryMaker maker = new VirtualThreadFactoryMaker(Thread.class.getMethod("ofVirtual"),
+                        ofVirtualBuilder.getMethod("name", String.class, long.class),
+                        ofVirtualBuilder.getMethod("factory"));
+                maker.makeWithName("virtual-threads-probe#");
+                logger.info("debugger executors run on virtual threads");
+                return maker;
+            } catch (Exception | LinkageError e) {
+                logger.warning("virtual threads are not available on this JVM, using platform threads. error: {0}", e.toString());
+                return null;
+            }
+        }
+
+        private ThreadFactory makeWithName(String threadNamePrefix) {
+            try {
+                Object builder = ofVirtual.invoke(null);
+                builder = name.invoke(builder, threadNamePrefix, 1L);
+                return (ThreadFactory) factory.invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("failed creating virtual thread factory", e);
+            }
+        }
+    }
 }
@@ -0,0 +1,107 @@
+package il.ac.bgu.se.bp.utils;
+
+import il.ac.bgu.se.bp.debugger.DebuggerLevel;
+import il.ac.bgu.se.bp.debugger.engine.SyncSnapshotHolderImpl;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Meters of the debugger hot paths, registered in the global Micrometer registry (the server adds its registries to it).
+ * Tags are kept to a few values (mode, debugger level), never a session or a user, so the number of series does not
+ * grow with the sessions.
+ */
+public final class DebuggerMetrics {
+    public static final String DEBUG_MODE = "debug";
+    public static final String RUN_MODE = "run";
+
+    private static final MeterRegistry registry = Metrics.globalRegistry;
+    private static final Map<DebuggerLevel, Timer> stateGenerationTimers = new EnumMap<>(DebuggerLevel.class);
+    private static final DistributionSummary spillDeduplicationRatio = DistributionSummary.builder("bpjs.snapshots.deduplication")
+            .description("bytes referenced by the spilled sync snapshots of a session per byte stored, recorded when its history is released")
+            .register(registry);
+    private static final Counter cachedProgramCompilations = createProgramCompilationCounter("true");
+    private static final Counter programCompilations = createProgramCompilationCounter("false");
+
+    static {
+        for (DebuggerLevel debuggerLevel : DebuggerLevel.values()) {
+            stateGenerationTimers.put(debuggerLevel, Timer.builder("bpjs.state.generation")
+                    .description("debugger state generation time")
+                    .tag("level", debuggerLevel.name().toLowerCase())
+                    .register(registry));
+        }
+        Gauge.builder("bpjs.snapshots.history", SyncSnapshotHolderImpl::getGlobalHistorySize)
+                .description("sync snapshots kept by all the sessions")
+                .register(registry);
+        Gauge.builder("bpjs.snapshots.spilled", SyncSnapshotHolderImpl::getGlobalSpilledBytes)
+                .description("sync snapshot bytes spilled to disk by all the sessions")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("bpjs.executor.queued", DebuggerExecutorServiceMaker::getQueuedTasks)
+                .description("tasks waiting in the session executors")
+                .register(registry);
+        Gauge.builder("bpjs.contexts.sessions", DebuggerExecutorServiceMaker::getLiveSessionContexts)
+                .description("session executor threads holding a context of their session's factory")
+                .register(registry);
+    }
+
+    private DebuggerMetrics() {
+    }
+
+    /**
+     * From choosing the event of a sync point to reaching the next sync point, including the state sent for it.
+     */
+    public static Timer syncStepTimer(String mode) {
+        return timer("bpjs.sync.step", "sync step time", mode);
+    }
+
+    public static Timer eventSelectionTimer(String mode) {
+        return timer("bpjs.event.selection", "event selection time", mode);
+    }
+
+    public static Timer triggerEventTimer(String mode) {
+        return timer("bpjs.event.trigger", "time to run the b-threads with the selected event", mode);
+    }
+
+    /**
+     * Fast-forward through a recorded events trace, from the start of the program to the sync point handed to the user.
+     */
+    public static Timer replayTimer() {
+        return timer("bpjs.replay", "time to replay a recorded events trace", DEBUG_MODE);
+    }
+
+    public static Timer stateGenerationTimer(DebuggerLevel debuggerLevel) {
+        return stateGenerationTimers.get(debuggerLevel);
+    }
+
+    public static DistributionSummary spillDeduplicationRatio() {
+        return spillDeduplicationRatio;
+    }
+
+    /**
+     * Programs compiled, or taken compiled from the program cache.
+     */
+    public static Counter programCompilationCounter(boolean cached) {
+        return cached ? cachedProgramCompilations : programCompilations;
+    }
+
+    private static Counter createProgramCompilationCounter(String cached) {
+        return Counter.builder("bpjs.program.compilations")
+                .description("programs compiled, or taken compiled from the program cache")
+                .tag("cached", cached)
+                .register(registry);
+    }
+
+    private static Timer timer(String name, String description, String mode) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("mode", mode)
+                .register(registry);
+    }
+}
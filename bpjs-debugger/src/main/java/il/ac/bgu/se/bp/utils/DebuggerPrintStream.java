@@ -3,30 +3,103 @@ package il.ac.bgu.se.bp.utils;
 import il.ac.bgu.se.bp.debugger.engine.events.BPConsoleEvent;
 import il.ac.bgu.se.bp.socket.console.ConsoleMessage;
 import il.ac.bgu.se.bp.socket.console.LogType;
+import il.ac.bgu.se.bp.utils.logger.Logger;
 import il.ac.bgu.se.bp.utils.observer.BPEvent;
 import il.ac.bgu.se.bp.utils.observer.Publisher;
 import il.ac.bgu.se.bp.utils.observer.Subscriber;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
-import java.util.ArrayList;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Console of a program: lines printed by the program are batched and sent to the subscribers as a single
+ * {@link ConsoleMessage} (one line per message line), when a batch is full (200 lines) or 100 milliseconds after its
+ * first line, whichever comes first. {@link #flush()} sends the pending lines right away.
+ *
+ * Lines beyond 1000 per second are not sent, the next batch is followed by a warning with the number of dropped lines.
+ * The limits can be set with {@code -Dbpjs.debugger.console.batchLines}, {@code -Dbpjs.debugger.console.batchMillis}
+ * and {@code -Dbpjs.debugger.console.maxLinesPerSecond}.
+ * When started with {@code -Dbpjs.debugger.console.spillDir=<dir>}, every line (dropped or not) is also written to
+ * {@code <dir>/<debuggerId>.log}, see {@link #writeSpilledLog}, until {@link #deleteSpilledLog()}.
+ */
 public class DebuggerPrintStream extends PrintStream implements Publisher<BPEvent> {
-    private List<Subscriber<BPEvent>> subscribers;
+    private static final Logger logger = new Logger(DebuggerPrintStream.class);
+
+    static final String BATCH_MILLIS_PROPERTY = "bpjs.debugger.console.batchMillis";
+    static final String BATCH_LINES_PROPERTY = "bpjs.debugger.console.batchLines";
+    static final String MAX_LINES_PER_SECOND_PROPERTY = "bpjs.debugger.console.maxLinesPerSecond";
+    static final String SPILL_DIR_PROPERTY = "bpjs.debugger.console.spillDir";
+
+    private static final long ONE_SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final ScheduledExecutorService batchFlusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "DebuggerPrintStream-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<Subscriber<BPEvent>> subscribers = new CopyOnWriteArrayList<>();
+    private final long batchMillis;
+    private final int batchLines;
+    private final int maxLinesPerSecond;
+    private final String spillDir;
     private String debuggerId;
 
+    private final StringBuilder batch = new StringBuilder();
+    private int linesInBatch = 0;
+    private boolean isFlushScheduled = false;
+    private long rateWindowStart = System.nanoTime();
+    private int linesInRateWindow = 0;
+    private int droppedLines = 0;
+    private Path spillFile;
+    private Writer spillWriter;
+
     public DebuggerPrintStream(OutputStream outputStream) {
-        super(outputStream);
-        subscribers = new ArrayList<>();
+        this(outputStream, Long.getLong(BATCH_MILLIS_PROPERTY, 100), Integer.getInteger(BATCH_LINES_PROPERTY, 200),
+                Integer.getInteger(MAX_LINES_PER_SECOND_PROPERTY, 1000), System.getProperty(SPILL_DIR_PROPERTY));
     }
 
     public DebuggerPrintStream() {
         this(System.out);
     }
 
-    public void setDebuggerId(String debuggerId) {
+    DebuggerPrintStream(OutputStream outputStream, long batchMillis, int batchLines, int maxLinesPerSecond, String spillDir) {
+        super(outputStream);
+        this.batchMillis = batchMillis;
+        this.batchLines = batchLines;
+        this.maxLinesPerSecond = maxLinesPerSecond;
+        this.spillDir = spillDir;
+    }
+
+    public synchronized void setDebuggerId(String debuggerId) {
         this.debuggerId = debuggerId;
+        if (spillDir != null) {
+            openSpillFile();
+        }
+    }
+
+    private void openSpillFile() {
+        try {
+            Path dir = Files.createDirectories(Paths.get(spillDir));
+            spillFile = dir.resolve(debuggerId + ".log");
+            spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.error("failed opening console spill file in: {0}, error: {1}", e, spillDir, e.getMessage());
+            spillFile = null;
+            spillWriter = null;
+        }
     }
 
     @Override
@@ -45,8 +118,141 @@ public class DebuggerPrintStream extends PrintStream implements Publisher<BPEven
             subscriber.update(event);
         }
     }
+
     @Override
-    public void println(String s) {
-        notifySubscribers(new BPConsoleEvent(debuggerId, new ConsoleMessage(s, LogType.log)));
+    public synchronized void println(String s) {
+        spill(s);
+        long now = System.nanoTime();
+        if (now - rateWindowStart >= ONE_SECOND_NANOS) {
+            rateWindowStart = now;
+            linesInRateWindow = 0;
+        }
+        if (linesInRateWindow >= maxLinesPerSecond) {
+            droppedLines++;
+        }
+        else {
+            linesInRateWindow++;
+            if (linesInBatch > 0) {
+                batch.append('\n');
+            }
+            batch.append(s);
+            linesInBatch++;
+        }
+
+        if (linesInBatch >= batchLines) {
+            sendBatch();
+        }
+        else if (!isFlushScheduled) {
+            isFlushScheduled = true;
+            batchFlusher.schedule(this::sendBatch, batchMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sends the pending lines to the subscribers.
+     */
+    @Override
+    public synchronized void flush() {
+        sendBatch();
+        super.flush();
+    }
+
+    /**
+     * Sends the pending lines and closes the spill file, which can still be read. The wrapped stream is left open,
+     * and later lines are still sent.
+     */
+    @Override
+    public synchronized void close() {
+        sendBatch();
+        if (spillWriter != null) {
+            try {
+                spillWriter.close();
+            } catch (IOException e) {
+                logger.error("failed closing console spill file: {0}, error: {1}", e, spillFile, e.getMessage());
+            }
+            spillWriter = null;
+        }
+    }
+
+    public synchronized boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Writes every line printed so far to the stream, which is left open. Lines are copied from the spill file
+     * without holding the console, so the program keeps printing meanwhile.
+     *
+     * @throws IOException if the console is not spilled to a file, or the file was deleted
+     */
+    public void writeSpilledLog(OutputStream outputStream) throws IOException {
+        Path logFile;
+        long logLength;
+        synchronized (this) {
+            if (spillFile == null) {
+                throw new IOException("console is not spilled to a file");
+            }
+            if (spillWriter != null) {
+                spillWriter.flush();
+            }
+            logFile = spillFile;
+            logLength = Files.size(spillFile);
+        }
+
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try (InputStream log = Files.newInputStream(logFile)) {
+            long remaining = logLength;
+            while (remaining > 0) {
+                int read = log.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    break;
+                }
+                outputStream.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    /**
+     * Closes the spill file and deletes it, later lines are only sent.
+     */
+    public synchronized void deleteSpilledLog() {
+        close();
+        if (spillFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(spillFile);
+        } catch (IOException e) {
+            logger.error("failed deleting console spill file: {0}, error: {1}", e, spillFile, e.getMessage());
+        }
+        spillFile = null;
+    }
+
+    private void spill(String s) {
+        if (spillWriter == null) {
+            return;
+        }
+        try {
+            spillWriter.write(s);
+            spillWriter.write('\n');
+        } catch (IOException e) {
+            logger.error("failed writing console spill file: {0}, error: {1}", e, spillFile, e.getMessage());
+        }
+    }
+
+    private synchronized void sendBatch() {
+        isFlushScheduled = false;
+        if (linesInBatch > 0) {
+            ConsoleMessage consoleMessage = new ConsoleMessage(batch.toString(), LogType.log);
+            batch.setLength(0);
+            linesInBatch = 0;
+            notifySubscribers(new BPConsoleEvent(debuggerId, consoleMessage));
+        }
+        if (droppedLines > 0) {
+            String message = droppedLines + " lines dropped, console is limited to " + maxLinesPerSecond + " lines per second" +
+                    (spillFile != null ? ", the full log is kept on the server" : "");
+            droppedLines = 0;
+            notifySubscribers(new BPConsoleEvent(debuggerId, new ConsoleMessage(message, LogType.warning)));
+        }
     }
 }
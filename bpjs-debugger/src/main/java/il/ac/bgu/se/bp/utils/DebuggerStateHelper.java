@@ -1,7 +1,5 @@
 package il.ac.bgu.se.bp.utils;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import il.ac.bgu.cs.bp.bpjs.model.BEvent;
 import il.ac.bgu.cs.bp.bpjs.model.BProgramSyncSnapshot;
 import il.ac.bgu.cs.bp.bpjs.model.BThreadSyncSnapshot;
@@ -12,20 +10,24 @@ import il.ac.bgu.se.bp.debugger.BPJsDebugger;
 import il.ac.bgu.se.bp.debugger.DebuggerLevel;
 import il.ac.bgu.se.bp.debugger.RunnerState;
 import il.ac.bgu.se.bp.debugger.engine.SyncSnapshotHolder;
+import il.ac.bgu.se.bp.error.ErrorCode;
+import il.ac.bgu.se.bp.rest.response.ScopeVariableResponse;
 import il.ac.bgu.se.bp.socket.state.*;
 import il.ac.bgu.se.bp.utils.logger.Logger;
 import il.ac.bgu.se.bp.utils.observer.BPEvent;
+import io.micrometer.core.instrument.Timer;
 import org.apache.commons.lang3.ArrayUtils;
 import org.mozilla.javascript.*;
 import org.mozilla.javascript.tools.debugger.Dim;
 
-import java.lang.reflect.Field;
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static il.ac.bgu.cs.bp.bpjs.model.eventsets.EventSets.none;
 import static il.ac.bgu.se.bp.utils.Common.NO_MORE_WAIT_EXTERNAL;
+import static il.ac.bgu.se.bp.utils.FieldAccessors.getValue;
 
 
 public class DebuggerStateHelper {
@@ -40,6 +42,10 @@ public class DebuggerStateHelper {
     private static final int FINAL_INDEX_FOR_EVENTS_HISTORY_ON_SYNC_STATE = 10;
     private BPJsDebugger bpJsDebugger;
     private DebuggerLevel debuggerLevel;
+    private Map<String, Map<Integer, ScriptableObject>> generatedBThreadScopes = new HashMap<>();
+    private Map<Object, String> generatedSummaries = JsValueJsonWriter.newSummaries();
+    private volatile Map<String, Map<Integer, ScriptableObject>> lastBThreadScopes = new HashMap<>();
+    private volatile Scriptable lastGlobalScope = null;
 
     public DebuggerStateHelper(BPJsDebugger bpJsDebugger, SyncSnapshotHolder<BProgramSyncSnapshot, BEvent> syncSnapshotHolder, DebuggerLevel debuggerLevel) {
         this.bpJsDebugger = bpJsDebugger;
@@ -48,10 +54,35 @@ public class DebuggerStateHelper {
     }
 
     public BPDebuggerState generateDebuggerState(BProgramSyncSnapshot syncSnapshot, RunnerState state, Dim.ContextData lastContextData, Dim.SourceInfo sourceInfo) {
+        Timer.Sample sample = Timer.start();
         lastState = generateDebuggerStateInner(syncSnapshot, state, lastContextData, sourceInfo);
+        sample.stop(DebuggerMetrics.stateGenerationTimer(debuggerLevel));
+        lastBThreadScopes = generatedBThreadScopes;
+        lastGlobalScope = syncSnapshot.getBProgram().getGlobalScope();
         return lastState;
     }
 
+    /**
+     * Variables are pushed with the state as summaries only, the scopes of the last generated state are kept so any of
+     * their variables can be expanded on demand.
+     */
+    public ScopeVariableResponse getBThreadVariable(String bThreadName, int frame, String path, int from, int to) {
+        Map<Integer, ScriptableObject> frames = lastBThreadScopes.get(bThreadName);
+        ScriptableObject scope = frames == null ? null : frames.get(frame);
+        if (scope == null) {
+            return new ScopeVariableResponse(ErrorCode.UNKNOWN_SCOPE);
+        }
+        return ScopeVariableHelper.expand(scope, path, from, to);
+    }
+
+    public ScopeVariableResponse getGlobalVariable(String path, int from, int to) {
+        Scriptable globalScope = lastGlobalScope;
+        if (globalScope == null) {
+            return new ScopeVariableResponse(ErrorCode.UNKNOWN_SCOPE);
+        }
+        return ScopeVariableHelper.expand(globalScope, path, from, to);
+    }
+
     public void cleanFields() {
         recentlyRegisteredBT = null;
         newBTInterpreterFrames = null;
@@ -72,14 +103,35 @@ public class DebuggerStateHelper {
         return new boolean[0];
     }
 
+    /**
+     * Generates the state in a single context, as Javascript event sets and values may be evaluated for any b-thread.
+     * On JS debug state the paused thread's context is used.
+     */
     private BPDebuggerState generateDebuggerStateInner(BProgramSyncSnapshot syncSnapshot, RunnerState state, Dim.ContextData lastContextData, Dim.SourceInfo sourceInfo) {
+        boolean isEnterContext = !RunnerState.State.JS_DEBUG.equals(state.getDebuggerState());
+        if (isEnterContext) {
+            Context.enter();
+        }
+        try {
+            return generateDebuggerStateInContext(syncSnapshot, state, lastContextData, sourceInfo);
+        } finally {
+            if (isEnterContext) {
+                Context.exit();
+            }
+        }
+    }
+
+    private BPDebuggerState generateDebuggerStateInContext(BProgramSyncSnapshot syncSnapshot, RunnerState state, Dim.ContextData lastContextData, Dim.SourceInfo sourceInfo) {
         SortedMap<Long, EventInfo> eventsHistory = generateEventsHistory(INITIAL_INDEX_FOR_EVENTS_HISTORY_ON_SYNC_STATE, FINAL_INDEX_FOR_EVENTS_HISTORY_ON_SYNC_STATE);
         DebuggerConfigs debuggerConfigs = generateDebuggerConfigs(bpJsDebugger);
+        generatedBThreadScopes = new HashMap<>();
+        generatedSummaries = JsValueJsonWriter.newSummaries();
 
         Map<String, String> globalEnv = getGlobalEnv(syncSnapshot);
         if (debuggerLevel.getLevel() > DebuggerLevel.LIGHT.getLevel()) {
-            List<BThreadInfo> bThreadInfoList = generateBThreadInfos(syncSnapshot, state, lastContextData);
-            EventsStatus eventsStatus = generateEventsStatus(syncSnapshot, state);
+            EventsStatusIndex eventsStatusIndex = new EventsStatusIndex(syncSnapshot);
+            List<BThreadInfo> bThreadInfoList = generateBThreadInfos(syncSnapshot, state, lastContextData, eventsStatusIndex);
+            EventsStatus eventsStatus = generateEventsStatus(syncSnapshot, state, eventsStatusIndex);
             Integer lineNumber = lastContextData == null ? null : lastContextData.frameCount() > 0 ? lastContextData.getFrame(0).getLineNumber() : null;
             boolean[] breakpoints = getBreakpoints(sourceInfo);
             return new BPDebuggerState(bThreadInfoList, eventsStatus, eventsHistory, currentRunningBT, lineNumber, debuggerConfigs, ArrayUtils.toObject(breakpoints), globalEnv);
@@ -92,7 +144,7 @@ public class DebuggerStateHelper {
 
         Object[] ids = Arrays.stream(syncSnapshot.getBProgram().getGlobalScope().getIds()).filter((p) -> !p.toString().equals("bp")).toArray();
         for (Object id : ids) {
-            Object jsValue = collectJsValue(syncSnapshot.getBProgram().getFromGlobalScope(id.toString(), Object.class).get());
+            Object jsValue = syncSnapshot.getBProgram().getFromGlobalScope(id.toString(), Object.class).get();
             String var_value = getVarGsonValue(jsValue);
             globalEnv.put(id.toString(), var_value);
         }
@@ -104,11 +156,11 @@ public class DebuggerStateHelper {
                 new DebuggerConfigs(bpJsDebugger.isMuteBreakPoints(), bpJsDebugger.isWaitForExternalEvents(), bpJsDebugger.isSkipSyncPoints());
     }
 
-    private List<BThreadInfo> generateBThreadInfos(BProgramSyncSnapshot syncSnapshot, RunnerState state, Dim.ContextData lastContextData) {
+    private List<BThreadInfo> generateBThreadInfos(BProgramSyncSnapshot syncSnapshot, RunnerState state, Dim.ContextData lastContextData, EventsStatusIndex eventsStatusIndex) {
         Set<BThreadSyncSnapshot> bThreadSyncSnapshots = syncSnapshot.getBThreadSnapshots();
         List<BThreadInfo> bThreadInfoList = bThreadSyncSnapshots
                 .stream()
-                .map(bThreadSyncSnapshot -> createBThreadInfo(bThreadSyncSnapshot, state, lastContextData, syncSnapshot))
+                .map(bThreadSyncSnapshot -> createBThreadInfo(bThreadSyncSnapshot, state, lastContextData, eventsStatusIndex))
                 .collect(Collectors.toList());
 
         if (state.getDebuggerState() == RunnerState.State.JS_DEBUG && Context.getCurrentContext() != null) {
@@ -119,21 +171,15 @@ public class DebuggerStateHelper {
         return bThreadInfoList;
     }
 
-    private EventsStatus generateEventsStatus(BProgramSyncSnapshot syncSnapshot, RunnerState state) {
-        Set<SyncStatement> statements = syncSnapshot.getStatements();
-        List<BEvent> requested = statements.stream().map(SyncStatement::getRequest).flatMap(Collection::stream).collect(Collectors.toList());
+    private EventsStatus generateEventsStatus(BProgramSyncSnapshot syncSnapshot, RunnerState state, EventsStatusIndex eventsStatusIndex) {
+        Set<SyncStatement> statements = eventsStatusIndex.getStatements();
+        List<BEvent> requested = eventsStatusIndex.getRequestedEvents();
 
-        if (!RunnerState.State.JS_DEBUG.equals(state.getDebuggerState())) {
-            Context.enter();
-        }
-        List<EventSet> wait = getMatchingEventSet(requested, statements.stream().map(SyncStatement::getWaitFor));
+        List<EventSet> wait = getMatchingEventSet(eventsStatusIndex, statements.stream().map(SyncStatement::getWaitFor));
         List<EventInfo> waitEvents = getMatchingEventInfo(wait);
 
-        List<EventSet> blocked = getMatchingEventSet(requested, statements.stream().map(SyncStatement::getBlock));
+        List<EventSet> blocked = getMatchingEventSet(eventsStatusIndex, statements.stream().map(SyncStatement::getBlock));
         List<EventInfo> blockedEvents = getMatchingEventInfo(blocked);
-        if (!RunnerState.State.JS_DEBUG.equals(state.getDebuggerState())) {
-            Context.exit();
-        }
 
         Set<EventInfo> requestedEvents = requested.stream().map((e) -> new EventInfo(getEventName(e))).collect(Collectors.toSet());
         List<EventInfo> externalEvents = syncSnapshot.getExternalEvents().stream()
@@ -151,19 +197,39 @@ public class DebuggerStateHelper {
         return eventSets.stream().map((e) -> e.equals(none) ? null : new EventInfo(getEventName(e))).filter(Objects::nonNull).collect(Collectors.toList());
     }
 
-    private List<EventSet> getMatchingEventSet(List<BEvent> bEvents, Stream<EventSet> eventSetStream) {
-        return eventSetStream.filter(e -> bEvents.stream().anyMatch(e::contains)).collect(Collectors.toList());
+    private List<EventSet> getMatchingEventSet(EventsStatusIndex eventsStatusIndex, Stream<EventSet> eventSetStream) {
+        return eventSetStream.filter(e -> !eventsStatusIndex.getMatchingRequestedEvents(e).isEmpty()).collect(Collectors.toList());
     }
 
     public SortedMap<Long, EventInfo> generateEventsHistory(int from, int to) {
         SortedMap<Long, BEvent> events = syncSnapshotHolder.getEventsHistoryStack(from, to);
         SortedMap<Long, EventInfo> eventsHistory = new TreeMap<>(Collections.reverseOrder());
-        for (Map.Entry<Long, BEvent> entry : events.entrySet()) {
-            eventsHistory.put(entry.getKey(), new EventInfo(entry.getValue().name));
+        Context.enter();
+        try {
+            for (Map.Entry<Long, BEvent> entry : events.entrySet()) {
+                eventsHistory.put(entry.getKey(), new EventInfo(entry.getValue().name, getEventData(entry.getValue())));
+            }
+        } finally {
+            Context.exit();
         }
         return eventsHistory;
     }
 
+    /**
+     * The data is written in full, so a trace of the events history can be replayed matching the events on their data.
+     */
+    private String getEventData(BEvent event) {
+        if (event.getData() == null) {
+            return null;
+        }
+        try {
+            return JsValueJsonWriter.toJson(event.getData());
+        } catch (IOException e) {
+            logger.error("failed writing the data of event: {0}, error: {1}", e, event.name, e.getMessage());
+            return null;
+        }
+    }
+
     private List<BThreadInfo> getRecentlyAddedBTInfo(Dim.ContextData lastContextData) {
         List<BThreadInfo> bThreadInfoList = new ArrayList<>();
         Context cx = Context.getCurrentContext();
@@ -213,26 +279,17 @@ public class DebuggerStateHelper {
         else return Objects.toString(eventSet);
     }
 
-    private BThreadInfo createBThreadInfo(BThreadSyncSnapshot bThreadSS, RunnerState state, Dim.ContextData lastContextData, BProgramSyncSnapshot syncSnapshot) {
+    private BThreadInfo createBThreadInfo(BThreadSyncSnapshot bThreadSS, RunnerState state, Dim.ContextData lastContextData, EventsStatusIndex eventsStatusIndex) {
         try {
             Object implementation = getValue(bThreadSS.getScope(), "implementation");
             Map<Integer, BThreadScope> env = state == null ? null :
                     (state.getDebuggerState() == RunnerState.State.JS_DEBUG && Context.getCurrentContext() != null) ? getEnvDebug(implementation, lastContextData, bThreadSS.getName()) :
-                            getEnv(implementation);
-
-            Set<SyncStatement> statements = syncSnapshot.getStatements();
-            List<BEvent> allRequestedBEvents = statements.stream().map(SyncStatement::getRequest).flatMap(Collection::stream).collect(Collectors.toList());
+                            getEnv(implementation, bThreadSS.getName());
 
             EventSet waitFor = bThreadSS.getSyncStatement().getWaitFor();
             EventSet blocked = bThreadSS.getSyncStatement().getBlock();
-            if (!RunnerState.State.JS_DEBUG.equals(state.getDebuggerState())) {
-                Context.enter();
-            }
-            Set<BEvent> waitBEvents = allRequestedBEvents.stream().filter(req -> waitFor.contains(req)).collect(Collectors.toSet());
-            Set<BEvent> blockedBEvents = allRequestedBEvents.stream().filter(req -> blocked.contains(req)).collect(Collectors.toSet());
-            if (!RunnerState.State.JS_DEBUG.equals(state.getDebuggerState())) {
-                Context.exit();
-            }
+            Set<BEvent> waitBEvents = eventsStatusIndex.getMatchingRequestedEvents(waitFor);
+            Set<BEvent> blockedBEvents = eventsStatusIndex.getMatchingRequestedEvents(blocked);
             Set<EventInfo> waitEvents = waitBEvents.stream().map((e) -> e.equals(none) ? null : new EventInfo(getEventName(e))).filter(Objects::nonNull).collect(Collectors.toSet());
             Set<EventInfo> blockedEvents = blockedBEvents.stream().map((e) -> e.equals(none) ? null : new EventInfo(getEventName(e))).filter(Objects::nonNull).collect(Collectors.toSet());
             Set<EventInfo> requested = new ArrayList<>(bThreadSS.getSyncStatement().getRequest()).stream().map((r) -> new EventInfo(r.getName())).collect(Collectors.toSet());
@@ -244,12 +301,6 @@ public class DebuggerStateHelper {
         return null;
     }
 
-    private <T> T getValue(Object instance, String fieldName) throws NoSuchFieldException, IllegalAccessException {
-        Field fld = instance.getClass().getDeclaredField(fieldName);
-        fld.setAccessible(true);
-        return (T) fld.get(instance);
-    }
-
     /**
      * This function generating bthread env in JS debug state
      *
@@ -266,16 +317,16 @@ public class DebuggerStateHelper {
         try {
             Object cxInterpreterFrame = getValue(cx, "lastInterpreterFrame");
             if (cxInterpreterFrame == null) {
-                return getEnv(interpreterCallFrame);
+                return getEnv(interpreterCallFrame, btName);
             }
             Object myScope = getValue(interpreterCallFrame, "scope");
             currentRunningBT = isScopesRelated(cxInterpreterFrame, myScope);
             Object parentFrame = interpreterCallFrame;
             if (currentRunningBT) { //current running BT
-                logger.info("currentRunningBT + " + btName);
+                logger.debug("currentRunningBT: {0}", btName);
                 for (int i = 0; i < lastContextData.frameCount(); i++) {
                     ScriptableObject scope = (ScriptableObject) lastContextData.getFrame(i).scope();
-                    env.put(i, getScope(scope, lastContextData.getFrame(i).getLineNumber()));
+                    putScope(env, btName, i, scope, lastContextData.getFrame(i).getLineNumber());
                     key++;
                 }
                 key = lastContextData.frameCount();
@@ -290,14 +341,14 @@ public class DebuggerStateHelper {
                     if (debuggerFrame != lastContextData) {
                         for (int i = 0; i < debuggerFrame.frameCount(); i++) {
                             ScriptableObject scope = (ScriptableObject) debuggerFrame.getFrame(i).scope();
-                            env.put(key, getScope(scope, debuggerFrame.getFrame(i).getLineNumber()));
+                            putScope(env, btName, key, scope, debuggerFrame.getFrame(i).getLineNumber());
                             key++;
                         }
                     }
                 } else {
                     ScriptableObject scope = getValue(parentFrame, "scope");
                     Dim.StackFrame stackFrame = getValue(parentFrame, "debuggerFrame");
-                    env.put(key, getScope(scope, stackFrame.getLineNumber()));
+                    putScope(env, btName, key, scope, stackFrame.getLineNumber());
                     key++;
                 }
                 parentFrame = getValue(parentFrame, "parentFrame");
@@ -325,18 +376,18 @@ public class DebuggerStateHelper {
         }
     }
 
-    private Map<Integer, BThreadScope> getEnv(Object interpreterCallFrame) {
+    private Map<Integer, BThreadScope> getEnv(Object interpreterCallFrame, String btName) {
         Map<Integer, BThreadScope> env = new HashMap<>();
         int key = 0;
         try {
             ScriptableObject scope = getValue(interpreterCallFrame, "scope");
             Dim.StackFrame stackFrame = getValue(interpreterCallFrame, "debuggerFrame");
-            env.put(key++, getScope(scope, stackFrame.getLineNumber()));
+            putScope(env, btName, key++, scope, stackFrame.getLineNumber());
             Object parentFrame = getValue(interpreterCallFrame, "parentFrame");
             while (parentFrame != null) {
                 scope = getValue(parentFrame, "scope");
                 stackFrame = getValue(parentFrame, "debuggerFrame");
-                env.put(key, getScope(scope, stackFrame.getLineNumber()));
+                putScope(env, btName, key, scope, stackFrame.getLineNumber());
                 key++;
                 parentFrame = getValue(parentFrame, "parentFrame");
             }
@@ -346,6 +397,11 @@ public class DebuggerStateHelper {
         return env;
     }
 
+    private void putScope(Map<Integer, BThreadScope> env, String btName, int key, ScriptableObject scope, int lineNumber) {
+        env.put(key, getScope(scope, lineNumber));
+        generatedBThreadScopes.computeIfAbsent(btName, name -> new HashMap<>()).put(key, scope);
+    }
+
     private BThreadScope getScope(ScriptableObject scope, int lineNumber) {
         Map<String, String> variables = new LinkedHashMap<>();
         try {
@@ -354,7 +410,7 @@ public class DebuggerStateHelper {
             String itsName = getValue(interpretedData, "itsName");
             Object[] ids = Arrays.stream(scope.getIds()).filter((p) -> !p.toString().equals("arguments") && !p.toString().equals(itsName + "param")).toArray();
             for (Object id : ids) {
-                Object jsValue = collectJsValue(scope.get(id));
+                Object jsValue = scope.get(id);
                 String var_value = getVarGsonValue(jsValue);
                 variables.put(id.toString(), var_value);
             }
@@ -368,11 +424,8 @@ public class DebuggerStateHelper {
     private String getVarGsonValue(Object jsValue) {
         if (jsValue instanceof JsEventSet)
             return Objects.toString(jsValue);
-        GsonBuilder gsonBuilder = new GsonBuilder();
-        gsonBuilder.serializeSpecialFloatingPointValues();
-        Gson gson = gsonBuilder.create();
         try {
-            return gson.toJson(jsValue);
+            return JsValueJsonWriter.toJsonSummary(jsValue, generatedSummaries);
         } catch (Exception e) {
             logger.error("getVarGsonValue Error: jsValue: {0}, error: {1} ", e, jsValue, e.getMessage());
             return null;
@@ -383,51 +436,10 @@ public class DebuggerStateHelper {
         return lastState;
     }
 
-    /**
-     * Take a Javascript value from Rhino, build a Java value for it.
-     *
-     * @param jsValue
-     * @return
-     */
-    private Object collectJsValue(Object jsValue) {
-        if (jsValue == null) {
-            return null;
-        } else if (jsValue instanceof NativeFunction) {
-            return ((NativeFunction) jsValue).getTypeOf();
-        } else if (jsValue instanceof ArrowFunction) {
-            return ((ArrowFunction) jsValue).getTypeOf();
-        } else if (jsValue instanceof NativeArray) {
-            NativeArray jsArr = (NativeArray) jsValue;
-            List<Object> retVal = new ArrayList<>((int) jsArr.getLength());
-            for (int idx = 0; idx < jsArr.getLength(); idx++) {
-                retVal.add(collectJsValue(jsArr.get(idx)));
-            }
-            return retVal;
-        } else if (jsValue instanceof ScriptableObject) {
-            ScriptableObject jsObj = (ScriptableObject) jsValue;
-            Map<Object, Object> retVal = new HashMap<>();
-            for (Object key : jsObj.getIds()) {
-                retVal.put(key, collectJsValue(jsObj.get(key)));
-            }
-            return retVal;
-        } else if (jsValue instanceof ConsString) {
-            return ((ConsString) jsValue).toString();
-        } else if (jsValue instanceof NativeJavaObject) {
-            NativeJavaObject jsJavaObj = (NativeJavaObject) jsValue;
-            return jsJavaObj.unwrap();
-        } else {
-            return jsValue;
-        }
-    }
-
     public void setRecentlyRegisteredBThreads(Set<Pair<String, Object>> recentlyRegistered) {
         this.recentlyRegisteredBT = recentlyRegistered;
     }
 
-    public BPDebuggerState peekNextState(BProgramSyncSnapshot syncSnapshot, RunnerState state, Dim.ContextData lastContextData, Dim.SourceInfo sourceInfo) {
-        return generateDebuggerStateInner(syncSnapshot, state, lastContextData, sourceInfo);
-    }
-
     public void updateCurrentEvent(String name) {
         this.currentEvent = name;
     }
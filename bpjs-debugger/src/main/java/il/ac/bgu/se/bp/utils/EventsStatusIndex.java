@@ -0,0 +1,57 @@
+package il.ac.bgu.se.bp.utils;
+
+import il.ac.bgu.cs.bp.bpjs.model.BEvent;
+import il.ac.bgu.cs.bp.bpjs.model.BProgramSyncSnapshot;
+import il.ac.bgu.cs.bp.bpjs.model.SyncStatement;
+import il.ac.bgu.cs.bp.bpjs.model.eventsets.EventSet;
+
+import java.util.*;
+
+/**
+ * The events requested on a snapshot, each once, and which of them every wait-for / block event set of the snapshot
+ * contains. Built once per generated state and shared by all of its b-threads, so an event set is matched against the
+ * requested events once, however many b-threads share it.
+ *
+ * This is the snapshot's cache of event set containment, keyed by (event set identity, requested event).
+ * Matching may evaluate Javascript event sets, so it must run in a context - the one entered for the whole state
+ * generation.
+ */
+class EventsStatusIndex {
+    private final Set<SyncStatement> statements;
+    private final List<BEvent> requestedEvents;
+    private final Map<EventSet, Set<BEvent>> matchingRequestedEvents = new IdentityHashMap<>();
+
+    EventsStatusIndex(BProgramSyncSnapshot syncSnapshot) {
+        statements = syncSnapshot.getStatements();
+        Set<BEvent> requested = new LinkedHashSet<>();
+        for (SyncStatement statement : statements) {
+            requested.addAll(statement.getRequest());
+        }
+        requestedEvents = new ArrayList<>(requested);
+    }
+
+    Set<SyncStatement> getStatements() {
+        return statements;
+    }
+
+    List<BEvent> getRequestedEvents() {
+        return requestedEvents;
+    }
+
+    /**
+     * @return the requested events contained in the given event set
+     */
+    Set<BEvent> getMatchingRequestedEvents(EventSet eventSet) {
+        Set<BEvent> matching = matchingRequestedEvents.get(eventSet);
+        if (matching == null) {
+            matching = new HashSet<>();
+            for (BEvent requestedEvent : requestedEvents) {
+                if (eventSet.contains(requestedEvent)) {
+                    matching.add(requestedEvent);
+                }
+            }
+            matchingRequestedEvents.put(eventSet, matching);
+        }
+        return matching;
+    }
+}
@@ -0,0 +1,57 @@
+package il.ac.bgu.se.bp.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of getters for private fields of Rhino internals (interpreter frames, scopes, etc.).
+ * Each (class, fieldName) pair is resolved once into a {@link MethodHandle} and shared by all debugger sessions.
+ */
+public final class FieldAccessors {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<ConcurrentMap<String, MethodHandle>> gettersByClass = new ClassValue<ConcurrentMap<String, MethodHandle>>() {
+        @Override
+        protected ConcurrentMap<String, MethodHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private FieldAccessors() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> T getValue(Object instance, String fieldName) throws NoSuchFieldException, IllegalAccessException {
+        MethodHandle getter = getGetter(instance.getClass(), fieldName);
+        try {
+            return (T) (Object) getter.invokeExact(instance);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("failed reading field " + fieldName, t);
+        }
+    }
+
+    static MethodHandle getGetter(Class<?> clazz, String fieldName) throws NoSuchFieldException, IllegalAccessException {
+        ConcurrentMap<String, MethodHandle> getters = gettersByClass.get(clazz);
+        MethodHandle getter = getters.get(fieldName);
+        if (getter == null) {
+            getter = resolveGetter(clazz, fieldName);
+            MethodHandle existing = getters.putIfAbsent(fieldName, getter);
+            getter = existing != null ? existing : getter;
+        }
+        return getter;
+    }
+
+    private static MethodHandle resolveGetter(Class<?> clazz, String fieldName) throws NoSuchFieldException, IllegalAccessException {
+        Field field = clazz.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        return LOOKUP.unreflectGetter(field).asType(GETTER_TYPE);
+    }
+}
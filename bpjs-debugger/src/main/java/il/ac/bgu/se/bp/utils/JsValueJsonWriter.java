@@ -0,0 +1,218 @@
+package il.ac.bgu.se.bp.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+import il.ac.bgu.cs.bp.bpjs.model.eventsets.JsEventSet;
+import org.mozilla.javascript.BaseFunction;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Undefined;
+import org.mozilla.javascript.Wrapper;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes Javascript values from Rhino as JSON, walking arrays and objects directly instead of copying them into Java
+ * collections first. Java objects (unwrapped from {@link Wrapper}s) are left to Gson.
+ *
+ * Objects already on the path being written are written as {@value #CIRCULAR_MARKER}, objects deeper than the max
+ * depth as {@value #MAX_DEPTH_MARKER}, and arrays, objects and strings are cut after the max elements / length with a
+ * {@value #TRUNCATED_KEY} marker.
+ * Summaries (as pushed with the debugger state) use tighter {@link Limits} than full values.
+ *
+ * One writer (and its buffer) per thread, see {@link #toJson(Object)}.
+ */
+public final class JsValueJsonWriter {
+    static final String CIRCULAR_MARKER = "[Circular]";
+    static final String MAX_DEPTH_MARKER = "[...]";
+    static final String TRUNCATED_KEY = "...";
+
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+    private static final Gson gson = new GsonBuilder().serializeSpecialFloatingPointValues().create();
+    private static final ThreadLocal<JsValueJsonWriter> writers = ThreadLocal.withInitial(JsValueJsonWriter::new);
+
+    private final StringWriter buffer = new StringWriter();
+    private final Set<Object> path = Collections.newSetFromMap(new IdentityHashMap<>());
+    private Limits limits;
+
+    /**
+     * How much of a value is written.
+     * The summary limits can be set with {@code -Dbpjs.debugger.state.maxDepth}, {@code -Dbpjs.debugger.state.maxElements}
+     * and {@code -Dbpjs.debugger.state.maxStringLength}.
+     */
+    public static final class Limits {
+        public static final Limits FULL = new Limits(32, 1000, 10000);
+        public static final Limits SUMMARY = new Limits(
+                Integer.getInteger("bpjs.debugger.state.maxDepth", 2),
+                Integer.getInteger("bpjs.debugger.state.maxElements", 20),
+                Integer.getInteger("bpjs.debugger.state.maxStringLength", 200));
+
+        private final int maxDepth;
+        private final int maxElements;
+        private final int maxStringLength;
+
+        public Limits(int maxDepth, int maxElements, int maxStringLength) {
+            this.maxDepth = maxDepth;
+            this.maxElements = maxElements;
+            this.maxStringLength = maxStringLength;
+        }
+
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        public int getMaxElements() {
+            return maxElements;
+        }
+
+        public int getMaxStringLength() {
+            return maxStringLength;
+        }
+    }
+
+    private JsValueJsonWriter() {
+    }
+
+    /**
+     * @return the JSON of the given Javascript value, written by the current thread's writer
+     */
+    public static String toJson(Object jsValue) throws IOException {
+        return writers.get().write(jsValue, Limits.FULL);
+    }
+
+    public static String toJson(Object jsValue, Limits limits) throws IOException {
+        return writers.get().write(jsValue, limits);
+    }
+
+    public static String toJsonSummary(Object jsValue) throws IOException {
+        return writers.get().write(jsValue, Limits.SUMMARY);
+    }
+
+    /**
+     * Same as {@link #toJsonSummary(Object)}, but an object already summarized into the given map (by identity) is not
+     * written again. Share one map between the values of a single state, as the same objects are usually reachable
+     * from many scopes.
+     */
+    public static String toJsonSummary(Object jsValue, Map<Object, String> summaries) throws IOException {
+        if (!(jsValue instanceof ScriptableObject) || jsValue instanceof BaseFunction) {
+            return toJsonSummary(jsValue);
+        }
+        String summary = summaries.get(jsValue);
+        if (summary == null) {
+            summary = toJsonSummary(jsValue);
+            summaries.put(jsValue, summary);
+        }
+        return summary;
+    }
+
+    /**
+     * @return a new map to share between {@link #toJsonSummary(Object, Map)} calls
+     */
+    public static Map<Object, String> newSummaries() {
+        return new IdentityHashMap<>();
+    }
+
+    private String write(Object jsValue, Limits limits) throws IOException {
+        this.limits = limits;
+        StringBuffer chars = buffer.getBuffer();
+        chars.setLength(0);
+        path.clear();
+        try {
+            JsonWriter jsonWriter = new JsonWriter(buffer);
+            jsonWriter.setLenient(true);
+            jsonWriter.setSerializeNulls(false);
+            writeValue(jsonWriter, jsValue, 0);
+            jsonWriter.flush();
+            return chars.toString();
+        } finally {
+            if (chars.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                chars.setLength(0);
+                chars.trimToSize();
+            }
+        }
+    }
+
+    private void writeValue(JsonWriter jsonWriter, Object jsValue, int depth) throws IOException {
+        if (jsValue == null || jsValue == Undefined.instance) {
+            jsonWriter.nullValue();
+        } else if (jsValue instanceof CharSequence) {
+            jsonWriter.value(truncate(jsValue.toString()));
+        } else if (jsValue instanceof Boolean) {
+            jsonWriter.value((Boolean) jsValue);
+        } else if (jsValue instanceof Number) {
+            jsonWriter.value((Number) jsValue);
+        } else if (jsValue instanceof BaseFunction) {
+            jsonWriter.value(((BaseFunction) jsValue).getTypeOf());
+        } else if (jsValue instanceof JsEventSet) {
+            jsonWriter.value(truncate(jsValue.toString()));
+        } else if (jsValue instanceof NativeArray || jsValue instanceof ScriptableObject) {
+            writeContainer(jsonWriter, (ScriptableObject) jsValue, depth);
+        } else if (jsValue instanceof Wrapper) {
+            writeValue(jsonWriter, ((Wrapper) jsValue).unwrap(), depth);
+        } else {
+            gson.toJson(jsValue, jsValue.getClass(), jsonWriter);
+        }
+    }
+
+    private String truncate(String str) {
+        int maxStringLength = limits.getMaxStringLength();
+        if (str.length() <= maxStringLength) {
+            return str;
+        }
+        return str.substring(0, maxStringLength) + TRUNCATED_KEY + " " + (str.length() - maxStringLength) + " more";
+    }
+
+    private void writeContainer(JsonWriter jsonWriter, ScriptableObject jsObj, int depth) throws IOException {
+        if (depth >= limits.getMaxDepth()) {
+            jsonWriter.value(MAX_DEPTH_MARKER);
+            return;
+        }
+        if (!path.add(jsObj)) {
+            jsonWriter.value(CIRCULAR_MARKER);
+            return;
+        }
+        try {
+            if (jsObj instanceof NativeArray) {
+                writeArray(jsonWriter, (NativeArray) jsObj, depth);
+            }
+            else {
+                writeObject(jsonWriter, jsObj, depth);
+            }
+        } finally {
+            path.remove(jsObj);
+        }
+    }
+
+    private void writeArray(JsonWriter jsonWriter, NativeArray jsArr, int depth) throws IOException {
+        long length = jsArr.getLength();
+        int written = (int) Math.min(length, limits.getMaxElements());
+        jsonWriter.beginArray();
+        for (int idx = 0; idx < written; idx++) {
+            writeValue(jsonWriter, jsArr.get(idx), depth + 1);
+        }
+        if (written < length) {
+            jsonWriter.value(TRUNCATED_KEY + " " + (length - written) + " more");
+        }
+        jsonWriter.endArray();
+    }
+
+    private void writeObject(JsonWriter jsonWriter, ScriptableObject jsObj, int depth) throws IOException {
+        Object[] ids = jsObj.getIds();
+        int written = Math.min(ids.length, limits.getMaxElements());
+        jsonWriter.beginObject();
+        for (int idx = 0; idx < written; idx++) {
+            jsonWriter.name(String.valueOf(ids[idx]));
+            writeValue(jsonWriter, jsObj.get(ids[idx]), depth + 1);
+        }
+        if (written < ids.length) {
+            jsonWriter.name(TRUNCATED_KEY).value((ids.length - written) + " more");
+        }
+        jsonWriter.endObject();
+    }
+}
@@ -0,0 +1,92 @@
+package il.ac.bgu.se.bp.utils;
+
+import il.ac.bgu.se.bp.error.ErrorCode;
+import il.ac.bgu.se.bp.rest.response.ScopeVariableResponse;
+import il.ac.bgu.se.bp.utils.logger.Logger;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Wrapper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Expands a variable of a scope kept from the last generated debugger state: resolves a dot separated path of
+ * property names/indices from the scope, and summarizes a page of the resolved value's elements/properties.
+ * A page holds at most 1000 elements ({@code -Dbpjs.debugger.variables.maxPageSize}), whatever its requested end.
+ */
+public final class ScopeVariableHelper {
+    private static final Logger logger = new Logger(ScopeVariableHelper.class);
+    private static final Pattern PATH_SEPARATOR = Pattern.compile("\\.");
+    private static final Pattern INDEX = Pattern.compile("\\d{1,9}");
+    private static final int MAX_PAGE_SIZE = Integer.getInteger("bpjs.debugger.variables.maxPageSize", 1000);
+
+    private ScopeVariableHelper() {
+    }
+
+    public static ScopeVariableResponse expand(Scriptable scope, String path, int from, int to) {
+        if (from < 0 || to < from) {
+            return new ScopeVariableResponse(ErrorCode.INVALID_REQUEST);
+        }
+        to = (int) Math.min(to, (long) from + MAX_PAGE_SIZE);
+        Context.enter();
+        try {
+            Object value = scope;
+            if (path != null && !path.isEmpty()) {
+                for (String name : PATH_SEPARATOR.split(path)) {
+                    value = getChild(value, name);
+                    if (value == Scriptable.NOT_FOUND) {
+                        return new ScopeVariableResponse(ErrorCode.UNKNOWN_VARIABLE);
+                    }
+                }
+            }
+
+            Map<Object, String> summaries = JsValueJsonWriter.newSummaries();
+            Map<String, String> children = new LinkedHashMap<>();
+            int size;
+            if (value instanceof NativeArray) {
+                size = (int) Math.min(((NativeArray) value).getLength(), Integer.MAX_VALUE);
+                for (int idx = from; idx < Math.min(to, size); idx++) {
+                    children.put(String.valueOf(idx), JsValueJsonWriter.toJsonSummary(getChild(value, idx), summaries));
+                }
+            }
+            else if (value instanceof ScriptableObject) {
+                Object[] ids = ((ScriptableObject) value).getIds();
+                size = ids.length;
+                for (int idx = from; idx < Math.min(to, size); idx++) {
+                    children.put(String.valueOf(ids[idx]), JsValueJsonWriter.toJsonSummary(getChild(value, ids[idx]), summaries));
+                }
+            }
+            else {
+                size = 0;
+            }
+            return new ScopeVariableResponse(path, JsValueJsonWriter.toJsonSummary(value), size, children);
+        } catch (Exception e) {
+            logger.error("failed expanding variable: {0}, error: {1}", e, path, e.getMessage());
+            return new ScopeVariableResponse(ErrorCode.GENERAL_ERROR);
+        } finally {
+            Context.exit();
+        }
+    }
+
+    private static Object getChild(Object value, Object id) {
+        if (!(value instanceof ScriptableObject)) {
+            return Scriptable.NOT_FOUND;
+        }
+        ScriptableObject jsObj = (ScriptableObject) value;
+        Object child;
+        if (id instanceof Integer) {
+            child = ScriptableObject.getProperty(jsObj, (Integer) id);
+        }
+        else if (INDEX.matcher(id.toString()).matches()) {
+            child = ScriptableObject.getProperty(jsObj, Integer.parseInt(id.toString()));
+        }
+        else {
+            child = ScriptableObject.getProperty(jsObj, id.toString());
+        }
+        return child instanceof Wrapper ? ((Wrapper) child).unwrap() : child;
+    }
+}
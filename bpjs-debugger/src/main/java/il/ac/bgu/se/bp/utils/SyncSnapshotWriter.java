@@ -0,0 +1,121 @@
+package il.ac.bgu.se.bp.utils;
+
+import il.ac.bgu.cs.bp.bpjs.BPjs;
+import il.ac.bgu.cs.bp.bpjs.bprogramio.BPJSStubOutputStream;
+import il.ac.bgu.cs.bp.bpjs.bprogramio.BProgramSyncSnapshotIO;
+import il.ac.bgu.cs.bp.bpjs.model.BEvent;
+import il.ac.bgu.cs.bp.bpjs.model.BProgram;
+import il.ac.bgu.cs.bp.bpjs.model.BProgramSyncSnapshot;
+import il.ac.bgu.cs.bp.bpjs.model.BThreadSyncSnapshot;
+import il.ac.bgu.cs.bp.bpjs.model.SafetyViolationTag;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.debug.DebugFrame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+
+/**
+ * Writes a sync snapshot in the format read by {@link BProgramSyncSnapshotIO#deserialize(byte[])}, directly to a
+ * stream. Unlike {@link BProgramSyncSnapshotIO#serialize(BProgramSyncSnapshot)}, the debugger frames that Rhino
+ * attaches to the continuations of a debugged program are not written (they are not serializable), so snapshots of
+ * debug sessions can be exported too. A snapshot read back has no debugger frames in its continuations' stacks,
+ * breakpoints apply from the next function call of each b-thread.
+ */
+public final class SyncSnapshotWriter {
+    private static final String HEADER_CLASS = BProgramSyncSnapshotIO.class.getName() + "$Header";
+    private static final Constructor<?> headerConstructor = findHeaderConstructor();
+
+    private SyncSnapshotWriter() {
+    }
+
+    /**
+     * Writes the snapshot and flushes the stream, which is left open.
+     */
+    public static void write(BProgramSyncSnapshot snapshot, OutputStream outputStream) throws IOException {
+        BPjs.enterRhinoContext();
+        try {
+            ObjectOutputStream objectOutputStream = new DebuggerFramesStubOutputStream(outputStream, snapshot.getBProgram().getGlobalScope());
+            objectOutputStream.writeObject(createHeader(snapshot));
+            objectOutputStream.writeObject(snapshot.getDataStore());
+            for (BThreadSyncSnapshot bThreadSnapshot : snapshot.getBThreadSnapshots()) {
+                writeBThreadSnapshot(bThreadSnapshot, objectOutputStream);
+            }
+            for (BEvent externalEvent : snapshot.getExternalEvents()) {
+                objectOutputStream.writeObject(externalEvent);
+            }
+            objectOutputStream.flush();
+        } finally {
+            Context.exit();
+        }
+    }
+
+    public static byte[] serialize(BProgramSyncSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        write(snapshot, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Serializes a single b-thread, in the format read by {@link BProgramSyncSnapshotIO#deserializeBThread}.
+     */
+    public static byte[] serializeBThread(BProgram bProgram, BThreadSyncSnapshot bThreadSnapshot) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BPjs.enterRhinoContext();
+        try {
+            ObjectOutputStream objectOutputStream = new DebuggerFramesStubOutputStream(outputStream, bProgram.getGlobalScope());
+            writeBThreadSnapshot(bThreadSnapshot, objectOutputStream);
+            objectOutputStream.flush();
+        } finally {
+            Context.exit();
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static void writeBThreadSnapshot(BThreadSyncSnapshot bThreadSnapshot, ObjectOutputStream objectOutputStream) throws IOException {
+        objectOutputStream.writeObject(bThreadSnapshot.getName());
+        objectOutputStream.writeObject(bThreadSnapshot.getEntryPoint());
+        objectOutputStream.writeObject(bThreadSnapshot.getInterrupt().orElse(null));
+        objectOutputStream.writeObject(bThreadSnapshot.getSyncStatement());
+        objectOutputStream.writeObject(bThreadSnapshot.getData());
+        objectOutputStream.writeObject(bThreadSnapshot.getStorageModifications());
+        objectOutputStream.writeObject(bThreadSnapshot.getContinuation());
+    }
+
+    private static Object createHeader(BProgramSyncSnapshot snapshot) throws IOException {
+        try {
+            return headerConstructor.newInstance(snapshot.getBThreadSnapshots().size(), snapshot.getExternalEvents().size(),
+                    snapshot.getViolationTag());
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("failed creating sync snapshot header", e);
+        }
+    }
+
+    private static Constructor<?> findHeaderConstructor() {
+        try {
+            Constructor<?> constructor = Class.forName(HEADER_CLASS)
+                    .getDeclaredConstructor(int.class, int.class, SafetyViolationTag.class);
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("unsupported BPjs version, " + HEADER_CLASS + " not found", e);
+        }
+    }
+
+    private static class DebuggerFramesStubOutputStream extends BPJSStubOutputStream {
+        DebuggerFramesStubOutputStream(OutputStream outputStream, Scriptable scope) throws IOException {
+            super(outputStream, scope);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj instanceof DebugFrame) {
+                return null;
+            }
+            return super.replaceObject(obj);
+        }
+    }
+}
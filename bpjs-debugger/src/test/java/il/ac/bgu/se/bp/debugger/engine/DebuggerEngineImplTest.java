@@ -7,11 +7,13 @@ import il.ac.bgu.cs.bp.bpjs.model.ResourceBProgram;
 import il.ac.bgu.se.bp.debugger.BPJsDebugger;
 import il.ac.bgu.se.bp.debugger.DebuggerLevel;
 import il.ac.bgu.se.bp.debugger.RunnerState;
+import il.ac.bgu.se.bp.debugger.commands.DebuggerCommand;
 import il.ac.bgu.se.bp.debugger.engine.events.BPStateEvent;
 import il.ac.bgu.se.bp.debugger.engine.events.ProgramStatusEvent;
 import il.ac.bgu.se.bp.execution.manage.ProgramValidatorImpl;
 import il.ac.bgu.se.bp.socket.state.BPDebuggerState;
 import il.ac.bgu.se.bp.socket.status.Status;
+import il.ac.bgu.se.bp.utils.DebuggerExecutorServiceMaker;
 import il.ac.bgu.se.bp.utils.DebuggerStateHelper;
 import il.ac.bgu.se.bp.utils.asyncHelper.AsyncOperationRunnerImpl;
 import il.ac.bgu.se.bp.utils.observer.BPEvent;
@@ -22,16 +24,21 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.Spy;
 import org.mockito.internal.util.reflection.FieldSetter;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
 
 import java.util.*;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 public class DebuggerEngineImplTest {
 
@@ -100,14 +107,13 @@ public class DebuggerEngineImplTest {
         doAnswer(invocation -> onStateChangedTester(invocation.getArgument(0))).when(publisher).notifySubscribers(any());
         expectedState = new BPDebuggerState(new LinkedList<>(), null);
         BProgram bProg = new ResourceBProgram(TEST_FILENAME);
-        BProgramSyncSnapshot bProgramSyncSnapshot = bProg.setup();
+        BProgramSyncSnapshot bProgramSyncSnapshot = (BProgramSyncSnapshot) debuggerEngine.getContextFactory().call(cx -> bProg.setup());
         debuggerEngine.setSyncSnapshot(bProgramSyncSnapshot);
 
         Arrays.stream(BREAKPOINTS_LINES).forEach(lineNumber -> debuggerEngine.setBreakpoint(lineNumber, true));
 
         doCallRealMethod().when(debuggerStateHelper).setRecentlyRegisteredBThreads(any());
         doCallRealMethod().when(debuggerStateHelper).getLastState();
-        doCallRealMethod().when(debuggerStateHelper).peekNextState(any(), any(), any(), any());
         doCallRealMethod().when(debuggerStateHelper).cleanFields();
 
 //TODO: fix
@@ -152,6 +158,45 @@ public class DebuggerEngineImplTest {
 //        assertEquals(expectedState, state);
     }
 
+    @Test
+    public void testDispatchNextGuiEventPushesOnlyChangedState() throws Exception {
+        debuggerEngine.onStateChanged();
+        verify(debuggerStateHelper, times(1)).generateDebuggerState(any(), any(), any(), any());
+
+        debuggerEngine.addCommand(mock(DebuggerCommand.class));
+        debuggerEngine.dispatchNextGuiEvent();
+        verify(debuggerStateHelper, times(1)).generateDebuggerState(any(), any(), any(), any());
+
+        debuggerEngine.toggleMuteBreakpoints(true);
+        debuggerEngine.addCommand(mock(DebuggerCommand.class));
+        debuggerEngine.dispatchNextGuiEvent();
+        verify(debuggerStateHelper, times(2)).generateDebuggerState(any(), any(), any(), any());
+    }
+
+    @Test
+    public void testDimAttachedToSessionContextsOnly() throws Exception {
+        DebuggerEngineImpl otherDebuggerEngine = new DebuggerEngineImpl(debuggerId, TEST_FILENAME, new RunnerState(), debuggerStateHelper, "otherDebuggerTestId");
+
+        Object debugger = getDebuggerOfNewThread(debuggerEngine.getContextFactory());
+        Object otherDebugger = getDebuggerOfNewThread(otherDebuggerEngine.getContextFactory());
+        assertNotNull(debugger);
+        assertNotNull(otherDebugger);
+        assertNotSame(debugger, otherDebugger);
+        assertNull(getDebuggerOfNewThread(new ContextFactory()));
+
+        otherDebuggerEngine.stop();
+        assertNull(getDebuggerOfNewThread(otherDebuggerEngine.getContextFactory()));
+    }
+
+    private Object getDebuggerOfNewThread(ContextFactory contextFactory) throws Exception {
+        ExecutorService executorService = new DebuggerExecutorServiceMaker().makeWithName("DIM_TEST_", contextFactory);
+        try {
+            return executorService.submit(() -> Context.getCurrentContext().getDebugger()).get();
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
     private <T> Void onStateChangedTester(T event) {
         if (event instanceof BPStateEvent) {
             BPStateEvent bpStateEvent = castToMyType(event);
@@ -0,0 +1,110 @@
+package il.ac.bgu.se.bp.debugger.engine;
+
+import il.ac.bgu.se.bp.debugger.engine.events.BPStateEvent;
+import il.ac.bgu.se.bp.debugger.engine.events.ProgramStatusEvent;
+import il.ac.bgu.se.bp.socket.state.BPDebuggerState;
+import il.ac.bgu.se.bp.socket.status.Status;
+import il.ac.bgu.se.bp.utils.observer.BPEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class LatestStatePublisherTest {
+    private static final String debuggerId = "6981cb0a-f871-474b-98e9-faf7c02e18a4";
+
+    private final List<BPEvent> sent = new CopyOnWriteArrayList<>();
+    private final CountDownLatch senderBusy = new CountDownLatch(1);
+    private ExecutorService sender;
+    private LatestStatePublisher statePublisher;
+
+    @Before
+    public void setUp() {
+        sender = Executors.newSingleThreadExecutor();
+        statePublisher = new LatestStatePublisher(debuggerId, sender, sent::add);
+        sender.execute(() -> {
+            try {
+                senderBusy.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        senderBusy.countDown();
+        sender.shutdownNow();
+    }
+
+    @Test
+    public void publish_burstSendsOnlyLatestState() {
+        BPStateEvent latest = createStateEvent();
+        statePublisher.publish(createStateEvent());
+        statePublisher.publish(createStateEvent());
+        statePublisher.publish(latest);
+        assertTrue(sent.isEmpty());
+
+        senderBusy.countDown();
+        statePublisher.close();
+
+        assertEquals(Arrays.<BPEvent>asList(latest), sent);
+        assertTrue(sender.isShutdown());
+    }
+
+    @Test
+    public void publish_afterCloseIsDropped() {
+        senderBusy.countDown();
+        statePublisher.close();
+
+        statePublisher.publish(createStateEvent());
+        statePublisher.publish(createStateEvent());
+
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    public void publishInOrder_sentAfterPendingState() {
+        BPStateEvent replacedState = createStateEvent();
+        BPStateEvent syncState = createStateEvent();
+        ProgramStatusEvent syncStatus = new ProgramStatusEvent(debuggerId, Status.SYNCSTATE);
+        BPStateEvent nextState = createStateEvent();
+        ProgramStatusEvent runStatus = new ProgramStatusEvent(debuggerId, Status.RUN);
+
+        statePublisher.publish(replacedState);
+        statePublisher.publish(syncState);
+        statePublisher.publishInOrder(syncStatus);
+        statePublisher.publish(nextState);
+        statePublisher.publishInOrder(runStatus);
+        assertTrue(sent.isEmpty());
+
+        senderBusy.countDown();
+        statePublisher.close();
+
+        assertEquals(Arrays.asList(syncState, syncStatus, nextState, runStatus), sent);
+    }
+
+    @Test
+    public void publishInOrder_afterCloseIsSentOnCallingThread() {
+        senderBusy.countDown();
+        statePublisher.close();
+
+        ProgramStatusEvent stopStatus = new ProgramStatusEvent(debuggerId, Status.STOP);
+        statePublisher.publishInOrder(stopStatus);
+
+        assertEquals(Arrays.<BPEvent>asList(stopStatus), sent);
+    }
+
+    private BPStateEvent createStateEvent() {
+        return new BPStateEvent(debuggerId, new BPDebuggerState(new LinkedList<>(), null));
+    }
+}
@@ -0,0 +1,268 @@
+package il.ac.bgu.se.bp.debugger.engine;
+
+import il.ac.bgu.cs.bp.bpjs.model.BEvent;
+import il.ac.bgu.cs.bp.bpjs.model.BProgram;
+import il.ac.bgu.cs.bp.bpjs.model.BProgramSyncSnapshot;
+import il.ac.bgu.cs.bp.bpjs.model.ResourceBProgram;
+import il.ac.bgu.se.bp.debugger.RunnerState;
+import il.ac.bgu.se.bp.utils.DebuggerExecutorServiceMaker;
+import il.ac.bgu.se.bp.utils.DebuggerStateHelper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.mozilla.javascript.ContextFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static il.ac.bgu.cs.bp.bpjs.model.StorageModificationStrategy.PASSTHROUGH;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+public class SyncSnapshotHolderImplTest {
+    private static final BEvent TICK = new BEvent("tick");
+
+    private final SyncSnapshotHolderImpl syncSnapshotHolder = new SyncSnapshotHolderImpl(4);
+
+    @Test
+    public void addSyncSnapshot_sameMillisecondKeysAreUnique() {
+        addHistory(3);
+
+        assertEquals(4, syncSnapshotHolder.getAllSyncSnapshots().size());
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L), new ArrayList<>(syncSnapshotHolder.getAllSyncSnapshots().keySet()));
+    }
+
+    @Test
+    public void addSyncSnapshot_oldestDroppedWhenFull() {
+        addHistory(6);
+
+        SortedMap<Long, ?> allSyncSnapshots = syncSnapshotHolder.getAllSyncSnapshots();
+        assertEquals(4, allSyncSnapshots.size());
+        assertEquals(3L, (long) allSyncSnapshots.firstKey());
+        assertNull(syncSnapshotHolder.popValue(2L));
+        assertEquals(SyncSnapshotHolderImpl.NO_TIME, syncSnapshotHolder.getSyncSnapshotTime(2L));
+    }
+
+    @Test
+    public void getEventsHistoryStack_newestFirst() {
+        addHistory(3);
+
+        SortedMap<Long, BEvent> eventsHistory = syncSnapshotHolder.getEventsHistoryStack(0, 10);
+        assertEquals(3, eventsHistory.size());
+        assertEquals(new BEvent("e3"), eventsHistory.get(eventsHistory.firstKey()));
+        assertEquals(new BEvent("e1"), eventsHistory.get(eventsHistory.lastKey()));
+
+        SortedMap<Long, BEvent> range = syncSnapshotHolder.getEventsHistoryStack(1, 2);
+        assertEquals(Collections.singletonMap(2L, new BEvent("e2")), range);
+        assertTrue(syncSnapshotHolder.getEventsHistoryStack(5, 10).isEmpty());
+    }
+
+    @Test
+    public void popKey_truncatesAndKeysAreNotReused() {
+        addHistory(3);
+
+        assertNotNull(syncSnapshotHolder.popKey(2L));
+        assertEquals(2, syncSnapshotHolder.getAllSyncSnapshots().size());
+        assertNull(syncSnapshotHolder.popKey(3L));
+
+        syncSnapshotHolder.addSyncSnapshot(snapshot(), new BEvent("e4"));
+        assertEquals(4L, (long) syncSnapshotHolder.getAllSyncSnapshots().lastKey());
+        assertEquals(new BEvent("e4"), syncSnapshotHolder.popValue(4L));
+    }
+
+    @Test
+    public void popKey_rehydratesSpilledSnapshot() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        Metrics.addRegistry(meterRegistry);
+        SyncSnapshotHolderImpl spillingHolder = new SyncSnapshotHolderImpl(8, 1, SyncSnapshotHolderImpl.DEFAULT_SESSION_SPILL_BYTES);
+        BProgramSyncSnapshot startedSnapshot = startedSnapshot();
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            BProgramSyncSnapshot tickedSnapshot = startedSnapshot.triggerEvent(TICK, executorService, Collections.emptyList(), PASSTHROUGH);
+            spillingHolder.addSyncSnapshot(startedSnapshot, null);
+            spillingHolder.addSyncSnapshot(tickedSnapshot, TICK);
+            long firstSpillBytes = spillingHolder.getSpilledBytes();
+            spillingHolder.addSyncSnapshot(tickedSnapshot.triggerEvent(TICK, executorService, Collections.emptyList(), PASSTHROUGH), TICK);
+
+            // only the continuation of bt-counter advanced, the program part and bt-idle are shared
+            assertEquals(2, spillingHolder.getSpilledCount());
+            long secondSpillBytes = spillingHolder.getSpilledBytes() - firstSpillBytes;
+            assertTrue(secondSpillBytes > 0);
+            assertTrue(secondSpillBytes < firstSpillBytes);
+            assertTrue(spillingHolder.getDeduplicationRatio() > 1.0);
+            assertTrue(spillingHolder.getDeduplicationRatio() < 2.0);
+
+            BProgramSyncSnapshot rehydrated = spillingHolder.popKey(1L);
+            assertNotNull(rehydrated);
+            assertEquals(tickedSnapshot.getBThreadSnapshots(), rehydrated.getBThreadSnapshots());
+            assertEquals(1, spillingHolder.getSpilledCount());
+            assertEquals(1, spillingHolder.getAllSyncSnapshots().size());
+        } finally {
+            executorService.shutdownNow();
+            spillingHolder.clear();
+            Metrics.removeRegistry(meterRegistry);
+        }
+        assertEquals(0, spillingHolder.getSpilledBytes());
+        DistributionSummary deduplicationRatio = meterRegistry.get("bpjs.snapshots.deduplication").summary();
+        assertEquals(1, deduplicationRatio.count());
+        assertTrue(deduplicationRatio.totalAmount() >= 1.0);
+    }
+
+    @Test
+    public void popKey_rehydratesSpilledDebugSessionSnapshot() throws Exception {
+        SyncSnapshotHolderImpl spillingHolder = new SyncSnapshotHolderImpl(8, 1, SyncSnapshotHolderImpl.DEFAULT_SESSION_SPILL_BYTES);
+        DebuggerEngineImpl debuggerEngine = new DebuggerEngineImpl("spillTestId", "SyncSnapshotsCodeFile.js", new RunnerState(),
+                mock(DebuggerStateHelper.class), "spillTestThreadId");
+        BProgramSyncSnapshot startedSnapshot = startedSnapshot(debuggerEngine.getContextFactory());
+        try {
+            spillingHolder.addSyncSnapshot(startedSnapshot, null);
+            spillingHolder.addSyncSnapshot(startedSnapshot, new BEvent("e1"));
+
+            assertEquals(1, spillingHolder.getSpilledCount());
+            BProgramSyncSnapshot rehydrated = spillingHolder.popKey(0L);
+            assertNotNull(rehydrated);
+            assertEquals(startedSnapshot.getBThreadSnapshots().size(), rehydrated.getBThreadSnapshots().size());
+        } finally {
+            spillingHolder.clear();
+            debuggerEngine.stop();
+        }
+    }
+
+    @Test
+    public void forEachSyncSnapshot_consumerDoesNotHoldHistory() throws Exception {
+        SyncSnapshotHolderImpl spillingHolder = new SyncSnapshotHolderImpl(8, 1, SyncSnapshotHolderImpl.DEFAULT_SESSION_SPILL_BYTES);
+        BProgramSyncSnapshot startedSnapshot = startedSnapshot();
+        ExecutorService sessionThread = Executors.newSingleThreadExecutor();
+        try {
+            spillingHolder.addSyncSnapshot(startedSnapshot, null);
+            spillingHolder.addSyncSnapshot(startedSnapshot, new BEvent("e1"));
+            spillingHolder.addSyncSnapshot(startedSnapshot, new BEvent("e2"));
+            assertEquals(2, spillingHolder.getSpilledCount());
+
+            List<BEvent> events = new ArrayList<>();
+            spillingHolder.forEachSyncSnapshot((snapshot, event) -> {
+                if (events.isEmpty()) {
+                    try {
+                        assertNotNull(sessionThread.submit(() -> spillingHolder.popKey(1L)).get(5, TimeUnit.SECONDS));
+                    } catch (Exception e) {
+                        throw new AssertionError("history is held by the consumer", e);
+                    }
+                }
+                assertEquals(startedSnapshot.getBThreadSnapshots().size(), snapshot.getBThreadSnapshots().size());
+                events.add(event);
+            });
+
+            assertEquals(Arrays.asList(null, new BEvent("e1"), new BEvent("e2")), events);
+            assertEquals(1, spillingHolder.getAllSyncSnapshots().size());
+        } finally {
+            sessionThread.shutdownNow();
+            spillingHolder.clear();
+        }
+        assertEquals(0, spillingHolder.getSpilledBytes());
+    }
+
+    @Test
+    public void addSyncSnapshot_oldestDroppedWhenSpillBudgetExceeded() throws Exception {
+        SyncSnapshotHolderImpl spillingHolder = new SyncSnapshotHolderImpl(8, 2, 1);
+        BProgramSyncSnapshot startedSnapshot = startedSnapshot();
+        spillingHolder.addSyncSnapshot(startedSnapshot, null);
+        for (int i = 1; i <= 4; i++) {
+            spillingHolder.addSyncSnapshot(startedSnapshot, new BEvent("e" + i));
+        }
+
+        assertEquals(0, spillingHolder.getSpilledCount());
+        assertEquals(Arrays.asList(3L, 4L), new ArrayList<>(spillingHolder.getAllSyncSnapshots().keySet()));
+        spillingHolder.clear();
+    }
+
+    @Test
+    public void addSyncSnapshot_globalSpillBudgetExceededDropsOnlyTheNewSnapshot() throws Exception {
+        SyncSnapshotHolderImpl spillingHolder = new SyncSnapshotHolderImpl(8, 1, SyncSnapshotHolderImpl.DEFAULT_SESSION_SPILL_BYTES);
+        BProgramSyncSnapshot startedSnapshot = startedSnapshot();
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        long filledBytes = 0;
+        try {
+            BProgramSyncSnapshot tickedSnapshot = startedSnapshot.triggerEvent(TICK, executorService, Collections.emptyList(), PASSTHROUGH);
+            spillingHolder.addSyncSnapshot(startedSnapshot, null);
+            spillingHolder.addSyncSnapshot(tickedSnapshot, TICK);
+            assertEquals(1, spillingHolder.getSpilledCount());
+            long spilledBytes = spillingHolder.getSpilledBytes();
+
+            filledBytes = SyncSnapshotSpillStore.GLOBAL_SPILL_BYTES - SyncSnapshotSpillStore.getGlobalStoredBytes();
+            assertTrue(SyncSnapshotSpillStore.reserveGlobalBytes(filledBytes));
+            assertFalse(SyncSnapshotSpillStore.reserveGlobalBytes(1));
+            spillingHolder.addSyncSnapshot(tickedSnapshot.triggerEvent(TICK, executorService, Collections.emptyList(), PASSTHROUGH), TICK);
+
+            assertEquals(2, spillingHolder.getSpilledCount());
+            assertEquals(spilledBytes, spillingHolder.getSpilledBytes());
+            assertEquals(Arrays.asList(0L, 2L), new ArrayList<>(spillingHolder.getAllSyncSnapshots().keySet()));
+            assertEquals(Arrays.asList(TICK, TICK), new ArrayList<>(spillingHolder.getEventsHistoryStack(0, 10).values()));
+            assertNull(spillingHolder.popKey(1L));
+            assertNotNull(spillingHolder.popKey(0L));
+        } finally {
+            executorService.shutdownNow();
+            SyncSnapshotSpillStore.releaseGlobalBytes(filledBytes);
+            spillingHolder.clear();
+        }
+    }
+
+    @Test
+    public void addSyncSnapshot_unserializableSnapshotKeepsTheHistory() {
+        SyncSnapshotHolderImpl spillingHolder = new SyncSnapshotHolderImpl(8, 1, SyncSnapshotHolderImpl.DEFAULT_SESSION_SPILL_BYTES);
+        spillingHolder.addSyncSnapshot(snapshot(), null);
+        spillingHolder.addSyncSnapshot(snapshot(), new BEvent("e1"));
+        spillingHolder.addSyncSnapshot(snapshot(), new BEvent("e2"));
+
+        assertEquals(2, spillingHolder.getSpilledCount());
+        assertEquals(Collections.singletonList(2L), new ArrayList<>(spillingHolder.getAllSyncSnapshots().keySet()));
+        assertEquals(Arrays.asList(new BEvent("e2"), new BEvent("e1")),
+                new ArrayList<>(spillingHolder.getEventsHistoryStack(0, 10).values()));
+        spillingHolder.clear();
+    }
+
+    private void addHistory(int eventsCount) {
+        syncSnapshotHolder.addSyncSnapshot(snapshot(), null);
+        for (int i = 1; i <= eventsCount; i++) {
+            syncSnapshotHolder.addSyncSnapshot(snapshot(), new BEvent("e" + i));
+        }
+    }
+
+    private static BProgramSyncSnapshot snapshot() {
+        return new BProgramSyncSnapshot(null, Collections.emptySet(), Collections.emptyMap(), Collections.emptyList(), null);
+    }
+
+    private static BProgramSyncSnapshot startedSnapshot() throws Exception {
+        BProgram bProgram = new ResourceBProgram("SyncSnapshotsCodeFile.js");
+        ExecutorService setupExecutorService = Executors.newSingleThreadExecutor();
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        return startedSnapshot(bProgram, setupExecutorService, executorService);
+    }
+
+    /**
+     * Runs the program on threads of a session's context factory, so its continuations hold Rhino debug frames.
+     */
+    private static BProgramSyncSnapshot startedSnapshot(ContextFactory contextFactory) throws Exception {
+        BProgram bProgram = new ResourceBProgram("SyncSnapshotsCodeFile.js");
+        DebuggerExecutorServiceMaker executorServiceMaker = new DebuggerExecutorServiceMaker();
+        ExecutorService setupExecutorService = executorServiceMaker.makeWithName("spillTestSetup", contextFactory);
+        ExecutorService executorService = executorServiceMaker.makeWithName("spillTest", contextFactory);
+        return startedSnapshot(bProgram, setupExecutorService, executorService);
+    }
+
+    private static BProgramSyncSnapshot startedSnapshot(BProgram bProgram, ExecutorService setupExecutorService,
+                                                        ExecutorService executorService) throws Exception {
+        try {
+            return setupExecutorService.submit(() -> bProgram.setup().start(executorService, PASSTHROUGH)).get();
+        } finally {
+            setupExecutorService.shutdownNow();
+            executorService.shutdownNow();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package il.ac.bgu.se.bp.execution;
 
+import il.ac.bgu.cs.bp.bpjs.model.BEvent;
 import il.ac.bgu.cs.bp.bpjs.model.BProgram;
+import il.ac.bgu.cs.bp.bpjs.model.BProgramSyncSnapshot;
 import il.ac.bgu.se.bp.debugger.RunnerState;
 import il.ac.bgu.se.bp.debugger.commands.Continue;
 import il.ac.bgu.se.bp.debugger.commands.StepInto;
@@ -13,6 +15,7 @@ import il.ac.bgu.se.bp.execution.manage.ProgramValidatorImpl;
 import il.ac.bgu.se.bp.rest.response.BooleanResponse;
 import il.ac.bgu.se.bp.rest.response.GetSyncSnapshotsResponse;
 import il.ac.bgu.se.bp.socket.state.BPDebuggerState;
+import il.ac.bgu.se.bp.socket.state.EventInfo;
 import il.ac.bgu.se.bp.utils.asyncHelper.AsyncOperationRunner;
 import il.ac.bgu.se.bp.utils.asyncHelper.AsyncOperationRunnerImpl;
 import org.junit.Before;
@@ -22,13 +25,16 @@ import org.mockito.*;
 import org.mockito.internal.util.reflection.FieldSetter;
 import org.mockito.junit.MockitoJUnitRunner;
 
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.SortedMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.*;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -40,6 +46,7 @@ public class BPJsDebuggerImplTest {
 
     private final static String VALID_TEST_FILE = "TestCodeFile.js";
     private final static String INVALID_TEST_FILE = "InvalidCode.js";
+    private final static String REPLAY_TEST_FILE = "ReplayCodeFile.js";
     private static final String debuggerId = "6981cb0a-f871-474b-98e9-faf7c02e18a4";
 
     private final static int[] BREAKPOINTS_LINES = new int[]{2, 4};
@@ -187,6 +194,115 @@ public class BPJsDebuggerImplTest {
         assertFalse(bpJsDebugger.isStarted());
     }
 
+    @Test
+    public void replayTest() throws InterruptedException {
+        assertSuccessResponse(bpJsDebugger.replay(breakpoints, false, false, false, trace("son-e", "EventInFoo", "aba"), 2));
+
+        assertNotNull(onStateChangedQueue.poll(5, TimeUnit.SECONDS));
+        assertTrue(bpJsDebugger.isStarted());
+        assertEquals(RunnerState.State.SYNC_STATE, bpJsDebugger.getDebuggerState().getDebuggerState());
+        assertEquals(new HashSet<>(Arrays.asList("aba", "world12121")), getRequestedEvents(getLastSyncSnapshot()));
+        assertTrue(bpJsDebugger.getEventsHistory(0, 10).isEmpty());
+        assertEquals(1, bpJsDebugger.getSyncSnapshotsHistory().getSyncSnapShotsHistory().size());
+
+        InOrder inOrder = inOrder(debuggerEngine);
+        inOrder.verify(debuggerEngine).toggleMuteBreakpoints(true);
+        inOrder.verify(debuggerEngine).toggleMuteBreakpoints(false);
+        inOrder.verify(debuggerEngine).onStateChanged();
+
+        assertSuccessResponse(bpJsDebugger.stop());
+    }
+
+    @Test
+    public void replay_stopsWhereTheProgramDiverges() throws InterruptedException {
+        assertSuccessResponse(bpJsDebugger.replay(breakpoints, false, false, false, trace("son-e", "world12121"), 2));
+
+        assertNotNull(onStateChangedQueue.poll(5, TimeUnit.SECONDS));
+        assertEquals(RunnerState.State.SYNC_STATE, bpJsDebugger.getDebuggerState().getDebuggerState());
+        assertEquals(new HashSet<>(Arrays.asList("aba", "EventInFoo")), getRequestedEvents(getLastSyncSnapshot()));
+
+        assertSuccessResponse(bpJsDebugger.stop());
+    }
+
+    @Test
+    public void replay_invalidTargetIndex() {
+        assertErrorResponse(bpJsDebugger.replay(breakpoints, false, false, false, trace("son-e"), 2), ErrorCode.INVALID_REQUEST);
+        assertErrorResponse(bpJsDebugger.replay(breakpoints, false, false, false, trace("son-e"), -1), ErrorCode.INVALID_REQUEST);
+        assertFalse(bpJsDebugger.isSetup());
+    }
+
+    @Test
+    public void replay_matchesEventsOnTheirData() throws Exception {
+        BPJsDebuggerImpl replayDebugger = newReplayDebugger();
+        List<EventInfo> events = Collections.singletonList(new EventInfo("pick", "{\"side\":\"right\",\"at\":2}"));
+        assertSuccessResponse(replayDebugger.replay(breakpoints, false, false, false, events, 1));
+
+        assertNotNull(onStateChangedQueue.poll(5, TimeUnit.SECONDS));
+        assertEquals(RunnerState.State.SYNC_STATE, replayDebugger.getDebuggerState().getDebuggerState());
+        assertEquals(Collections.singleton("picked-right"), getRequestedEvents(getLastSyncSnapshot()));
+
+        assertSuccessResponse(replayDebugger.stop());
+    }
+
+    @Test
+    public void replay_stopsOnEventWithOtherData() throws Exception {
+        BPJsDebuggerImpl replayDebugger = newReplayDebugger();
+        List<EventInfo> events = Collections.singletonList(new EventInfo("pick", "{\"side\":\"up\",\"at\":2}"));
+        assertSuccessResponse(replayDebugger.replay(breakpoints, false, false, false, events, 1));
+
+        assertNotNull(onStateChangedQueue.poll(5, TimeUnit.SECONDS));
+        assertEquals(RunnerState.State.SYNC_STATE, replayDebugger.getDebuggerState().getDebuggerState());
+        assertEquals(Collections.singleton("pick"), getRequestedEvents(getLastSyncSnapshot()));
+
+        assertSuccessResponse(replayDebugger.stop());
+    }
+
+    @Test
+    public void replay_invalidEventData() throws Exception {
+        BPJsDebuggerImpl replayDebugger = newReplayDebugger();
+        List<EventInfo> events = Collections.singletonList(new EventInfo("pick", "{side: 'right'"));
+        assertErrorResponse(replayDebugger.replay(breakpoints, false, false, false, events, 1), ErrorCode.INVALID_REQUEST);
+        assertFalse(replayDebugger.isSetup());
+    }
+
+    @Test
+    public void getVariable_onlyWhilePaused() throws InterruptedException {
+        assertEquals(ErrorCode.NOT_IN_BP_SYNC_STATE, bpJsDebugger.getGlobalVariable("", 0, 10).getErrorCode());
+        assertEquals(ErrorCode.NOT_IN_BP_SYNC_STATE, bpJsDebugger.getBThreadVariable("bt-world", 0, "", 0, 10).getErrorCode());
+
+        assertSuccessResponse(bpJsDebugger.replay(breakpoints, false, false, false, trace("son-e"), 1));
+        assertNotNull(onStateChangedQueue.poll(5, TimeUnit.SECONDS));
+        assertEquals(RunnerState.State.SYNC_STATE, bpJsDebugger.getDebuggerState().getDebuggerState());
+        assertEquals(ErrorCode.UNKNOWN_SCOPE, bpJsDebugger.getGlobalVariable("", 0, 10).getErrorCode());
+
+        assertSuccessResponse(bpJsDebugger.stop());
+    }
+
+    private BPJsDebuggerImpl newReplayDebugger() throws NoSuchFieldException {
+        BPJsDebuggerImpl replayDebugger = new BPJsDebuggerImpl(debuggerId, REPLAY_TEST_FILE);
+        FieldSetter.setField(replayDebugger, BPJsDebuggerImpl.class.getDeclaredField("debuggerEngine"), debuggerEngine);
+        FieldSetter.setField(replayDebugger, BPJsDebuggerImpl.class.getDeclaredField("bPjsProgramValidator"), programValidator);
+        return replayDebugger;
+    }
+
+    private static List<EventInfo> trace(String... eventNames) {
+        return Arrays.stream(eventNames).map(EventInfo::new).collect(Collectors.toList());
+    }
+
+    private BProgramSyncSnapshot getLastSyncSnapshot() {
+        ArgumentCaptor<BProgramSyncSnapshot> syncSnapshotCaptor = ArgumentCaptor.forClass(BProgramSyncSnapshot.class);
+        verify(debuggerEngine, atLeastOnce()).setSyncSnapshot(syncSnapshotCaptor.capture());
+        List<BProgramSyncSnapshot> syncSnapshots = syncSnapshotCaptor.getAllValues();
+        return syncSnapshots.get(syncSnapshots.size() - 1);
+    }
+
+    private Set<String> getRequestedEvents(BProgramSyncSnapshot syncSnapshot) {
+        return syncSnapshot.getBThreadSnapshots().stream()
+                .flatMap(bThread -> bThread.getSyncStatement().getRequest().stream())
+                .map(BEvent::getName)
+                .collect(Collectors.toSet());
+    }
+
     private void sleepUntil(Predicate sleepUntil, int maxToTest) throws InterruptedException {
         int counter = 0;
         while (!sleepUntil.test(null) && counter < maxToTest) {
@@ -260,6 +376,24 @@ public class BPJsDebuggerImplTest {
         verify(debuggerEngine, times(1)).getState();
     }
 
+    @Test
+    public void importSession_invalidSyncSnapshotsStopsTheSession() throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(archive);
+        output.writeBoolean(false);
+        output.writeBoolean(false);
+        output.writeBoolean(false);
+        output.writeInt(0);
+        output.writeByte(9);
+        output.flush();
+
+        BooleanResponse booleanResponse = bpJsDebugger.importSession(new ByteArrayInputStream(archive.toByteArray()));
+
+        assertErrorResponse(booleanResponse, ErrorCode.IMPORT_SYNC_SNAPSHOT_FAILURE);
+        assertFalse(bpJsDebugger.isStarted());
+        verify(debuggerEngine, times(1)).stop();
+    }
+
     @Test
     public void addExternalEvent_jsDebugState() {
         setDebuggerState(RunnerState.State.JS_DEBUG);
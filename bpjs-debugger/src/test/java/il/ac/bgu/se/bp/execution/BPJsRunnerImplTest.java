@@ -0,0 +1,83 @@
+package il.ac.bgu.se.bp.execution;
+
+import il.ac.bgu.se.bp.debugger.engine.events.BPConsoleEvent;
+import il.ac.bgu.se.bp.debugger.engine.events.ProgramStatusEvent;
+import il.ac.bgu.se.bp.error.ErrorCode;
+import il.ac.bgu.se.bp.rest.response.BooleanResponse;
+import il.ac.bgu.se.bp.socket.state.EventInfo;
+import il.ac.bgu.se.bp.socket.status.ProgramStatus;
+import il.ac.bgu.se.bp.socket.status.Status;
+import il.ac.bgu.se.bp.utils.observer.BPEvent;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.SortedMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BPJsRunnerImplTest {
+
+    private final static String VALID_TEST_FILE = "TestCodeFile.js";
+    private static final String runnerId = "0c6e5d3e-3c9f-4bd4-a3e9-8e4a3a3f1f2d";
+
+    private final BlockingQueue<Status> statuses = new LinkedBlockingQueue<>();
+    private final BlockingQueue<BPEvent> consoleEvents = new LinkedBlockingQueue<>();
+
+    private final BPJsRunnerImpl bpJsRunner = new BPJsRunnerImpl(runnerId, VALID_TEST_FILE);
+
+    @After
+    public void tearDown() {
+        if (bpJsRunner.isStarted()) {
+            bpJsRunner.stop();
+        }
+    }
+
+    @Test
+    public void runToEndTest() throws InterruptedException {
+        bpJsRunner.subscribe(this::onEvent);
+
+        BooleanResponse response = bpJsRunner.startSync(new HashMap<>(), true, true, false);
+        assertTrue(response.isSuccess());
+
+        assertEquals(Status.RUN, statuses.poll(10, TimeUnit.SECONDS));
+        assertTrue(awaitStatus(Status.SUPERSTEPDONE));
+        assertFalse(bpJsRunner.isStarted());
+        assertFalse(consoleEvents.isEmpty());
+
+        SortedMap<Long, EventInfo> eventsHistory = bpJsRunner.getEventsHistory(0, 100);
+        assertFalse(eventsHistory.isEmpty());
+        assertTrue(eventsHistory.values().stream().anyMatch(eventInfo -> "aba".equals(eventInfo.getName())));
+        assertEquals(eventsHistory.firstKey(), bpJsRunner.getEventsHistory(0, 1).firstKey());
+    }
+
+    @Test
+    public void debugOperationsAreNotSupportedTest() {
+        assertEquals(ErrorCode.NOT_SUPPORTED, bpJsRunner.stepInto().getErrorCode());
+        assertEquals(ErrorCode.NOT_SUPPORTED, bpJsRunner.setBreakpoint(2, true).getErrorCode());
+        assertEquals(ErrorCode.NOT_SUPPORTED, bpJsRunner.nextSync().getErrorCode());
+        assertEquals(ErrorCode.NOT_SUPPORTED, bpJsRunner.setSyncSnapshot(0).getErrorCode());
+    }
+
+    private boolean awaitStatus(Status expected) throws InterruptedException {
+        Status status;
+        while ((status = statuses.poll(10, TimeUnit.SECONDS)) != null) {
+            if (expected.equals(status)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void onEvent(BPEvent event) {
+        if (event instanceof ProgramStatusEvent) {
+            statuses.add(((ProgramStatus) event.getEvent()).getStatus());
+        }
+        else if (event instanceof BPConsoleEvent) {
+            consoleEvents.add(event);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package il.ac.bgu.se.bp.execution.manage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.debug.DebuggableScript;
+import org.mozilla.javascript.debug.Debugger;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ProgramCacheTest {
+    private static final String NAME = "programs/program_test.js";
+    private static final String SOURCE = "var x = 1;\nfunction f() { return x; }";
+
+    private Context cx;
+
+    @Before
+    public void setUp() {
+        ProgramCache.clear();
+        cx = Context.enter();
+        cx.setOptimizationLevel(-1);
+    }
+
+    @After
+    public void tearDown() {
+        Context.exit();
+        ProgramCache.clear();
+    }
+
+    @Test
+    public void getScript_compilesOncePerSource() {
+        ProgramCache.putSource(NAME, SOURCE);
+        assertEquals(SOURCE, ProgramCache.getSource(NAME));
+
+        Script script = ProgramCache.getScript(NAME, SOURCE, cx);
+        assertSame(script, ProgramCache.getScript(NAME, SOURCE, cx));
+        assertNotSame(script, ProgramCache.getScript(NAME, SOURCE + "\nvar y = 2;", cx));
+    }
+
+    @Test
+    public void getScript_cachedScriptIsToldToDebugger() {
+        Debugger debugger = mock(Debugger.class);
+        cx.setGeneratingDebug(true);
+        cx.setDebugger(debugger, null);
+
+        Script script = ProgramCache.getScript(NAME, SOURCE, cx);
+        assertSame(script, ProgramCache.getScript(NAME, SOURCE, cx));
+
+        DebuggableScript debuggableScript = Context.getDebuggableView(script);
+        verify(debugger, times(2)).handleCompilationDone(any(Context.class), eq(debuggableScript), eq(SOURCE));
+    }
+}
@@ -0,0 +1,146 @@
+package il.ac.bgu.se.bp.execution.manage;
+
+import il.ac.bgu.cs.bp.bpjs.model.BEvent;
+import il.ac.bgu.cs.bp.bpjs.model.BProgram;
+import il.ac.bgu.cs.bp.bpjs.model.BProgramSyncSnapshot;
+import il.ac.bgu.cs.bp.bpjs.model.BThreadSyncSnapshot;
+import il.ac.bgu.cs.bp.bpjs.model.StringBProgram;
+import il.ac.bgu.se.bp.debugger.engine.SyncSnapshotHolder;
+import il.ac.bgu.se.bp.debugger.engine.SyncSnapshotHolderImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.debug.DebugFrame;
+import org.mozilla.javascript.debug.Debugger;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static il.ac.bgu.cs.bp.bpjs.model.StorageModificationStrategy.PASSTHROUGH;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SessionArchiveIOTest {
+    private static final String SOURCE = "bp.registerBThread('counter', function () {\n" +
+            "    for (var i = 0; i < 3; i++) {\n" +
+            "        bp.sync({request: bp.Event('tick')});\n" +
+            "    }\n" +
+            "});\n" +
+            "bp.registerBThread('idle', function () {\n" +
+            "    bp.sync({waitFor: bp.Event('never')});\n" +
+            "});";
+    private static final BEvent TICK = new BEvent("tick");
+
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private ContextFactory.Listener debuggerAttacher;
+
+    @Before
+    public void setUp() {
+        Debugger debugger = mock(Debugger.class);
+        when(debugger.getFrame(any(), any())).thenReturn(mock(DebugFrame.class));
+        debuggerAttacher = new ContextFactory.Listener() {
+            @Override
+            public void contextCreated(Context cx) {
+                cx.setDebugger(debugger, null);
+                cx.setGeneratingDebug(true);
+            }
+
+            @Override
+            public void contextReleased(Context cx) {
+            }
+        };
+        ContextFactory.getGlobal().addListener(debuggerAttacher);
+    }
+
+    @After
+    public void tearDown() {
+        ContextFactory.getGlobal().removeListener(debuggerAttacher);
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void readSyncSnapshots_restoresHistoryAndCurrentSnapshot() throws Exception {
+        BProgram bProgram = new StringBProgram(SOURCE);
+        SyncSnapshotHolder<BProgramSyncSnapshot, BEvent> history = new SyncSnapshotHolderImpl();
+        BProgramSyncSnapshot snapshot = bProgram.setup().start(executorService, PASSTHROUGH);
+        history.addSyncSnapshot(snapshot, null);
+        for (int i = 0; i < 3; i++) {
+            history.addSyncSnapshot(snapshot, TICK);
+            snapshot = snapshot.triggerEvent(TICK, executorService, Collections.emptyList(), PASSTHROUGH);
+        }
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        SessionArchiveIO.Settings settings = new SessionArchiveIO.Settings(true, false, true, Arrays.asList(2, 7));
+        new SessionArchiveIO(bProgram).write(archive, settings, history, snapshot);
+
+        BProgram importedBProgram = new StringBProgram(SOURCE);
+        importedBProgram.setup();
+        SessionArchiveIO sessionArchiveIO = new SessionArchiveIO(importedBProgram);
+        SyncSnapshotHolder<BProgramSyncSnapshot, BEvent> importedHistory = new SyncSnapshotHolderImpl();
+        ByteArrayInputStream input = new ByteArrayInputStream(archive.toByteArray());
+
+        SessionArchiveIO.Settings importedSettings = sessionArchiveIO.readSettings(input);
+        assertTrue(importedSettings.isSkipBreakpoints());
+        assertFalse(importedSettings.isSkipSyncPoints());
+        assertTrue(importedSettings.isWaitForExternalEvents());
+        assertEquals(Arrays.asList(2, 7), importedSettings.getBreakpoints());
+
+        BProgramSyncSnapshot current = sessionArchiveIO.readSyncSnapshots(input, importedHistory);
+        assertEquals(Collections.singleton("idle"), getBThreadNames(current));
+        assertEquals(new ArrayList<>(history.getEventsHistoryStack(0, 10).values()),
+                new ArrayList<>(importedHistory.getEventsHistoryStack(0, 10).values()));
+
+        SortedMap<Long, ?> importedSnapshots = importedHistory.getAllSyncSnapshots();
+        assertEquals(4, importedSnapshots.size());
+        BProgramSyncSnapshot rewound = importedHistory.popKey(importedSnapshots.firstKey());
+        assertEquals(new HashSet<>(Arrays.asList("counter", "idle")), getBThreadNames(rewound));
+        BProgramSyncSnapshot next = rewound.triggerEvent(TICK, executorService, Collections.emptyList(), PASSTHROUGH);
+        assertEquals(new HashSet<>(Arrays.asList("counter", "idle")), getBThreadNames(next));
+    }
+
+    @Test
+    public void readSyncSnapshots_rejectsRecordOverMaxLength() throws Exception {
+        assertInvalidArchive(archiveWithRecordLength(Integer.MAX_VALUE), IOException.class);
+    }
+
+    @Test
+    public void readSyncSnapshots_truncatedRecordFailsWithoutItsFullLength() throws Exception {
+        assertInvalidArchive(archiveWithRecordLength(32 * 1024 * 1024), EOFException.class);
+    }
+
+    private void assertInvalidArchive(byte[] archive, Class<? extends IOException> expectedException) throws Exception {
+        BProgram bProgram = new StringBProgram(SOURCE);
+        bProgram.setup();
+        try {
+            new SessionArchiveIO(bProgram).readSyncSnapshots(new ByteArrayInputStream(archive), new SyncSnapshotHolderImpl());
+            fail("expected the archive to be rejected");
+        } catch (IOException e) {
+            assertEquals(expectedException, e.getClass());
+        }
+    }
+
+    /**
+     * A current sync snapshot record whose program part claims the given length, followed by a few bytes only.
+     */
+    private static byte[] archiveWithRecordLength(int length) throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(archive);
+        output.writeByte(2);
+        output.writeBoolean(false);
+        output.writeInt(length);
+        output.write(new byte[16]);
+        output.flush();
+        return archive.toByteArray();
+    }
+
+    private Set<String> getBThreadNames(BProgramSyncSnapshot snapshot) {
+        return snapshot.getBThreadSnapshots().stream().map(BThreadSyncSnapshot::getName).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,86 @@
+package il.ac.bgu.se.bp.utils;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+public class DebuggerExecutorServiceMakerTest {
+    private static final String THREAD_NAME_TEMPLATE = "BPJsDebuggerRunner-1a2b#3c";
+
+    @Test
+    public void makeWithName_platformThreadsNamedByTemplate() throws Exception {
+        assertThreadNamedByTemplate(new DebuggerExecutorServiceMaker(false));
+    }
+
+    @Test
+    public void makeWithName_virtualThreadsNamedByTemplate() throws Exception {
+        assumeTrue(hasVirtualThreads());
+        DebuggerExecutorServiceMaker executorServiceMaker = new DebuggerExecutorServiceMaker(true);
+
+        assertTrue(executorServiceMaker.isVirtualThreads());
+        assertThreadNamedByTemplate(executorServiceMaker);
+        ExecutorService executorService = executorServiceMaker.makeWithName(THREAD_NAME_TEMPLATE);
+        try {
+            assertTrue((Boolean) executorService.submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread())).get());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void makeWithName_fallsBackToPlatformThreadsWithoutVirtualThreads() throws Exception {
+        assumeFalse(hasVirtualThreads());
+        DebuggerExecutorServiceMaker executorServiceMaker = new DebuggerExecutorServiceMaker(true);
+
+        assertFalse(executorServiceMaker.isVirtualThreads());
+        assertThreadNamedByTemplate(executorServiceMaker);
+    }
+
+    @Test
+    public void makeWithName_threadsKeepContextOfFactory() throws Exception {
+        ContextFactory contextFactory = new ContextFactory();
+        int liveSessionContexts = DebuggerExecutorServiceMaker.getLiveSessionContexts();
+        ExecutorService executorService = new DebuggerExecutorServiceMaker(false).makeWithName(THREAD_NAME_TEMPLATE, contextFactory);
+        try {
+            Context context = executorService.submit(Context::getCurrentContext).get();
+            assertNotNull(context);
+            assertSame(contextFactory, context.getFactory());
+            assertSame(context, executorService.submit(Context::getCurrentContext).get());
+            assertEquals(liveSessionContexts + 1, DebuggerExecutorServiceMaker.getLiveSessionContexts());
+        } finally {
+            executorService.shutdownNow();
+            assertTrue(executorService.awaitTermination(5, TimeUnit.SECONDS));
+        }
+        assertEquals(liveSessionContexts, DebuggerExecutorServiceMaker.getLiveSessionContexts());
+    }
+
+    /**
+     * The threads of a session are told apart by their names: everything before the last '#' is the template.
+     */
+    private static void assertThreadNamedByTemplate(DebuggerExecutorServiceMaker executorServiceMaker) throws Exception {
+        ExecutorService executorService = executorServiceMaker.makeWithName(THREAD_NAME_TEMPLATE);
+        try {
+            String threadName = executorService.submit(() -> Thread.currentThread().getName()).get();
+            assertEquals(THREAD_NAME_TEMPLATE + "#1", threadName);
+            assertEquals(THREAD_NAME_TEMPLATE, threadName.substring(0, threadName.lastIndexOf('#')));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static boolean hasVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package il.ac.bgu.se.bp.utils;
+
+import il.ac.bgu.se.bp.socket.console.ConsoleMessage;
+import il.ac.bgu.se.bp.socket.console.LogType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class DebuggerPrintStreamTest {
+    private static final long NEVER = 60 * 1000;
+    private static final String DEBUGGER_ID = "6981cb0a-f871-474b-98e9-faf7c02e18a4";
+
+    @Rule
+    public TemporaryFolder spillDir = new TemporaryFolder();
+
+    private final List<ConsoleMessage> messages = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void println_batchesLines() {
+        DebuggerPrintStream printStream = createPrintStream(2, 1000, null);
+
+        printStream.println("a");
+        assertTrue(messages.isEmpty());
+        printStream.println("b");
+        printStream.println("c");
+        assertEquals(1, messages.size());
+        assertEquals("a\nb", messages.get(0).getMessage());
+
+        printStream.flush();
+        assertEquals(2, messages.size());
+        assertEquals("c", messages.get(1).getMessage());
+        assertEquals(LogType.log, messages.get(1).getType());
+    }
+
+    @Test
+    public void println_dropsLinesOverRateAndSpillsAll() {
+        DebuggerPrintStream printStream = createPrintStream(100, 2, spillDir.getRoot().getPath());
+
+        for (int i = 0; i < 5; i++) {
+            printStream.println("line " + i);
+        }
+        printStream.flush();
+
+        assertEquals(2, messages.size());
+        assertEquals("line 0\nline 1", messages.get(0).getMessage());
+        assertEquals(LogType.warning, messages.get(1).getType());
+        assertTrue(messages.get(1).getMessage().startsWith("3 lines dropped"));
+
+        printStream.close();
+        assertEquals("line 0\nline 1\nline 2\nline 3\nline 4\n", readSpilledLog(printStream));
+    }
+
+    @Test
+    public void writeSpilledLog_linesPrintedSoFar() throws IOException {
+        DebuggerPrintStream printStream = createPrintStream(100, 1000, spillDir.getRoot().getPath());
+        printStream.println("a");
+
+        assertEquals("a\n", readSpilledLog(printStream));
+        printStream.println("b");
+        assertEquals("a\nb\n", readSpilledLog(printStream));
+    }
+
+    @Test
+    public void deleteSpilledLog_removesFile() throws IOException {
+        DebuggerPrintStream printStream = createPrintStream(100, 1000, spillDir.getRoot().getPath());
+        printStream.println("a");
+        Path logFile = spillDir.getRoot().toPath().resolve(DEBUGGER_ID + ".log");
+        assertTrue(Files.exists(logFile));
+
+        printStream.deleteSpilledLog();
+
+        assertFalse(Files.exists(logFile));
+        assertFalse(printStream.isSpilled());
+        printStream.println("b");
+        printStream.flush();
+        assertEquals("b", messages.get(messages.size() - 1).getMessage());
+        assertFalse(Files.exists(logFile));
+    }
+
+    @Test(expected = IOException.class)
+    public void writeSpilledLog_notSpilled() throws IOException {
+        DebuggerPrintStream printStream = createPrintStream(100, 1000, null);
+        printStream.println("a");
+        assertFalse(printStream.isSpilled());
+        printStream.writeSpilledLog(new ByteArrayOutputStream());
+    }
+
+    private static String readSpilledLog(DebuggerPrintStream printStream) {
+        ByteArrayOutputStream spilledLog = new ByteArrayOutputStream();
+        try {
+            printStream.writeSpilledLog(spilledLog);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new String(spilledLog.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private DebuggerPrintStream createPrintStream(int batchLines, int maxLinesPerSecond, String spillDir) {
+        DebuggerPrintStream printStream = new DebuggerPrintStream(new ByteArrayOutputStream(), NEVER, batchLines, maxLinesPerSecond, spillDir);
+        printStream.setDebuggerId(DEBUGGER_ID);
+        printStream.subscribe(event -> messages.add((ConsoleMessage) event.getEvent()));
+        return printStream;
+    }
+}
@@ -0,0 +1,128 @@
+package il.ac.bgu.se.bp.utils;
+
+import il.ac.bgu.cs.bp.bpjs.model.BEvent;
+import il.ac.bgu.cs.bp.bpjs.model.BProgram;
+import il.ac.bgu.cs.bp.bpjs.model.BProgramSyncSnapshot;
+import il.ac.bgu.cs.bp.bpjs.model.BThreadSyncSnapshot;
+import il.ac.bgu.cs.bp.bpjs.model.StringBProgram;
+import il.ac.bgu.cs.bp.bpjs.model.SyncStatement;
+import il.ac.bgu.cs.bp.bpjs.model.eventsets.EventSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static il.ac.bgu.cs.bp.bpjs.model.StorageModificationStrategy.PASSTHROUGH;
+import static org.junit.Assert.*;
+
+public class EventsStatusIndexTest {
+    private static final String SOURCE =
+            "var evens = bp.EventSet('evens', function (e) { return e.name.indexOf('even') === 0; });\n" +
+            "bp.registerBThread('requester-1', function () { bp.sync({ request: [bp.Event('even-1'), bp.Event('odd-1')] }); });\n" +
+            "bp.registerBThread('requester-2', function () { bp.sync({ request: [bp.Event('even-2'), bp.Event('even-1')] }); });\n" +
+            "bp.registerBThread('waiter-1', function () { bp.sync({ waitFor: evens }); });\n" +
+            "bp.registerBThread('waiter-2', function () { bp.sync({ waitFor: evens }); });\n" +
+            "bp.registerBThread('waiter-3', function () { bp.sync({ waitFor: [evens, bp.Event('odd-1')] }); });\n" +
+            "bp.registerBThread('blocker-1', function () { bp.sync({ waitFor: bp.Event('never'), block: evens }); });\n" +
+            "bp.registerBThread('blocker-2', function () { bp.sync({ waitFor: bp.Event('odd-1'), block: evens }); });\n";
+
+    private BProgramSyncSnapshot syncSnapshot;
+
+    @Before
+    public void setUp() throws Exception {
+        BProgram bProgram = new StringBProgram(SOURCE);
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            syncSnapshot = bProgram.setup().start(executorService, PASSTHROUGH);
+        } finally {
+            executorService.shutdownNow();
+        }
+        Context.enter();
+    }
+
+    @After
+    public void tearDown() {
+        Context.exit();
+    }
+
+    @Test
+    public void getRequestedEvents_eachRequestedEventOnce() {
+        EventsStatusIndex eventsStatusIndex = new EventsStatusIndex(syncSnapshot);
+
+        assertEquals(3, eventsStatusIndex.getRequestedEvents().size());
+        assertEquals(new HashSet<>(getAllRequestedEvents()), new HashSet<>(eventsStatusIndex.getRequestedEvents()));
+    }
+
+    @Test
+    public void getMatchingRequestedEvents_sameAsMatchingEveryBThreadAlone() {
+        EventsStatusIndex eventsStatusIndex = new EventsStatusIndex(syncSnapshot);
+        List<BEvent> allRequestedEvents = getAllRequestedEvents();
+
+        for (BThreadSyncSnapshot bThreadSnapshot : syncSnapshot.getBThreadSnapshots()) {
+            EventSet waitFor = bThreadSnapshot.getSyncStatement().getWaitFor();
+            EventSet blocked = bThreadSnapshot.getSyncStatement().getBlock();
+            assertEquals(bThreadSnapshot.getName(), getMatching(allRequestedEvents, waitFor),
+                    eventsStatusIndex.getMatchingRequestedEvents(waitFor));
+            assertEquals(bThreadSnapshot.getName(), getMatching(allRequestedEvents, blocked),
+                    eventsStatusIndex.getMatchingRequestedEvents(blocked));
+        }
+        assertEquals(new HashSet<>(Arrays.asList(new BEvent("even-1"), new BEvent("even-2"))),
+                eventsStatusIndex.getMatchingRequestedEvents(getSyncStatement("blocker-1").getBlock()));
+    }
+
+    @Test
+    public void getMatchingRequestedEvents_sameEventSetsAsMatchingEveryStatement() {
+        EventsStatusIndex eventsStatusIndex = new EventsStatusIndex(syncSnapshot);
+        List<BEvent> allRequestedEvents = getAllRequestedEvents();
+        Set<SyncStatement> statements = syncSnapshot.getStatements();
+
+        assertEquals(getMatchingEventSets(allRequestedEvents, statements.stream().map(SyncStatement::getWaitFor)),
+                getMatchingEventSets(eventsStatusIndex, statements.stream().map(SyncStatement::getWaitFor)));
+        assertEquals(getMatchingEventSets(allRequestedEvents, statements.stream().map(SyncStatement::getBlock)),
+                getMatchingEventSets(eventsStatusIndex, statements.stream().map(SyncStatement::getBlock)));
+    }
+
+    @Test
+    public void getMatchingRequestedEvents_sharedEventSetMatchedOnce() {
+        EventsStatusIndex eventsStatusIndex = new EventsStatusIndex(syncSnapshot);
+        EventSet waiter1 = getSyncStatement("waiter-1").getWaitFor();
+        EventSet waiter2 = getSyncStatement("waiter-2").getWaitFor();
+        EventSet blocker1 = getSyncStatement("blocker-1").getBlock();
+
+        assertSame(eventsStatusIndex.getMatchingRequestedEvents(waiter1), eventsStatusIndex.getMatchingRequestedEvents(waiter2));
+        assertSame(eventsStatusIndex.getMatchingRequestedEvents(waiter1), eventsStatusIndex.getMatchingRequestedEvents(blocker1));
+    }
+
+    /**
+     * Every request of every b-thread, repeated events included, as each b-thread collected them before the index.
+     */
+    private List<BEvent> getAllRequestedEvents() {
+        return syncSnapshot.getStatements().stream().map(SyncStatement::getRequest).flatMap(Collection::stream).collect(Collectors.toList());
+    }
+
+    private static Set<BEvent> getMatching(List<BEvent> requestedEvents, EventSet eventSet) {
+        return requestedEvents.stream().filter(eventSet::contains).collect(Collectors.toSet());
+    }
+
+    private static List<String> getMatchingEventSets(List<BEvent> requestedEvents, Stream<EventSet> eventSets) {
+        return eventSets.filter(e -> requestedEvents.stream().anyMatch(e::contains)).map(Object::toString).sorted().collect(Collectors.toList());
+    }
+
+    private static List<String> getMatchingEventSets(EventsStatusIndex eventsStatusIndex, Stream<EventSet> eventSets) {
+        return eventSets.filter(e -> !eventsStatusIndex.getMatchingRequestedEvents(e).isEmpty()).map(Object::toString).sorted().collect(Collectors.toList());
+    }
+
+    private SyncStatement getSyncStatement(String bThreadName) {
+        return syncSnapshot.getBThreadSnapshots().stream()
+                .filter(bThreadSnapshot -> bThreadName.equals(bThreadSnapshot.getName()))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("no b-thread " + bThreadName))
+                .getSyncStatement();
+    }
+}
@@ -0,0 +1,41 @@
+package il.ac.bgu.se.bp.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FieldAccessorsTest {
+
+    private static class Frame {
+        private final String name;
+        private final Frame parentFrame;
+        private final int lineNumber;
+
+        Frame(String name, Frame parentFrame, int lineNumber) {
+            this.name = name;
+            this.parentFrame = parentFrame;
+            this.lineNumber = lineNumber;
+        }
+    }
+
+    @Test
+    public void getValue_privateFields() throws Exception {
+        Frame parent = new Frame("parent", null, 1);
+        Frame child = new Frame("child", parent, 7);
+
+        assertEquals("child", FieldAccessors.getValue(child, "name"));
+        assertSame(parent, FieldAccessors.getValue(child, "parentFrame"));
+        assertNull(FieldAccessors.getValue(parent, "parentFrame"));
+        assertEquals(7, (int) FieldAccessors.<Integer>getValue(child, "lineNumber"));
+    }
+
+    @Test
+    public void getGetter_resolvedOnce() throws Exception {
+        assertSame(FieldAccessors.getGetter(Frame.class, "name"), FieldAccessors.getGetter(Frame.class, "name"));
+    }
+
+    @Test(expected = NoSuchFieldException.class)
+    public void getValue_unknownField() throws Exception {
+        FieldAccessors.getValue(new Frame("frame", null, 1), "scope");
+    }
+}
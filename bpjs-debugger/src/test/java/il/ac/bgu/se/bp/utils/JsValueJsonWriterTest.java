@@ -0,0 +1,82 @@
+package il.ac.bgu.se.bp.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Scriptable;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class JsValueJsonWriterTest {
+
+    private Context cx;
+    private Scriptable scope;
+
+    @Before
+    public void setUp() {
+        cx = new ContextFactory().enterContext();
+        cx.setOptimizationLevel(-1);
+        scope = cx.initStandardObjects();
+    }
+
+    @After
+    public void tearDown() {
+        Context.exit();
+    }
+
+    private String toJson(String script) throws Exception {
+        return JsValueJsonWriter.toJson(cx.evaluateString(scope, script, "test", 1, null));
+    }
+
+    @Test
+    public void toJson_values() throws Exception {
+        assertEquals("null", JsValueJsonWriter.toJson(null));
+        assertEquals("\"abc\"", toJson("'ab' + 'c'"));
+        assertEquals("true", toJson("true"));
+        assertEquals("1.0", toJson("1"));
+        assertEquals("1.5", toJson("1.5"));
+        assertEquals("NaN", toJson("NaN"));
+        assertEquals("\"function\"", toJson("(function () {})"));
+        assertEquals("\"function\"", toJson("(() => 1)"));
+    }
+
+    @Test
+    public void toJson_objectsAndArrays() throws Exception {
+        assertEquals("{\"a\":1.0,\"b\":[1.0,\"x\",{\"c\":true}]}", toJson("({a: 1, b: [1, 'x', {c: true}]})"));
+        assertEquals("[]", toJson("[]"));
+    }
+
+    @Test
+    public void toJson_circular() throws Exception {
+        assertEquals("{\"a\":1.0,\"self\":\"" + JsValueJsonWriter.CIRCULAR_MARKER + "\"}", toJson("var o = {a: 1}; o.self = o; o"));
+        assertEquals("[{\"x\":1.0},{\"x\":1.0}]", toJson("var s = {x: 1}; [s, s]"));
+    }
+
+    @Test
+    public void toJson_bounded() throws Exception {
+        String deep = toJson("var d = {}; for (var i = 0; i < " + (JsValueJsonWriter.Limits.FULL.getMaxDepth() + 5) + "; i++) d = {d: d}; d");
+        assertTrue(deep.contains(JsValueJsonWriter.MAX_DEPTH_MARKER));
+
+        String large = toJson("var l = []; for (var i = 0; i < " + (JsValueJsonWriter.Limits.FULL.getMaxElements() + 3) + "; i++) l.push(i); l");
+        assertTrue(large.endsWith(",\"" + JsValueJsonWriter.TRUNCATED_KEY + " 3 more\"]"));
+
+        JsValueJsonWriter.Limits limits = new JsValueJsonWriter.Limits(2, 2, 3);
+        assertEquals("{\"s\":\"abc" + JsValueJsonWriter.TRUNCATED_KEY + " 2 more\",\"o\":{\"a\":\"" + JsValueJsonWriter.MAX_DEPTH_MARKER + "\"}," +
+                "\"" + JsValueJsonWriter.TRUNCATED_KEY + "\":\"1 more\"}", JsValueJsonWriter.toJson(cx.evaluateString(scope, "({s: 'abcde', o: {a: [1]}, x: 1})", "test", 1, null), limits));
+    }
+
+    @Test
+    public void toJsonSummary_memoized() throws Exception {
+        Object shared = cx.evaluateString(scope, "var shared = {x: 1}; shared", "test", 1, null);
+        Map<Object, String> summaries = JsValueJsonWriter.newSummaries();
+
+        assertEquals("{\"x\":1.0}", JsValueJsonWriter.toJsonSummary(shared, summaries));
+        cx.evaluateString(scope, "shared.x = 2", "test", 1, null);
+        assertEquals("{\"x\":1.0}", JsValueJsonWriter.toJsonSummary(shared, summaries));
+        assertEquals("{\"x\":2.0}", JsValueJsonWriter.toJsonSummary(shared, JsValueJsonWriter.newSummaries()));
+    }
+}
@@ -0,0 +1,72 @@
+package il.ac.bgu.se.bp.utils;
+
+import il.ac.bgu.se.bp.error.ErrorCode;
+import il.ac.bgu.se.bp.rest.response.ScopeVariableResponse;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Scriptable;
+
+import static org.junit.Assert.*;
+
+public class ScopeVariableHelperTest {
+
+    private Scriptable scope;
+
+    @Before
+    public void setUp() {
+        scope = (Scriptable) new ContextFactory().call(cx -> {
+            cx.setOptimizationLevel(-1);
+            Scriptable scope = cx.initStandardObjects();
+            cx.evaluateString(scope, "var big = []; for (var i = 0; i < 50; i++) big.push({id: i, tags: ['a', 'b']});" +
+                    "var huge = []; for (var i = 0; i < 1500; i++) huge.push(i);" +
+                    "var game = {board: [[1, 2], [3, 4]], player: 'x'};", "test", 1, null);
+            return scope;
+        });
+    }
+
+    @Test
+    public void expand_pageOfArray() {
+        ScopeVariableResponse response = ScopeVariableHelper.expand(scope, "big", 10, 13);
+
+        assertTrue(response.isSuccess());
+        assertEquals(50, response.getSize());
+        assertEquals(3, response.getChildren().size());
+        assertEquals("{\"id\":10.0,\"tags\":[\"a\",\"b\"]}", response.getChildren().get("10"));
+        assertTrue(response.getValue().contains(JsValueJsonWriter.TRUNCATED_KEY + " 30 more"));
+    }
+
+    @Test
+    public void expand_pageIsCappedToMaxPageSize() {
+        ScopeVariableResponse response = ScopeVariableHelper.expand(scope, "huge", 100, Integer.MAX_VALUE);
+
+        assertTrue(response.isSuccess());
+        assertEquals(1500, response.getSize());
+        assertEquals(1000, response.getChildren().size());
+        assertEquals("100.0", response.getChildren().get("100"));
+        assertEquals("1099.0", response.getChildren().get("1099"));
+        assertNull(response.getChildren().get("1100"));
+    }
+
+    @Test
+    public void expand_path() {
+        ScopeVariableResponse response = ScopeVariableHelper.expand(scope, "game.board.1", 0, 100);
+
+        assertTrue(response.isSuccess());
+        assertEquals("[3.0,4.0]", response.getValue());
+        assertEquals(2, response.getSize());
+        assertEquals("4.0", response.getChildren().get("1"));
+
+        ScopeVariableResponse primitive = ScopeVariableHelper.expand(scope, "game.player", 0, 100);
+        assertEquals("\"x\"", primitive.getValue());
+        assertEquals(0, primitive.getSize());
+    }
+
+    @Test
+    public void expand_unknownVariable() {
+        assertEquals(ErrorCode.UNKNOWN_VARIABLE, ScopeVariableHelper.expand(scope, "game.nothing", 0, 100).getErrorCode());
+        assertEquals(ErrorCode.UNKNOWN_VARIABLE, ScopeVariableHelper.expand(scope, "game.player.length.x", 0, 100).getErrorCode());
+        assertEquals(ErrorCode.INVALID_REQUEST, ScopeVariableHelper.expand(scope, "game", 5, 1).getErrorCode());
+    }
+}
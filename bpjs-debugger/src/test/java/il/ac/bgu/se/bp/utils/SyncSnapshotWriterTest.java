@@ -0,0 +1,88 @@
+package il.ac.bgu.se.bp.utils;
+
+import il.ac.bgu.cs.bp.bpjs.bprogramio.BProgramSyncSnapshotIO;
+import il.ac.bgu.cs.bp.bpjs.model.BEvent;
+import il.ac.bgu.cs.bp.bpjs.model.BProgram;
+import il.ac.bgu.cs.bp.bpjs.model.BProgramSyncSnapshot;
+import il.ac.bgu.cs.bp.bpjs.model.BThreadSyncSnapshot;
+import il.ac.bgu.cs.bp.bpjs.model.StringBProgram;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.debug.DebugFrame;
+import org.mozilla.javascript.debug.Debugger;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static il.ac.bgu.cs.bp.bpjs.model.StorageModificationStrategy.PASSTHROUGH;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SyncSnapshotWriterTest {
+    private static final String SOURCE = "bp.registerBThread('first', function () {\n" +
+            "    var count = 1;\n" +
+            "    bp.sync({request: bp.Event('A')});\n" +
+            "    count++;\n" +
+            "});\n" +
+            "bp.registerBThread('second', function () {\n" +
+            "    bp.sync({waitFor: bp.Event('A')});\n" +
+            "});";
+
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private ContextFactory.Listener debuggerAttacher;
+
+    @Before
+    public void setUp() {
+        Debugger debugger = mock(Debugger.class);
+        when(debugger.getFrame(any(), any())).thenReturn(mock(DebugFrame.class));
+        debuggerAttacher = new ContextFactory.Listener() {
+            @Override
+            public void contextCreated(Context cx) {
+                cx.setDebugger(debugger, null);
+                cx.setGeneratingDebug(true);
+            }
+
+            @Override
+            public void contextReleased(Context cx) {
+            }
+        };
+        ContextFactory.getGlobal().addListener(debuggerAttacher);
+    }
+
+    @After
+    public void tearDown() {
+        ContextFactory.getGlobal().removeListener(debuggerAttacher);
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void serialize_debuggedSnapshotIsReadByBPjs() throws Exception {
+        BProgram bProgram = new StringBProgram(SOURCE);
+        BProgramSyncSnapshot snapshot = bProgram.setup().start(executorService, PASSTHROUGH);
+
+        try {
+            new BProgramSyncSnapshotIO(bProgram).serialize(snapshot);
+            fail("debugger frames are expected to be in the continuations");
+        } catch (Exception expected) {
+        }
+
+        BProgramSyncSnapshot restored = new BProgramSyncSnapshotIO(bProgram).deserialize(SyncSnapshotWriter.serialize(snapshot));
+        assertEquals(getBThreadNames(snapshot), getBThreadNames(restored));
+        assertEquals(snapshot.getExternalEvents(), restored.getExternalEvents());
+
+        BProgramSyncSnapshot next = restored.triggerEvent(new BEvent("A"), executorService, Collections.emptyList(), PASSTHROUGH);
+        assertTrue(next.noBThreadsLeft());
+    }
+
+    private Set<String> getBThreadNames(BProgramSyncSnapshot snapshot) {
+        return snapshot.getBThreadSnapshots().stream().map(BThreadSyncSnapshot::getName).collect(Collectors.toSet());
+    }
+}
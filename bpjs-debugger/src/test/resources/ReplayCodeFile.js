@@ -0,0 +1,4 @@
+bp.registerBThread('bt-pick', function () {
+    var picked = bp.sync({ request: [bp.Event('pick', {side: 'left', at: 1}), bp.Event('pick', {side: 'right', at: 2})] });
+    bp.sync({ request: bp.Event('picked-' + picked.data.side) });
+})
@@ -0,0 +1,11 @@
+bp.registerBThread('bt-counter', function () {
+    var counter = 0;
+    while (true) {
+        bp.sync({ request: bp.Event('tick') });
+        counter++;
+    }
+})
+
+bp.registerBThread('bt-idle', function () {
+    bp.sync({ waitFor: bp.Event('never') });
+})
@@ -5,16 +5,28 @@ import il.ac.bgu.se.bp.rest.request.*;
 import il.ac.bgu.se.bp.rest.response.BooleanResponse;
 import il.ac.bgu.se.bp.rest.response.DebugResponse;
 import il.ac.bgu.se.bp.rest.response.EventsHistoryResponse;
+import il.ac.bgu.se.bp.rest.response.ScopeVariableResponse;
 import il.ac.bgu.se.bp.rest.response.SyncSnapshot;
 import il.ac.bgu.se.bp.service.BPjsIDEService;
+import il.ac.bgu.se.bp.service.BinarySyncSnapshotExport;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.security.Principal;
 
+import static il.ac.bgu.se.bp.rest.utils.Constants.BINARY_SYNC_SNAPSHOT_FILENAME;
+import static il.ac.bgu.se.bp.rest.utils.Constants.DEFAULT_SCOPE_PAGE_SIZE;
+import static il.ac.bgu.se.bp.rest.utils.Constants.SESSION_ARCHIVE_FILENAME;
 import static il.ac.bgu.se.bp.rest.utils.Constants.SIMP_SESSION_ID;
 import static il.ac.bgu.se.bp.rest.utils.Endpoints.*;
 
@@ -47,6 +59,13 @@ public class BPjsIDERestControllerImpl implements BPjsIDERestController {
         return bPjsIDEService.debug(code, userId);
     }
 
+    @Override
+    @RequestMapping(value = REPLAY, method = RequestMethod.POST)
+    public @ResponseBody
+    DebugResponse replay(@RequestHeader("userId") String userId, @RequestBody ReplayRequest replayRequest) {
+        return bPjsIDEService.replay(replayRequest, userId);
+    }
+
     @Override
     @RequestMapping(value = BREAKPOINT, method = RequestMethod.POST)
     public @ResponseBody
@@ -138,6 +157,40 @@ public class BPjsIDERestControllerImpl implements BPjsIDERestController {
         return bPjsIDEService.getEventsHistory(userId, from, to);
     }
 
+    @Override
+    @RequestMapping(value = BTHREAD_SCOPE, method = RequestMethod.GET)
+    public @ResponseBody
+    ScopeVariableResponse getBThreadVariable(@RequestHeader("userId") String userId,
+                                             @PathVariable("bThreadName") String bThreadName,
+                                             @PathVariable("frame") int frame,
+                                             @RequestParam(name = "path", defaultValue = "") String path,
+                                             @RequestParam(name = "from", defaultValue = "0") int from,
+                                             @RequestParam(name = "to", defaultValue = DEFAULT_SCOPE_PAGE_SIZE) int to) {
+        return bPjsIDEService.getBThreadVariable(userId, bThreadName, frame, path, from, to);
+    }
+
+    @Override
+    @RequestMapping(value = GLOBAL_SCOPE, method = RequestMethod.GET)
+    public @ResponseBody
+    ScopeVariableResponse getGlobalVariable(@RequestHeader("userId") String userId,
+                                            @RequestParam(name = "path", defaultValue = "") String path,
+                                            @RequestParam(name = "from", defaultValue = "0") int from,
+                                            @RequestParam(name = "to", defaultValue = DEFAULT_SCOPE_PAGE_SIZE) int to) {
+        return bPjsIDEService.getGlobalVariable(userId, path, from, to);
+    }
+
+    @Override
+    @RequestMapping(value = CONSOLE_LOG, method = RequestMethod.GET)
+    public ResponseEntity<StreamingResponseBody> getConsoleLog(@RequestHeader("userId") String userId) {
+        BinarySyncSnapshotExport consoleLog = bPjsIDEService.getConsoleLog(userId);
+        if (consoleLog == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(consoleLog::writeTo);
+    }
+
     @Override
     @RequestMapping(value = SYNC_SNAPSHOT, method = RequestMethod.PUT)
     public @ResponseBody
@@ -161,4 +214,80 @@ public class BPjsIDERestControllerImpl implements BPjsIDERestController {
         return bPjsIDEService.importSyncSnapshot(userId, importSyncSnapshotRequest);
     }
 
+    /**
+     * Streams the sync snapshot in the compressed binary format, see {@link #importBinarySyncSnapshot}.
+     */
+    @Override
+    @RequestMapping(value = SYNC_SNAPSHOT_BINARY, method = RequestMethod.GET)
+    public ResponseEntity<StreamingResponseBody> exportBinarySyncSnapshot(@RequestHeader("userId") String userId) {
+        BinarySyncSnapshotExport binarySyncSnapshotExport = bPjsIDEService.exportBinarySyncSnapshot(userId);
+        if (binarySyncSnapshotExport == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + BINARY_SYNC_SNAPSHOT_FILENAME + "\"")
+                .body(binarySyncSnapshotExport::writeTo);
+    }
+
+    /**
+     * Imports a sync snapshot exported by {@link #exportBinarySyncSnapshot}, sent as the "syncSnapshot" part. The
+     * optional "request" part holds the other fields of an {@link ImportSyncSnapshotRequest}.
+     */
+    @Override
+    @RequestMapping(value = SYNC_SNAPSHOT_BINARY, method = RequestMethod.POST, consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public @ResponseBody
+    BooleanResponse importBinarySyncSnapshot(@RequestHeader("userId") String userId,
+                                             @RequestPart(value = "request", required = false) ImportSyncSnapshotRequest importSyncSnapshotRequest,
+                                             @RequestPart("syncSnapshot") MultipartFile syncSnapshot) throws IOException {
+        try (InputStream binarySyncSnapshot = syncSnapshot.getInputStream()) {
+            return bPjsIDEService.importBinarySyncSnapshot(userId,
+                    importSyncSnapshotRequest != null ? importSyncSnapshotRequest : new ImportSyncSnapshotRequest(), binarySyncSnapshot);
+        }
+    }
+
+    /**
+     * Streams the debug session, with its sync snapshots history, as a session archive, see {@link #importSessionArchive}.
+     */
+    @Override
+    @RequestMapping(value = SESSION_ARCHIVE, method = RequestMethod.GET)
+    public ResponseEntity<StreamingResponseBody> exportSessionArchive(@RequestHeader("userId") String userId) {
+        BinarySyncSnapshotExport sessionArchiveExport = bPjsIDEService.exportSessionArchive(userId);
+        if (sessionArchiveExport == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + SESSION_ARCHIVE_FILENAME + "\"")
+                .body(sessionArchiveExport::writeTo);
+    }
+
+    /**
+     * Starts a debug session from a session archive exported by {@link #exportSessionArchive}, sent as the "session" part.
+     */
+    @Override
+    @RequestMapping(value = SESSION_ARCHIVE, method = RequestMethod.POST, consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public @ResponseBody
+    DebugResponse importSessionArchive(@RequestHeader("userId") String userId,
+                                       @RequestPart("session") MultipartFile sessionArchive) throws IOException {
+        try (InputStream sessionArchiveStream = sessionArchive.getInputStream()) {
+            return bPjsIDEService.importSessionArchive(userId, sessionArchiveStream);
+        }
+    }
+
+    @Override
+    @RequestMapping(value = STATE_DELTA, method = RequestMethod.PUT)
+    public @ResponseBody
+    BooleanResponse toggleStateDelta(@RequestHeader("userId") String userId,
+                                     @RequestBody ToggleStateDeltaRequest toggleStateDeltaRequest) {
+        return bPjsIDEService.toggleStateDelta(userId, toggleStateDeltaRequest);
+    }
+
+    @Override
+    @RequestMapping(value = STATE_RESYNC, method = RequestMethod.GET)
+    public @ResponseBody
+    BooleanResponse resyncState(@RequestHeader("userId") String userId) {
+        return bPjsIDEService.resyncState(userId);
+    }
+
 }
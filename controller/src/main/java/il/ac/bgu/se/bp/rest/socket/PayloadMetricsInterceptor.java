@@ -0,0 +1,61 @@
+package il.ac.bgu.se.bp.rest.socket;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static il.ac.bgu.se.bp.rest.utils.Endpoints.*;
+
+/**
+ * Records the size of the payloads sent to the clients as {@code bpjs.stomp.payload}, tagged by topic.
+ * Payloads are measured after serialization, so a state is not serialized twice to be measured.
+ */
+public class PayloadMetricsInterceptor implements ChannelInterceptor {
+    private static final String OTHER_TOPIC = "other";
+    private static final List<String> TOPICS = Arrays.asList(STATE_UPDATE, STATE_DELTA_UPDATE, CONSOLE_UPDATE, PROGRAM_UPDATE);
+
+    private final Map<String, DistributionSummary> payloadSizes = new ConcurrentHashMap<>();
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (message.getPayload() instanceof byte[]) {
+            int payloadSize = ((byte[]) message.getPayload()).length;
+            if (payloadSize > 0) {
+                payloadSizes.computeIfAbsent(getTopic(message), PayloadMetricsInterceptor::createPayloadSize).record(payloadSize);
+            }
+        }
+        return message;
+    }
+
+    private static String getTopic(Message<?> message) {
+        Object destination = message.getHeaders().get(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION);
+        if (destination == null) {
+            destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        }
+        if (destination == null) {
+            return OTHER_TOPIC;
+        }
+        for (String topic : TOPICS) {
+            if (destination.toString().endsWith(topic)) {
+                return topic;
+            }
+        }
+        return OTHER_TOPIC;
+    }
+
+    private static DistributionSummary createPayloadSize(String topic) {
+        return DistributionSummary.builder("bpjs.stomp.payload")
+                .description("size of the payloads sent to the clients")
+                .baseUnit("bytes")
+                .tag("topic", topic)
+                .register(Metrics.globalRegistry);
+    }
+}
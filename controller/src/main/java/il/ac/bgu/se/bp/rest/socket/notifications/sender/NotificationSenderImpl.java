@@ -1,6 +1,8 @@
 package il.ac.bgu.se.bp.rest.socket.notifications.sender;
 
 import il.ac.bgu.se.bp.service.manage.SessionHandler;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.event.EventListener;
@@ -13,6 +15,7 @@ import java.io.Serializable;
 import java.security.Principal;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static il.ac.bgu.se.bp.rest.utils.Constants.SIMP_SESSION_ID;
 
@@ -22,6 +25,7 @@ import static il.ac.bgu.se.bp.rest.utils.Constants.SIMP_SESSION_ID;
 public class NotificationSenderImpl implements NotificationSender {
 
     private final SimpMessagingTemplate simpMessagingTemplate;
+    private final Map<String, Timer> sendTimers = new ConcurrentHashMap<>();
 
     @Autowired
     private SessionHandler sessionHandler;
@@ -70,6 +74,15 @@ public class NotificationSenderImpl implements NotificationSender {
 
     @Override
     public void sendNotification(String userId, String updateURI, Serializable json) {
-            simpMessagingTemplate.convertAndSendToUser(userId, updateURI, json);
+        Timer.Sample sample = Timer.start();
+        simpMessagingTemplate.convertAndSendToUser(userId, updateURI, json);
+        sample.stop(sendTimers.computeIfAbsent(updateURI, NotificationSenderImpl::createSendTimer));
+    }
+
+    private static Timer createSendTimer(String updateURI) {
+        return Timer.builder("bpjs.stomp.send")
+                .description("time to serialize and send a notification to the broker")
+                .tag("topic", updateURI)
+                .register(Metrics.globalRegistry);
     }
 }
@@ -4,5 +4,8 @@ public class Constants {
 
     public static final String SIMP_SESSION_ID = "simpSessionId";
     public static final String USER_ID_HEADER_PROP_STR = "userId";
+    public static final String DEFAULT_SCOPE_PAGE_SIZE = "100";
+    public static final String BINARY_SYNC_SNAPSHOT_FILENAME = "syncSnapshot.bpss";
+    public static final String SESSION_ARCHIVE_FILENAME = "session.bpsa";
 
 }
@@ -10,14 +10,18 @@ public class Endpoints {
     public static final String CONSOLE = "/console";
     public static final String PROGRAM = "/program";
     public static final String UPDATE = "/update";
+    public static final String DELTA = "/delta";
 
     public static final String CONSOLE_UPDATE = CONSOLE + UPDATE;
+    public static final String CONSOLE_LOG = CONSOLE + "/log";
     public static final String STATE_UPDATE = STATE + UPDATE;
+    public static final String STATE_DELTA_UPDATE = STATE + DELTA;
     public static final String PROGRAM_UPDATE = PROGRAM + UPDATE;
 
 
     public static final String RUN = "/run";
     public static final String DEBUG = "/debug";
+    public static final String REPLAY = "/replay";
 
 
     public static final String BREAKPOINT = "/breakpoint";
@@ -31,9 +35,17 @@ public class Endpoints {
     public static final String SYNC_STATES = "/syncStates";
 
     public static final String EVENTS = "/events";
+    public static final String SCOPE = "/scope";
+    public static final String BTHREAD_SCOPE = SCOPE + "/{bThreadName}/{frame}";
+    public static final String GLOBAL_SCOPE = SCOPE + "/global";
     public static final String WAIT_EXTERNAL= "/waitExternal";
 
     public static final String EXTERNAL_EVENT = "/externalEvent";
     public static final String SYNC_SNAPSHOT = "/syncSnapshot";
+    public static final String SYNC_SNAPSHOT_BINARY = SYNC_SNAPSHOT + "/binary";
+    public static final String SESSION_ARCHIVE = "/sessionArchive";
+
+    public static final String STATE_DELTA = "/stateDelta";
+    public static final String STATE_RESYNC = "/stateResync";
 
 }
@@ -0,0 +1,139 @@
+package il.ac.bgu.se.bp.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import il.ac.bgu.se.bp.debugger.BPJsDebugger;
+import il.ac.bgu.se.bp.debugger.DebuggerLevel;
+import il.ac.bgu.se.bp.debugger.manage.DebuggerFactory;
+import il.ac.bgu.se.bp.error.ErrorCode;
+import il.ac.bgu.se.bp.rest.response.BooleanResponse;
+import il.ac.bgu.se.bp.rest.response.SyncSnapshot;
+import il.ac.bgu.se.bp.service.BPjsIDEServiceImpl;
+import il.ac.bgu.se.bp.service.code.SourceCodeHelper;
+import il.ac.bgu.se.bp.service.manage.SessionHandler;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static il.ac.bgu.se.bp.rest.utils.Endpoints.BASE_URI;
+import static il.ac.bgu.se.bp.rest.utils.Endpoints.SYNC_SNAPSHOT_BINARY;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BPjsIDERestControllerImplTest {
+    private static final String USER_ID = "user";
+    private static final String FILENAME = "imported.js";
+    private static final String SOURCE_CODE = "bp.registerBThread('bt', function() { bp.sync({request: bp.Event('e')}); });";
+    private static final byte[] SYNC_SNAPSHOT_BYTES = "serialized sync snapshot".getBytes(StandardCharsets.UTF_8);
+
+    @Mock
+    private SessionHandler<BPJsDebugger<BooleanResponse>> sessionHandler;
+
+    @Mock
+    private SourceCodeHelper sourceCodeHelper;
+
+    @Mock
+    private DebuggerFactory<BooleanResponse> debuggerFactory;
+
+    @Mock
+    private BPJsDebugger<BooleanResponse> exportedDebugger;
+
+    @Mock
+    private BPJsDebugger<BooleanResponse> importedDebugger;
+
+    @InjectMocks
+    private BPjsIDEServiceImpl bPjsIDEService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() throws Exception {
+        BPjsIDERestControllerImpl bPjsIDERestController = new BPjsIDERestControllerImpl();
+        ReflectionTestUtils.setField(bPjsIDERestController, "bPjsIDEService", bPjsIDEService);
+        mockMvc = MockMvcBuilders.standaloneSetup(bPjsIDERestController).build();
+
+        when(sessionHandler.getBPjsDebuggerOrRunnerByUser(USER_ID)).thenReturn(exportedDebugger);
+        when(sessionHandler.getUsersSourceCode(USER_ID)).thenReturn(SOURCE_CODE);
+        doAnswer(a -> {
+            a.getArgument(0, OutputStream.class).write(SYNC_SNAPSHOT_BYTES);
+            return null;
+        }).when(exportedDebugger).writeSyncSnapshot(any());
+    }
+
+    @Test
+    public void binarySyncSnapshot_exportAndImport() throws Exception {
+        when(sessionHandler.validateUserId(USER_ID)).thenReturn(true);
+        when(sourceCodeHelper.createCodeFile(SOURCE_CODE)).thenReturn(FILENAME);
+        when(debuggerFactory.getBPJsDebugger(USER_ID, FILENAME, DebuggerLevel.NORMAL)).thenReturn(importedDebugger);
+        when(importedDebugger.setup(anyMap(), anyBoolean(), anyBoolean(), anyBoolean())).thenReturn(new BooleanResponse(true));
+        when(importedDebugger.setSyncSnapshot(any(SyncSnapshot.class))).thenReturn(new BooleanResponse(true));
+
+        BooleanResponse response = importBinarySyncSnapshot(exportBinarySyncSnapshot());
+
+        assertTrue(response.isSuccess());
+        ArgumentCaptor<SyncSnapshot> syncSnapshotCaptor = ArgumentCaptor.forClass(SyncSnapshot.class);
+        verify(importedDebugger).setSyncSnapshot(syncSnapshotCaptor.capture());
+        assertEquals(SOURCE_CODE, syncSnapshotCaptor.getValue().getSourceCode());
+        assertArrayEquals(SYNC_SNAPSHOT_BYTES, syncSnapshotCaptor.getValue().getSyncSnapshot());
+    }
+
+    @Test
+    public void binarySyncSnapshot_corruptedCrcRejected() throws Exception {
+        byte[] binarySyncSnapshot = exportBinarySyncSnapshot();
+        // the GZIP trailer is the CRC-32 of the content followed by its size
+        binarySyncSnapshot[binarySyncSnapshot.length - 8] ^= 0xFF;
+
+        assertImportRejected(binarySyncSnapshot);
+    }
+
+    @Test
+    public void binarySyncSnapshot_wrongMagicRejected() throws Exception {
+        byte[] binarySyncSnapshot = exportBinarySyncSnapshot();
+        binarySyncSnapshot[0] = 'X';
+
+        assertImportRejected(binarySyncSnapshot);
+    }
+
+    private void assertImportRejected(byte[] binarySyncSnapshot) throws Exception {
+        BooleanResponse response = importBinarySyncSnapshot(binarySyncSnapshot);
+
+        assertFalse(response.isSuccess());
+        assertEquals(ErrorCode.IMPORT_SYNC_SNAPSHOT_FAILURE, response.getErrorCode());
+        verifyNoInteractions(debuggerFactory);
+    }
+
+    private byte[] exportBinarySyncSnapshot() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get(BASE_URI + SYNC_SNAPSHOT_BINARY).header("userId", USER_ID))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    private BooleanResponse importBinarySyncSnapshot(byte[] binarySyncSnapshot) throws Exception {
+        MockMultipartFile syncSnapshotPart = new MockMultipartFile("syncSnapshot", "syncSnapshot.bpss",
+                "application/octet-stream", binarySyncSnapshot);
+        byte[] response = mockMvc.perform(multipart(BASE_URI + SYNC_SNAPSHOT_BINARY).file(syncSnapshotPart).header("userId", USER_ID))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        return objectMapper.readValue(response, BooleanResponse.class);
+    }
+}
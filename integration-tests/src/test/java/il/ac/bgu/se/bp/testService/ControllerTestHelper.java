@@ -5,9 +5,14 @@ import il.ac.bgu.se.bp.rest.request.*;
 import il.ac.bgu.se.bp.rest.response.BooleanResponse;
 import il.ac.bgu.se.bp.rest.response.DebugResponse;
 import il.ac.bgu.se.bp.rest.response.EventsHistoryResponse;
+import il.ac.bgu.se.bp.rest.response.ScopeVariableResponse;
 import il.ac.bgu.se.bp.rest.response.SyncSnapshot;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.security.Principal;
 
 public class ControllerTestHelper implements TestService {
@@ -30,6 +35,11 @@ public class ControllerTestHelper implements TestService {
         return bPjsIDERestController.debug(userId, code);
     }
 
+    @Override
+    public DebugResponse replay(String userId, ReplayRequest replayRequest) {
+        return bPjsIDERestController.replay(userId, replayRequest);
+    }
+
     @Override
     public BooleanResponse setBreakpoint(String userId, SetBreakpointRequest setBreakpointRequest) {
         return bPjsIDERestController.setBreakpoint(userId, setBreakpointRequest);
@@ -100,8 +110,54 @@ public class ControllerTestHelper implements TestService {
         return bPjsIDERestController.importSyncSnapshot(userId, importSyncSnapshotRequest);
     }
 
+    @Override
+    public ResponseEntity<StreamingResponseBody> exportBinarySyncSnapshot(String userId) {
+        return bPjsIDERestController.exportBinarySyncSnapshot(userId);
+    }
+
+    @Override
+    public BooleanResponse importBinarySyncSnapshot(String userId, ImportSyncSnapshotRequest importSyncSnapshotRequest,
+                                                    MultipartFile syncSnapshot) throws IOException {
+        return bPjsIDERestController.importBinarySyncSnapshot(userId, importSyncSnapshotRequest, syncSnapshot);
+    }
+
+    @Override
+    public ResponseEntity<StreamingResponseBody> exportSessionArchive(String userId) {
+        return bPjsIDERestController.exportSessionArchive(userId);
+    }
+
+    @Override
+    public DebugResponse importSessionArchive(String userId, MultipartFile sessionArchive) throws IOException {
+        return bPjsIDERestController.importSessionArchive(userId, sessionArchive);
+    }
+
     @Override
     public EventsHistoryResponse getEventsHistory(String userId, int from, int to) {
         return bPjsIDERestController.getEventsHistory(userId, from, to);
     }
+
+    @Override
+    public ScopeVariableResponse getBThreadVariable(String userId, String bThreadName, int frame, String path, int from, int to) {
+        return bPjsIDERestController.getBThreadVariable(userId, bThreadName, frame, path, from, to);
+    }
+
+    @Override
+    public ScopeVariableResponse getGlobalVariable(String userId, String path, int from, int to) {
+        return bPjsIDERestController.getGlobalVariable(userId, path, from, to);
+    }
+
+    @Override
+    public ResponseEntity<StreamingResponseBody> getConsoleLog(String userId) {
+        return bPjsIDERestController.getConsoleLog(userId);
+    }
+
+    @Override
+    public BooleanResponse toggleStateDelta(String userId, ToggleStateDeltaRequest toggleStateDeltaRequest) {
+        return bPjsIDERestController.toggleStateDelta(userId, toggleStateDeltaRequest);
+    }
+
+    @Override
+    public BooleanResponse resyncState(String userId) {
+        return bPjsIDERestController.resyncState(userId);
+    }
 }
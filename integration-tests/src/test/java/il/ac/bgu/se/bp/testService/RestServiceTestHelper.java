@@ -4,6 +4,7 @@ import il.ac.bgu.se.bp.rest.request.*;
 import il.ac.bgu.se.bp.rest.response.BooleanResponse;
 import il.ac.bgu.se.bp.rest.response.DebugResponse;
 import il.ac.bgu.se.bp.rest.response.EventsHistoryResponse;
+import il.ac.bgu.se.bp.rest.response.ScopeVariableResponse;
 import il.ac.bgu.se.bp.rest.response.SyncSnapshot;
 import il.ac.bgu.se.bp.rest.utils.Endpoints;
 import il.ac.bgu.se.bp.session.ITSessionManagerImpl;
@@ -12,11 +13,16 @@ import io.restassured.RestAssured;
 import io.restassured.http.ContentType;
 import io.restassured.http.Header;
 import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.socket.client.WebSocketClient;
 import org.springframework.web.socket.client.standard.StandardWebSocketClient;
 import org.springframework.web.socket.messaging.WebSocketStompClient;
 
+import java.io.IOException;
 import java.security.Principal;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -68,6 +74,11 @@ public class RestServiceTestHelper implements TestService {
         return performPostRequest(userId, DEBUG, debugRequest, DebugResponse.class);
     }
 
+    @Override
+    public DebugResponse replay(String userId, ReplayRequest replayRequest) {
+        return performPostRequest(userId, REPLAY, replayRequest, DebugResponse.class);
+    }
+
     @Override
     public BooleanResponse setBreakpoint(String userId, SetBreakpointRequest setBreakpointRequest) {
         return performPostRequest(userId, BREAKPOINT, setBreakpointRequest, BooleanResponse.class);
@@ -138,11 +149,79 @@ public class RestServiceTestHelper implements TestService {
         return null;
     }
 
+    @Override
+    public ResponseEntity<StreamingResponseBody> exportBinarySyncSnapshot(String userId) {
+        return performDownloadRequest(userId, SYNC_SNAPSHOT_BINARY);
+    }
+
+    @Override
+    public BooleanResponse importBinarySyncSnapshot(String userId, ImportSyncSnapshotRequest importSyncSnapshotRequest,
+                                                    MultipartFile syncSnapshot) throws IOException {
+        RequestSpecification request = RestAssured.with().header(new Header(USER_ID, getSocketUserId(userId)))
+                .multiPart("syncSnapshot", syncSnapshot.getOriginalFilename(), syncSnapshot.getBytes());
+        if (importSyncSnapshotRequest != null) {
+            request.multiPart("request", importSyncSnapshotRequest, ContentType.JSON.toString());
+        }
+        Response response = request.when().post(BASE_REST_URI + SYNC_SNAPSHOT_BINARY);
+        response.then().statusCode(200);
+        return response.getBody().as(BooleanResponse.class);
+    }
+
+    @Override
+    public ResponseEntity<StreamingResponseBody> exportSessionArchive(String userId) {
+        return performDownloadRequest(userId, SESSION_ARCHIVE);
+    }
+
+    @Override
+    public DebugResponse importSessionArchive(String userId, MultipartFile sessionArchive) throws IOException {
+        Response response = RestAssured.with().header(new Header(USER_ID, getSocketUserId(userId)))
+                .multiPart("session", sessionArchive.getOriginalFilename(), sessionArchive.getBytes())
+                .when().post(BASE_REST_URI + SESSION_ARCHIVE);
+        response.then().statusCode(200);
+        return response.getBody().as(DebugResponse.class);
+    }
+
     @Override
     public EventsHistoryResponse getEventsHistory(String userId, int from, int to) {
         return performGetRequest(userId, EVENTS, EventsHistoryResponse.class);
     }
 
+    @Override
+    public ScopeVariableResponse getBThreadVariable(String userId, String bThreadName, int frame, String path, int from, int to) {
+        return performGetRequest(userId, SCOPE + "/" + bThreadName + "/" + frame + "?path=" + path + "&from=" + from + "&to=" + to,
+                ScopeVariableResponse.class);
+    }
+
+    @Override
+    public ScopeVariableResponse getGlobalVariable(String userId, String path, int from, int to) {
+        return performGetRequest(userId, GLOBAL_SCOPE + "?path=" + path + "&from=" + from + "&to=" + to, ScopeVariableResponse.class);
+    }
+
+    @Override
+    public ResponseEntity<StreamingResponseBody> getConsoleLog(String userId) {
+        return performDownloadRequest(userId, CONSOLE_LOG);
+    }
+
+    @Override
+    public BooleanResponse toggleStateDelta(String userId, ToggleStateDeltaRequest toggleStateDeltaRequest) {
+        return performPutRequest(userId, STATE_DELTA, toggleStateDeltaRequest, BooleanResponse.class);
+    }
+
+    @Override
+    public BooleanResponse resyncState(String userId) {
+        return performGetRequest(userId, STATE_RESYNC, BooleanResponse.class);
+    }
+
+    private ResponseEntity<StreamingResponseBody> performDownloadRequest(String userId, String URL) {
+        Response response = RestAssured.with().header(new Header(USER_ID, getSocketUserId(userId)))
+                .when().get(BASE_REST_URI + URL);
+        if (response.statusCode() != 200) {
+            return ResponseEntity.status(response.statusCode()).build();
+        }
+        byte[] body = response.getBody().asByteArray();
+        return ResponseEntity.ok(outputStream -> outputStream.write(body));
+    }
+
     private <T> T performPostRequest(String userId, String URL, Object body, Class<T> clazz) {
         Response response = RestAssured.with().header(new Header(USER_ID, getSocketUserId(userId))).body(body)
                 .contentType(ContentType.JSON).when().post(BASE_REST_URI + URL);
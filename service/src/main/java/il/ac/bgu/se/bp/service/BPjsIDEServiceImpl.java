@@ -8,10 +8,13 @@ import il.ac.bgu.se.bp.rest.request.*;
 import il.ac.bgu.se.bp.rest.response.BooleanResponse;
 import il.ac.bgu.se.bp.rest.response.DebugResponse;
 import il.ac.bgu.se.bp.rest.response.EventsHistoryResponse;
+import il.ac.bgu.se.bp.rest.response.ScopeVariableResponse;
 import il.ac.bgu.se.bp.rest.response.SyncSnapshot;
 import il.ac.bgu.se.bp.service.code.SourceCodeHelper;
 import il.ac.bgu.se.bp.service.manage.PrototypeContextFactory;
 import il.ac.bgu.se.bp.service.manage.SessionHandler;
+import il.ac.bgu.se.bp.service.snapshot.BinarySyncSnapshotFormat;
+import il.ac.bgu.se.bp.service.snapshot.SessionArchiveFormat;
 import il.ac.bgu.se.bp.utils.logger.Logger;
 import org.mozilla.javascript.ContextFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +22,8 @@ import org.springframework.stereotype.Service;
 import org.thymeleaf.util.StringUtils;
 
 import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Function;
@@ -68,7 +73,7 @@ public class BPjsIDEServiceImpl implements BPjsIDEService {
             return createErrorResponse(ErrorCode.INVALID_SOURCE_CODE);
         }
 
-        BPJsDebugger<BooleanResponse> bpProgramDebugger = debuggerFactory.getBPJsDebugger(userId, filename, DebuggerLevel.LIGHT);
+        BPJsDebugger<BooleanResponse> bpProgramDebugger = debuggerFactory.getBPJsRunner(userId, filename);
         bpProgramDebugger.subscribe(sessionHandler);
         sessionHandler.addNewRunExecution(userId, bpProgramDebugger, filename);
         sessionHandler.updateLastOperationTime(userId);
@@ -96,17 +101,45 @@ public class BPjsIDEServiceImpl implements BPjsIDEService {
     }
 
     private DebugResponse handleNewDebugRequest(DebugRequest debugRequest, String userId, String filename) {
+        BPJsDebugger<BooleanResponse> bpProgramDebugger = createDebugger(userId, filename);
+        return bpProgramDebugger.startSync(getBreakpointsMap(debugRequest), debugRequest.isSkipSyncStateToggle(), debugRequest.isSkipBreakpointsToggle(), debugRequest.isWaitForExternalEvents());
+    }
+
+    @Override
+    public DebugResponse replay(ReplayRequest replayRequest, String userId) {
+        if (!validateRequest(replayRequest)) {
+            return new DebugResponse(createErrorResponse(ErrorCode.INVALID_REQUEST));
+        }
+
+        if (!sessionHandler.validateUserId(userId)) {
+            return new DebugResponse(createErrorResponse(ErrorCode.UNKNOWN_USER));
+        }
+
+        String filename = sourceCodeHelper.createCodeFile(replayRequest.getSourceCode());
+        if (StringUtils.isEmpty(filename)) {
+            return new DebugResponse(createErrorResponse(ErrorCode.INVALID_SOURCE_CODE));
+        }
+
+        logger.info("received replay request for user: {0}, events: {1}", userId, replayRequest.getEvents().size());
+        int targetIndex = replayRequest.getTargetIndex() == null ? replayRequest.getEvents().size() : replayRequest.getTargetIndex();
+        BPJsDebugger<BooleanResponse> bpProgramDebugger = createDebugger(userId, filename);
+        return bpProgramDebugger.replay(getBreakpointsMap(replayRequest), replayRequest.isSkipSyncStateToggle(), replayRequest.isSkipBreakpointsToggle(),
+                replayRequest.isWaitForExternalEvents(), replayRequest.getEvents(), targetIndex);
+    }
+
+    private BPJsDebugger<BooleanResponse> createDebugger(String userId, String filename) {
         BPJsDebugger<BooleanResponse> bpProgramDebugger = debuggerFactory.getBPJsDebugger(userId, filename, DebuggerLevel.NORMAL);
         bpProgramDebugger.subscribe(sessionHandler);
 
         sessionHandler.addNewDebugExecution(userId, bpProgramDebugger, filename);
         sessionHandler.updateLastOperationTime(userId);
+        return bpProgramDebugger;
+    }
 
-        Map<Integer, Boolean> breakpointsMap = debugRequest.getBreakpoints()
+    private Map<Integer, Boolean> getBreakpointsMap(DebugRequest debugRequest) {
+        return debugRequest.getBreakpoints()
                 .stream()
                 .collect(Collectors.toMap(Function.identity(), b -> Boolean.TRUE));
-
-        return bpProgramDebugger.startSync(breakpointsMap, debugRequest.isSkipSyncStateToggle(), debugRequest.isSkipBreakpointsToggle(), debugRequest.isWaitForExternalEvents());
     }
 
     @Override
@@ -256,6 +289,43 @@ public class BPjsIDEServiceImpl implements BPjsIDEService {
         return new EventsHistoryResponse(bpJsDebugger.getEventsHistory(from, to));
     }
 
+    @Override
+    public ScopeVariableResponse getBThreadVariable(String userId, String bThreadName, int frame, String path, int from, int to) {
+        if (StringUtils.isEmpty(bThreadName)) {
+            return new ScopeVariableResponse(ErrorCode.INVALID_REQUEST);
+        }
+
+        BPJsDebugger<BooleanResponse> bpJsDebugger = sessionHandler.getBPjsDebuggerByUser(userId);
+        if (bpJsDebugger == null) {
+            return new ScopeVariableResponse(ErrorCode.UNKNOWN_USER);
+        }
+
+        sessionHandler.updateLastOperationTime(userId);
+        return bpJsDebugger.getBThreadVariable(bThreadName, frame, path, from, to);
+    }
+
+    @Override
+    public ScopeVariableResponse getGlobalVariable(String userId, String path, int from, int to) {
+        BPJsDebugger<BooleanResponse> bpJsDebugger = sessionHandler.getBPjsDebuggerByUser(userId);
+        if (bpJsDebugger == null) {
+            return new ScopeVariableResponse(ErrorCode.UNKNOWN_USER);
+        }
+
+        sessionHandler.updateLastOperationTime(userId);
+        return bpJsDebugger.getGlobalVariable(path, from, to);
+    }
+
+    @Override
+    public BinarySyncSnapshotExport getConsoleLog(String userId) {
+        BPJsDebugger<BooleanResponse> bpJsDebugger = sessionHandler.getBPjsDebuggerOrRunnerByUser(userId);
+        if (bpJsDebugger == null || !bpJsDebugger.hasConsoleLog()) {
+            return null;
+        }
+
+        sessionHandler.updateLastOperationTime(userId);
+        return bpJsDebugger::writeConsoleLog;
+    }
+
     @Override
     public BooleanResponse setSyncSnapshot(String userId, SetSyncSnapshotRequest setSyncSnapshotRequest) {
         if (setSyncSnapshotRequest == null) {
@@ -321,6 +391,102 @@ public class BPjsIDEServiceImpl implements BPjsIDEService {
         return bpProgramDebugger.setSyncSnapshot(importSyncSnapshotRequest.getSyncSnapshot());
     }
 
+    @Override
+    public BinarySyncSnapshotExport exportBinarySyncSnapshot(String userId) {
+        BPJsDebugger<BooleanResponse> bpJsDebugger = sessionHandler.getBPjsDebuggerOrRunnerByUser(userId);
+        if (bpJsDebugger == null) {
+            return null;
+        }
+
+        sessionHandler.updateLastOperationTime(userId);
+        String sourceCode = sessionHandler.getUsersSourceCode(userId);
+        return outputStream -> BinarySyncSnapshotFormat.write(outputStream, sourceCode, bpJsDebugger);
+    }
+
+    @Override
+    public BooleanResponse importBinarySyncSnapshot(String userId, ImportSyncSnapshotRequest importSyncSnapshotRequest, InputStream binarySyncSnapshot) {
+        if (importSyncSnapshotRequest == null || binarySyncSnapshot == null) {
+            return createErrorResponse(ErrorCode.INVALID_REQUEST);
+        }
+
+        try {
+            importSyncSnapshotRequest.setSyncSnapshot(BinarySyncSnapshotFormat.read(binarySyncSnapshot));
+        } catch (IOException e) {
+            logger.error("failed reading binary sync snapshot of user: {0}, error: {1}", e, userId, e.getMessage());
+            return createErrorResponse(ErrorCode.IMPORT_SYNC_SNAPSHOT_FAILURE);
+        }
+        return importSyncSnapshot(userId, importSyncSnapshotRequest);
+    }
+
+    @Override
+    public BinarySyncSnapshotExport exportSessionArchive(String userId) {
+        BPJsDebugger<BooleanResponse> bpJsDebugger = sessionHandler.getBPjsDebuggerOrRunnerByUser(userId);
+        if (bpJsDebugger == null) {
+            return null;
+        }
+
+        sessionHandler.updateLastOperationTime(userId);
+        String sourceCode = sessionHandler.getUsersSourceCode(userId);
+        return outputStream -> SessionArchiveFormat.write(outputStream, sourceCode, bpJsDebugger);
+    }
+
+    @Override
+    public DebugResponse importSessionArchive(String userId, InputStream sessionArchive) {
+        if (sessionArchive == null) {
+            return new DebugResponse(createErrorResponse(ErrorCode.INVALID_REQUEST));
+        }
+
+        if (!sessionHandler.validateUserId(userId)) {
+            return new DebugResponse(createErrorResponse(ErrorCode.UNKNOWN_USER));
+        }
+
+        InputStream content;
+        String sourceCode;
+        try {
+            content = SessionArchiveFormat.open(sessionArchive);
+            sourceCode = SessionArchiveFormat.readSourceCode(content);
+        } catch (IOException e) {
+            logger.error("failed reading session archive of user: {0}, error: {1}", e, userId, e.getMessage());
+            return new DebugResponse(createErrorResponse(ErrorCode.IMPORT_SYNC_SNAPSHOT_FAILURE));
+        }
+
+        String filename = sourceCodeHelper.createCodeFile(sourceCode);
+        if (StringUtils.isEmpty(filename)) {
+            return new DebugResponse(createErrorResponse(ErrorCode.INVALID_SOURCE_CODE));
+        }
+
+        logger.info("received import session archive request for user: {0}", userId);
+        return createDebugger(userId, filename).importSession(content);
+    }
+
+    @Override
+    public BooleanResponse toggleStateDelta(String userId, ToggleStateDeltaRequest toggleStateDeltaRequest) {
+        if (toggleStateDeltaRequest == null) {
+            return createErrorResponse(ErrorCode.INVALID_REQUEST);
+        }
+
+        if (!sessionHandler.validateUserId(userId)) {
+            return createErrorResponse(ErrorCode.UNKNOWN_USER);
+        }
+
+        sessionHandler.updateLastOperationTime(userId);
+        sessionHandler.toggleStateDelta(userId, toggleStateDeltaRequest.isStateDelta());
+        return new BooleanResponse(true);
+    }
+
+    @Override
+    public BooleanResponse resyncState(String userId) {
+        BPJsDebugger<BooleanResponse> bpJsDebugger = sessionHandler.getBPjsDebuggerByUser(userId);
+        if (bpJsDebugger == null) {
+            // run sessions push no debugger states, so there is nothing to resync
+            return createErrorResponse(sessionHandler.getBPjsDebuggerOrRunnerByUser(userId) == null ? ErrorCode.UNKNOWN_USER : ErrorCode.NOT_SUPPORTED);
+        }
+
+        sessionHandler.updateLastOperationTime(userId);
+        sessionHandler.resyncState(userId);
+        return bpJsDebugger.getState();
+    }
+
     private BooleanResponse createErrorResponse(ErrorCode errorCode) {
         return new BooleanResponse(false, errorCode);
     }
@@ -329,6 +495,10 @@ public class BPjsIDEServiceImpl implements BPjsIDEService {
         return runRequest != null && !StringUtils.isEmpty(runRequest.getSourceCode());
     }
 
+    private boolean validateRequest(ReplayRequest replayRequest) {
+        return validateRequest((RunRequest) replayRequest) && replayRequest.getEvents() != null;
+    }
+
     private boolean validateRequest(ImportSyncSnapshotRequest request) {
         return request != null && request.getSyncSnapshot() != null &&
                 request.getSyncSnapshot().getSyncSnapshot() != null &&
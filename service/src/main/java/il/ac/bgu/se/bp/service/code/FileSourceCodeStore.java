@@ -0,0 +1,61 @@
+package il.ac.bgu.se.bp.service.code;
+
+import il.ac.bgu.se.bp.utils.logger.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * Keeps the sources as files under a directory, so they outlive the server.
+ * A file is written to a temporary file first and moved into place, so a source is never read half written.
+ */
+public class FileSourceCodeStore implements SourceCodeStore {
+    private static final Logger logger = new Logger(FileSourceCodeStore.class);
+
+    private final Path directory;
+
+    public FileSourceCodeStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory).toAbsolutePath().normalize();
+        logger.info("program sources are kept in: {0}", this.directory);
+    }
+
+    @Override
+    public void write(String filename, String sourceCode) throws IOException {
+        Path file = resolve(filename);
+        Files.createDirectories(file.getParent());
+        Path tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tempFile, sourceCode.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    @Override
+    public String read(String filename) throws IOException {
+        try {
+            return new String(Files.readAllBytes(resolve(filename)), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void remove(String filename) throws IOException {
+        Files.deleteIfExists(resolve(filename));
+    }
+
+    private Path resolve(String filename) {
+        Path file = directory.resolve(filename).normalize();
+        if (!file.startsWith(directory)) {
+            throw new IllegalArgumentException("program name is outside of the sources directory: " + filename);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,48 @@
+package il.ac.bgu.se.bp.service.code;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the sources in memory, up to a budget of source bytes (UTF-8) across all the programs.
+ * A source that does not fit in the budget is not stored.
+ */
+public class InMemorySourceCodeStore implements SourceCodeStore {
+    private final long maxBytes;
+    private final Map<String, String> sources = new HashMap<>();
+    private long storedBytes = 0;
+
+    public InMemorySourceCodeStore(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public synchronized void write(String filename, String sourceCode) {
+        long bytes = sizeOf(sourceCode);
+        String previous = sources.get(filename);
+        long previousBytes = previous == null ? 0 : sizeOf(previous);
+        if (storedBytes - previousBytes + bytes > maxBytes) {
+            throw new IllegalStateException("source code store is full, " + storedBytes + " of " + maxBytes + " bytes are used");
+        }
+        sources.put(filename, sourceCode);
+        storedBytes += bytes - previousBytes;
+    }
+
+    @Override
+    public synchronized String read(String filename) {
+        return sources.get(filename);
+    }
+
+    @Override
+    public synchronized void remove(String filename) {
+        String removed = sources.remove(filename);
+        if (removed != null) {
+            storedBytes -= sizeOf(removed);
+        }
+    }
+
+    private static long sizeOf(String sourceCode) {
+        return sourceCode.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
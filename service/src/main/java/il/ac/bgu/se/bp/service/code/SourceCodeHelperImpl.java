@@ -1,77 +1,121 @@
 package il.ac.bgu.se.bp.service.code;
 
+import il.ac.bgu.se.bp.execution.manage.ProgramCache;
 import il.ac.bgu.se.bp.utils.logger.Logger;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Programs are named by the hash of their source, so the same program submitted again gets the same name and its
+ * compiled script is taken from the {@link ProgramCache}. A source is stored by its first session and removed with
+ * its last one.
+ *
+ * Sources are kept in memory, up to 64MB ({@code -Dbpjs.sources.maxBytes}). When started with
+ * {@code -Dbpjs.sources.dir=<dir>} they are kept as files in that directory instead.
+ */
 @Service
 public class SourceCodeHelperImpl implements SourceCodeHelper {
 
     private static final Logger logger = new Logger(SourceCodeHelperImpl.class);
-    private static final String PROGRAMS_DIRECTORY = "programs/";
-    private static final String FILENAME_PREFIX = PROGRAMS_DIRECTORY + "programFile_";
+
+    static final String SOURCES_DIR_PROPERTY = "bpjs.sources.dir";
+    static final String MAX_BYTES_PROPERTY = "bpjs.sources.maxBytes";
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final String FILENAME_PREFIX = "programs/program_";
     private static final String FILENAME_SUFFIX = ".js";
-    private static final AtomicInteger filenameCounter = new AtomicInteger(0);
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int HASH_BYTES = 16;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
-    @Autowired
-    private FileHelper fileHelper;
+    private final Map<String, Integer> codeFileSessions = new HashMap<>();
+    private SourceCodeStore sourceCodeStore;
 
     @PostConstruct
     public void onInit() {
-        try {
-            fileHelper.removeDirectory(getBasePath() + PROGRAMS_DIRECTORY);
-        } catch (Exception e) {
-            logger.error("onInit failed removing programs folder, error: {0}", e.getMessage());
-        }
-        try {
-            fileHelper.createDirectory(getBasePath() + PROGRAMS_DIRECTORY);
-        } catch (Exception e) {
-            logger.error("onInit failed creating programs folder, error: {0}", e.getMessage());
+        sourceCodeStore = createSourceCodeStore();
+        ProgramCache.setSourceLoader(this::readCodeFile);
+    }
+
+    private static SourceCodeStore createSourceCodeStore() {
+        String sourcesDir = System.getProperty(SOURCES_DIR_PROPERTY);
+        if (sourcesDir != null) {
+            try {
+                return new FileSourceCodeStore(Paths.get(sourcesDir));
+            } catch (Exception e) {
+                logger.error("failed creating sources directory: {0}, keeping sources in memory. error: {1}", e, sourcesDir, e.getMessage());
+            }
         }
+        return new InMemorySourceCodeStore(Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES));
     }
 
     @Override
-    public String createCodeFile(String sourceCode) {
-        String filename = generateFilename();
+    public synchronized String createCodeFile(String sourceCode) {
+        String filename = generateFilename(sourceCode);
+        if (filename == null) {
+            return null;
+        }
+        ProgramCache.putSource(filename, sourceCode);
+        if (codeFileSessions.containsKey(filename)) {
+            codeFileSessions.merge(filename, 1, Integer::sum);
+            return filename;
+        }
         try {
-            String filepath = getBasePath() + filename;
-            fileHelper.createFile(filepath);
-            fileHelper.writeTextToFile(sourceCode, filepath);
+            sourceCodeStore.write(filename, sourceCode);
+            codeFileSessions.put(filename, 1);
             return filename;
         } catch (Exception e) {
-            logger.error("failed creating or writing to file with name: {0}, error: {1}", e, filename, e.getMessage());
+            logger.error("failed storing source code with name: {0}, error: {1}", e, filename, e.getMessage());
             return null;
         }
     }
 
     @Override
-    public void removeCodeFile(String filename) {
+    public synchronized void removeCodeFile(String filename) {
+        Integer sessions = codeFileSessions.get(filename);
+        if (sessions != null && sessions > 1) {
+            codeFileSessions.put(filename, sessions - 1);
+            return;
+        }
+        codeFileSessions.remove(filename);
         try {
-            fileHelper.removeFile(getBasePath() + filename);
+            sourceCodeStore.remove(filename);
         } catch (Exception e) {
-            logger.error("failed removing file: {0}, error: {1}", e, filename, e.getMessage());
+            logger.error("failed removing source code: {0}, error: {1}", e, filename, e.getMessage());
         }
     }
 
     @Override
     public String readCodeFile(String filename) {
         try {
-            return fileHelper.readFile(getBasePath() + filename);
+            return sourceCodeStore.read(filename);
         } catch (Exception e) {
-            logger.error("failed reading file: {0}, error: {1}", e, filename, e.getMessage());
+            logger.error("failed reading source code: {0}, error: {1}", e, filename, e.getMessage());
             return null;
         }
     }
 
-    private String generateFilename() {
-        return FILENAME_PREFIX + filenameCounter.incrementAndGet() + FILENAME_SUFFIX;
-    }
-
-    private String getBasePath() {
-        ClassLoader classLoader = getClass().getClassLoader();
-        return classLoader.getResource(".").getFile();
+    private String generateFilename(String sourceCode) {
+        if (sourceCode == null) {
+            return null;
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance(HASH_ALGORITHM).digest(sourceCode.getBytes(StandardCharsets.UTF_8));
+            StringBuilder filename = new StringBuilder(FILENAME_PREFIX);
+            for (int i = 0; i < HASH_BYTES; i++) {
+                filename.append(HEX_DIGITS[(hash[i] >> 4) & 0xf]).append(HEX_DIGITS[hash[i] & 0xf]);
+            }
+            return filename.append(FILENAME_SUFFIX).toString();
+        } catch (NoSuchAlgorithmException e) {
+            logger.error("failed hashing source code, error: {0}", e, e.getMessage());
+            return null;
+        }
     }
 }
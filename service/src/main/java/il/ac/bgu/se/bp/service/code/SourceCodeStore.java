@@ -0,0 +1,15 @@
+package il.ac.bgu.se.bp.service.code;
+
+/**
+ * Where the sources of the programs are kept, by program name.
+ */
+public interface SourceCodeStore {
+    void write(String filename, String sourceCode) throws Exception;
+
+    /**
+     * @return the source, or null when there is no program with this name
+     */
+    String read(String filename) throws Exception;
+
+    void remove(String filename) throws Exception;
+}
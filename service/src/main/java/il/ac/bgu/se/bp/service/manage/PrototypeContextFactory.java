@@ -1,27 +1,17 @@
 package il.ac.bgu.se.bp.service.manage;
 
-import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ContextFactory;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-
+/**
+ * The global Rhino context factory of the server.
+ * Debugger and runner sessions do not use it: their executor threads enter a context of the session's own factory
+ * (see {@code DebuggerEngine#getContextFactory}) when they start and keep it until they end, so contexts are created
+ * and released with the session threads and entering a context on these threads reuses the session's one.
+ */
 @Component
 public class PrototypeContextFactory extends ContextFactory {
 
-    private final static ConcurrentMap<String, Context> contextByThreadId = new ConcurrentHashMap<>();
-
     public PrototypeContextFactory() {
     }
-
-    public Context enterContext() {
-        final String threadId = Thread.currentThread().getName();
-        contextByThreadId.putIfAbsent(threadId, Context.enter());
-        return this.enterContext(contextByThreadId.get(threadId));
-    }
-
-    public void removeThread(String threadId) {
-        contextByThreadId.remove(threadId);
-    }
 }
@@ -6,10 +6,13 @@ import il.ac.bgu.se.bp.service.code.SourceCodeHelper;
 import il.ac.bgu.se.bp.service.notification.NotificationHandler;
 import il.ac.bgu.se.bp.socket.console.ConsoleMessage;
 import il.ac.bgu.se.bp.socket.state.BPDebuggerState;
+import il.ac.bgu.se.bp.socket.state.BPDebuggerStateDelta;
 import il.ac.bgu.se.bp.socket.status.ProgramStatus;
 import il.ac.bgu.se.bp.socket.status.Status;
 import il.ac.bgu.se.bp.utils.logger.Logger;
 import il.ac.bgu.se.bp.utils.observer.BPEvent;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.scheduling.annotation.EnableScheduling;
@@ -34,10 +37,20 @@ public class SessionHandlerImpl implements SessionHandler<BPJsDebugger<BooleanRe
     private static final Map<String, UserProgramSession<BPJsDebugger<BooleanResponse>>> bpRunProgramsByUsers = new ConcurrentHashMap<>();
     private static final Map<String, UserSession> unknownSessions = new ConcurrentHashMap<>();
 
+    static {
+        Metrics.globalRegistry.gaugeMapSize("bpjs.sessions", Tags.of("type", "debug"), bpDebugProgramsByUsers);
+        Metrics.globalRegistry.gaugeMapSize("bpjs.sessions", Tags.of("type", "run"), bpRunProgramsByUsers);
+        Metrics.globalRegistry.gaugeMapSize("bpjs.sessions", Tags.of("type", "unknown"), unknownSessions);
+    }
+
     @Autowired
     @Qualifier("stateNotificationHandlerImpl")
     private NotificationHandler stateNotificationHandler;
 
+    @Autowired
+    @Qualifier("stateDeltaNotificationHandlerImpl")
+    private NotificationHandler stateDeltaNotificationHandler;
+
     @Autowired
     @Qualifier("consoleNotificationHandlerImpl")
     private NotificationHandler consoleNotificationHandler;
@@ -50,7 +63,7 @@ public class SessionHandlerImpl implements SessionHandler<BPJsDebugger<BooleanRe
     private SourceCodeHelper sourceCodeHelper;
 
     @Autowired
-    private PrototypeContextFactory prototypeContextFactory;
+    private StateDeltaTracker stateDeltaTracker;
 
     @Override
     public void addUser(String sessionId, String userId) {
@@ -75,7 +88,12 @@ public class SessionHandlerImpl implements SessionHandler<BPJsDebugger<BooleanRe
         }
 
         existingUserSession.setThreadId(bpProgramDebugger.getDebuggerExecutorId());
-        bpDebuggersByUsers.put(userId, existingUserSession.withProgram(bpProgramDebugger).withFilename(filename));
+        UserProgramSession<BPJsDebugger<BooleanResponse>> replacedSession =
+                bpDebuggersByUsers.put(userId, existingUserSession.withProgram(bpProgramDebugger).withFilename(filename));
+        if (replacedSession != null && replacedSession.getProgram() != bpProgramDebugger) {
+            replacedSession.getProgram().deleteConsoleLog();
+            sourceCodeHelper.removeCodeFile(replacedSession.getFilename());
+        }
         updateLastOperationTime(userId);
     }
 
@@ -144,10 +162,22 @@ public class SessionHandlerImpl implements SessionHandler<BPJsDebugger<BooleanRe
         userSession.setLastOperationTime(getCurrentLocalDateTime());
     }
 
+    @Override
+    public void toggleStateDelta(String userId, boolean isStateDelta) {
+        logger.info("toggling state delta for user: {0} to: {1}", userId, isStateDelta);
+        stateDeltaTracker.toggleStateDelta(userId, isStateDelta);
+    }
+
+    @Override
+    public void resyncState(String userId) {
+        stateDeltaTracker.resync(userId);
+    }
+
     @Override
     public void removeUser(String userId) {
         logger.info("removing user: {0}", userId);
         unknownSessions.remove(userId);
+        stateDeltaTracker.removeUser(userId);
         removeUserPrograms(userId);
     }
 
@@ -172,6 +202,13 @@ public class SessionHandlerImpl implements SessionHandler<BPJsDebugger<BooleanRe
         if (!validateUserId(userId)) {
             return;
         }
+        if (stateDeltaTracker.isStateDelta(userId)) {
+            BPDebuggerStateDelta debuggerStateDelta = stateDeltaTracker.nextDelta(userId, debuggerState);
+            if (debuggerStateDelta != null) {
+                stateDeltaNotificationHandler.sendNotification(userId, debuggerStateDelta);
+                return;
+            }
+        }
         stateNotificationHandler.sendNotification(userId, debuggerState);
     }
 
@@ -205,10 +242,10 @@ public class SessionHandlerImpl implements SessionHandler<BPJsDebugger<BooleanRe
         removeUserProgramFrom(userId, bpRunProgramsByUsers);
     }
 
-    private void removeUserProgramFrom(String userId, Map<String, ? extends UserProgramSession> programByUserId) {
-        UserProgramSession userProgramSession = programByUserId.remove(userId);
+    private void removeUserProgramFrom(String userId, Map<String, UserProgramSession<BPJsDebugger<BooleanResponse>>> programByUserId) {
+        UserProgramSession<BPJsDebugger<BooleanResponse>> userProgramSession = programByUserId.remove(userId);
         if (userProgramSession != null) {
-            prototypeContextFactory.removeThread(userProgramSession.getThreadId());
+            userProgramSession.getProgram().deleteConsoleLog();
             sourceCodeHelper.removeCodeFile(userProgramSession.getFilename());
         }
     }
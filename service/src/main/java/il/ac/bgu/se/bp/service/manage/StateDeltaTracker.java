@@ -0,0 +1,197 @@
+package il.ac.bgu.se.bp.service.manage;
+
+import il.ac.bgu.se.bp.socket.state.*;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the last {@link BPDebuggerState} sent to each user working in state delta mode,
+ * and turns every new state into a {@link BPDebuggerStateDelta} against it.
+ */
+@Component
+public class StateDeltaTracker {
+
+    private final Map<String, TrackedState> trackedStatesByUsers = new ConcurrentHashMap<>();
+
+    public void toggleStateDelta(String userId, boolean isStateDelta) {
+        if (isStateDelta) {
+            trackedStatesByUsers.put(userId, new TrackedState());
+        }
+        else {
+            trackedStatesByUsers.remove(userId);
+        }
+    }
+
+    public boolean isStateDelta(String userId) {
+        return trackedStatesByUsers.containsKey(userId);
+    }
+
+    public void resync(String userId) {
+        TrackedState trackedState = trackedStatesByUsers.get(userId);
+        if (trackedState != null) {
+            trackedState.reset();
+        }
+    }
+
+    public void removeUser(String userId) {
+        trackedStatesByUsers.remove(userId);
+    }
+
+    /**
+     * @return the delta between {@code newState} and the last state sent to the user, or null if the user is not in delta mode
+     */
+    public BPDebuggerStateDelta nextDelta(String userId, BPDebuggerState newState) {
+        TrackedState trackedState = trackedStatesByUsers.get(userId);
+        return trackedState == null ? null : trackedState.nextDelta(newState);
+    }
+
+    private static class TrackedState {
+        private BPDebuggerState lastState;
+        private long version = BPDebuggerStateDelta.NO_BASE_VERSION;
+
+        synchronized void reset() {
+            lastState = null;
+        }
+
+        synchronized BPDebuggerStateDelta nextDelta(BPDebuggerState newState) {
+            BPDebuggerStateDelta delta = lastState == null ?
+                    createFullDelta(version + 1, newState) :
+                    createDelta(version + 1, version, lastState, newState);
+            version = delta.getVersion();
+            lastState = newState;
+            return delta;
+        }
+    }
+
+    static BPDebuggerStateDelta createFullDelta(long version, BPDebuggerState state) {
+        BPDebuggerStateDelta delta = new BPDebuggerStateDelta(version, BPDebuggerStateDelta.NO_BASE_VERSION, true);
+        delta.setbThreadInfoList(new ArrayList<>(nullToEmpty(state.getbThreadInfoList())));
+        delta.setEventsStatus(state.getEventsStatus());
+        delta.setEventsHistory(state.getEventsHistory());
+        delta.setCurrentRunningBT(state.getCurrentRunningBT());
+        delta.setCurrentLineNumber(state.getCurrentLineNumber());
+        delta.setDebuggerConfigs(state.getDebuggerConfigs());
+        delta.setBreakpoints(state.getBreakpoints());
+        delta.setGlobalEnv(new LinkedHashMap<>(nullToEmpty(state.getGlobalEnv())));
+        return delta;
+    }
+
+    static BPDebuggerStateDelta createDelta(long version, long baseVersion, BPDebuggerState oldState, BPDebuggerState newState) {
+        BPDebuggerStateDelta delta = new BPDebuggerStateDelta(version, baseVersion, false);
+        diffBThreads(delta, oldState.getbThreadInfoList(), newState.getbThreadInfoList());
+        diffVariables(oldState.getGlobalEnv(), newState.getGlobalEnv(), delta.getGlobalEnv(), delta.getRemovedGlobals());
+
+        // EventsStatus.equals does not take the external events into account
+        if (!Objects.equals(oldState.getEventsStatus(), newState.getEventsStatus()) || !externalEventsEqual(oldState.getEventsStatus(), newState.getEventsStatus())) {
+            delta.setEventsStatus(newState.getEventsStatus());
+        }
+        if (!Objects.equals(oldState.getEventsHistory(), newState.getEventsHistory())) {
+            delta.setEventsHistory(newState.getEventsHistory());
+        }
+        if (!Objects.equals(oldState.getDebuggerConfigs(), newState.getDebuggerConfigs())) {
+            delta.setDebuggerConfigs(newState.getDebuggerConfigs());
+        }
+        if (!Arrays.equals(oldState.getBreakpoints(), newState.getBreakpoints())) {
+            delta.setBreakpoints(newState.getBreakpoints());
+        }
+        delta.setCurrentRunningBT(newState.getCurrentRunningBT());
+        delta.setCurrentLineNumber(newState.getCurrentLineNumber());
+        return delta;
+    }
+
+    private static boolean externalEventsEqual(EventsStatus oldStatus, EventsStatus newStatus) {
+        if (oldStatus == null || newStatus == null) {
+            return oldStatus == newStatus;
+        }
+        return Objects.equals(oldStatus.getExternalEvents(), newStatus.getExternalEvents());
+    }
+
+    private static void diffBThreads(BPDebuggerStateDelta delta, List<BThreadInfo> oldBThreads, List<BThreadInfo> newBThreads) {
+        Map<String, BThreadInfo> oldBThreadsByName = new HashMap<>();
+        nullToEmpty(oldBThreads).forEach(bThreadInfo -> oldBThreadsByName.put(bThreadInfo.getName(), bThreadInfo));
+
+        Set<String> newBThreadNames = new HashSet<>();
+        for (BThreadInfo newBThread : nullToEmpty(newBThreads)) {
+            newBThreadNames.add(newBThread.getName());
+            BThreadInfo oldBThread = oldBThreadsByName.get(newBThread.getName());
+            if (oldBThread == null) {
+                delta.getbThreadInfoList().add(newBThread);
+                continue;
+            }
+            BThreadInfo changedBThread = diffBThread(delta, oldBThread, newBThread);
+            if (changedBThread != null) {
+                delta.getbThreadInfoList().add(changedBThread);
+            }
+        }
+
+        oldBThreadsByName.keySet().stream()
+                .filter(name -> !newBThreadNames.contains(name))
+                .forEach(delta.getRemovedBThreads()::add);
+    }
+
+    private static BThreadInfo diffBThread(BPDebuggerStateDelta delta, BThreadInfo oldBThread, BThreadInfo newBThread) {
+        String name = newBThread.getName();
+        Map<Integer, BThreadScope> oldEnv = nullToEmpty(oldBThread.getEnv());
+        Map<Integer, BThreadScope> newEnv = nullToEmpty(newBThread.getEnv());
+        Map<Integer, BThreadScope> changedEnv = new HashMap<>();
+
+        for (Map.Entry<Integer, BThreadScope> newScopeEntry : newEnv.entrySet()) {
+            BThreadScope newScope = newScopeEntry.getValue();
+            BThreadScope oldScope = oldEnv.get(newScopeEntry.getKey());
+            if (oldScope == null || newScope == null) {
+                if (oldScope != newScope) {
+                    changedEnv.put(newScopeEntry.getKey(), newScope);
+                }
+                continue;
+            }
+            if (newScope.equals(oldScope)) {
+                continue;
+            }
+            Map<String, String> changedVariables = new LinkedHashMap<>();
+            Set<String> removedVariables = new HashSet<>();
+            diffVariables(oldScope.getVariables(), newScope.getVariables(), changedVariables, removedVariables);
+            changedEnv.put(newScopeEntry.getKey(), new BThreadScope(newScope.getScopeName(), newScope.getCurrentLineNumber(), changedVariables));
+            if (!removedVariables.isEmpty()) {
+                delta.getRemovedVariables().computeIfAbsent(name, k -> new HashMap<>()).put(newScopeEntry.getKey(), removedVariables);
+            }
+        }
+
+        Set<Integer> removedScopes = new HashSet<>(oldEnv.keySet());
+        removedScopes.removeAll(newEnv.keySet());
+        if (!removedScopes.isEmpty()) {
+            delta.getRemovedScopes().put(name, removedScopes);
+        }
+
+        boolean isSyncStatementChanged = !Objects.equals(oldBThread.getWait(), newBThread.getWait()) ||
+                !Objects.equals(oldBThread.getBlocked(), newBThread.getBlocked()) ||
+                !Objects.equals(oldBThread.getRequested(), newBThread.getRequested());
+        if (changedEnv.isEmpty() && removedScopes.isEmpty() && !isSyncStatementChanged) {
+            return null;
+        }
+        return new BThreadInfo(name, changedEnv, newBThread.getWait(), newBThread.getBlocked(), newBThread.getRequested());
+    }
+
+    private static void diffVariables(Map<String, String> oldVariables, Map<String, String> newVariables,
+                                      Map<String, String> changedVariables, Set<String> removedVariables) {
+        Map<String, String> oldVars = nullToEmpty(oldVariables);
+        Map<String, String> newVars = nullToEmpty(newVariables);
+        newVars.forEach((name, value) -> {
+            if (!oldVars.containsKey(name) || !Objects.equals(oldVars.get(name), value)) {
+                changedVariables.put(name, value);
+            }
+        });
+        oldVars.keySet().stream()
+                .filter(name -> !newVars.containsKey(name))
+                .forEach(removedVariables::add);
+    }
+
+    private static <T> List<T> nullToEmpty(List<T> list) {
+        return list == null ? Collections.emptyList() : list;
+    }
+
+    private static <K, V> Map<K, V> nullToEmpty(Map<K, V> map) {
+        return map == null ? Collections.emptyMap() : map;
+    }
+}
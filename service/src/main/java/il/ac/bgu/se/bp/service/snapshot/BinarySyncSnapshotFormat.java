@@ -0,0 +1,113 @@
+package il.ac.bgu.se.bp.service.snapshot;
+
+import il.ac.bgu.se.bp.debugger.BPJsDebugger;
+import il.ac.bgu.se.bp.rest.response.SyncSnapshot;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Binary format of an exported sync snapshot: the magic number "BPSS" and the format version (4 bytes each), followed
+ * by a GZIP stream of the source code (its length in bytes and its UTF-8 bytes) and of the serialized sync snapshot.
+ * The GZIP trailer holds a CRC-32 of the uncompressed content, so a truncated or corrupted export is rejected on read.
+ * An imported sync snapshot is decompressed up to 256MB ({@code -Dbpjs.snapshots.maxImportBytes}), a larger one is
+ * rejected.
+ */
+public final class BinarySyncSnapshotFormat {
+    static final int MAGIC = 0x42505353;
+    static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_SOURCE_CODE_BYTES = 64 * 1024 * 1024;
+    private static final long MAX_SYNC_SNAPSHOT_BYTES = Long.getLong("bpjs.snapshots.maxImportBytes", 256L * 1024 * 1024);
+
+    private BinarySyncSnapshotFormat() {
+    }
+
+    /**
+     * Writes the source code and the debugger's current sync snapshot, compressing them on the fly.
+     * The stream is flushed and left open.
+     */
+    public static void write(OutputStream outputStream, String sourceCode, BPJsDebugger<?> bpJsDebugger) throws IOException {
+        GZIPOutputStream content = startContent(outputStream, MAGIC, VERSION);
+        writeSourceCode(content, sourceCode);
+        bpJsDebugger.writeSyncSnapshot(content);
+        content.finish();
+        outputStream.flush();
+    }
+
+    /**
+     * Reads an export written by {@link #write}, decompressing it while it is read.
+     *
+     * @throws IOException if the stream is not a binary sync snapshot of a supported version, is truncated or corrupted,
+     *                     or its sync snapshot is over the max import size
+     */
+    public static SyncSnapshot read(InputStream inputStream) throws IOException {
+        return read(inputStream, MAX_SYNC_SNAPSHOT_BYTES);
+    }
+
+    static SyncSnapshot read(InputStream inputStream, long maxSyncSnapshotBytes) throws IOException {
+        InputStream content = openContent(inputStream, MAGIC, VERSION, "binary sync snapshot");
+        String sourceCode = readSourceCode(content);
+
+        ByteArrayOutputStream syncSnapshot = new ByteArrayOutputStream(BUFFER_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+            if (syncSnapshot.size() + read > maxSyncSnapshotBytes) {
+                throw new IOException("sync snapshot is larger than " + maxSyncSnapshotBytes + " bytes");
+            }
+            syncSnapshot.write(buffer, 0, read);
+        }
+        return new SyncSnapshot(sourceCode, syncSnapshot.toByteArray());
+    }
+
+    /**
+     * Writes the magic number and the version, and starts the compressed content.
+     */
+    static GZIPOutputStream startContent(OutputStream outputStream, int magic, int version) throws IOException {
+        DataOutputStream header = new DataOutputStream(outputStream);
+        header.writeInt(magic);
+        header.writeInt(version);
+        header.flush();
+        return new GZIPOutputStream(outputStream, BUFFER_SIZE);
+    }
+
+    /**
+     * Checks the magic number and the version.
+     *
+     * @return the decompressed content
+     */
+    static InputStream openContent(InputStream inputStream, int magic, int version, String formatName) throws IOException {
+        DataInputStream header = new DataInputStream(inputStream);
+        if (header.readInt() != magic) {
+            throw new IOException("not a " + formatName);
+        }
+        int actualVersion = header.readInt();
+        if (actualVersion != version) {
+            throw new IOException("unsupported " + formatName + " version: " + actualVersion);
+        }
+        return new GZIPInputStream(inputStream, BUFFER_SIZE);
+    }
+
+    static void writeSourceCode(OutputStream content, String sourceCode) throws IOException {
+        DataOutputStream output = new DataOutputStream(content);
+        byte[] sourceCodeBytes = sourceCode.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(sourceCodeBytes.length);
+        output.write(sourceCodeBytes);
+        output.flush();
+    }
+
+    static String readSourceCode(InputStream content) throws IOException {
+        DataInputStream input = new DataInputStream(content);
+        int sourceCodeLength = input.readInt();
+        if (sourceCodeLength < 0 || sourceCodeLength > MAX_SOURCE_CODE_BYTES) {
+            throw new IOException("invalid source code length: " + sourceCodeLength);
+        }
+        byte[] sourceCodeBytes = new byte[sourceCodeLength];
+        input.readFully(sourceCodeBytes);
+        return new String(sourceCodeBytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,53 @@
+package il.ac.bgu.se.bp.service.snapshot;
+
+import il.ac.bgu.se.bp.debugger.BPJsDebugger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static il.ac.bgu.se.bp.service.snapshot.BinarySyncSnapshotFormat.openContent;
+import static il.ac.bgu.se.bp.service.snapshot.BinarySyncSnapshotFormat.startContent;
+import static il.ac.bgu.se.bp.service.snapshot.BinarySyncSnapshotFormat.writeSourceCode;
+
+/**
+ * Binary format of an exported session: the magic number "BPSA" and the format version, followed by a GZIP stream of
+ * the source code and of the debugger's session (settings, breakpoints, sync snapshots history and current sync
+ * snapshot, see {@link BPJsDebugger#exportSession}). Like {@link BinarySyncSnapshotFormat}, the content is checked
+ * against the GZIP CRC-32 once it was read to its end.
+ */
+public final class SessionArchiveFormat {
+    static final int MAGIC = 0x42505341;
+    static final int VERSION = 1;
+
+    private SessionArchiveFormat() {
+    }
+
+    /**
+     * Writes the source code and the debugger's session, compressing them on the fly.
+     * The stream is flushed and left open.
+     */
+    public static void write(OutputStream outputStream, String sourceCode, BPJsDebugger<?> bpJsDebugger) throws IOException {
+        GZIPOutputStream content = startContent(outputStream, MAGIC, VERSION);
+        writeSourceCode(content, sourceCode);
+        bpJsDebugger.exportSession(content);
+        content.finish();
+        outputStream.flush();
+    }
+
+    /**
+     * @return the decompressed content, positioned at the source code
+     * @throws IOException if the stream is not a session archive of a supported version
+     */
+    public static InputStream open(InputStream inputStream) throws IOException {
+        return openContent(inputStream, MAGIC, VERSION, "session archive");
+    }
+
+    /**
+     * @return the source code, the content is then positioned at the debugger's session
+     */
+    public static String readSourceCode(InputStream content) throws IOException {
+        return BinarySyncSnapshotFormat.readSourceCode(content);
+    }
+}
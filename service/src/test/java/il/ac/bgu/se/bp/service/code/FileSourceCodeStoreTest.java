@@ -0,0 +1,65 @@
+package il.ac.bgu.se.bp.service.code;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class FileSourceCodeStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void write_readAndRemove() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath();
+        FileSourceCodeStore sourceCodeStore = new FileSourceCodeStore(directory);
+
+        sourceCodeStore.write("programs/a.js", "abc");
+        assertEquals("abc", new String(Files.readAllBytes(directory.resolve("programs/a.js")), StandardCharsets.UTF_8));
+        assertEquals("abc", sourceCodeStore.read("programs/a.js"));
+
+        sourceCodeStore.write("programs/a.js", "abcd");
+        assertEquals("abcd", sourceCodeStore.read("programs/a.js"));
+        try (Stream<Path> files = Files.list(directory.resolve("programs"))) {
+            assertEquals(1, files.count());
+        }
+
+        sourceCodeStore.remove("programs/a.js");
+        assertNull(sourceCodeStore.read("programs/a.js"));
+        assertFalse(Files.exists(directory.resolve("programs/a.js")));
+    }
+
+    @Test
+    public void write_relativeDirectory() throws Exception {
+        Path workingDirectory = Paths.get("").toAbsolutePath();
+        Path directory = workingDirectory.relativize(temporaryFolder.newFolder("relative").toPath());
+        FileSourceCodeStore sourceCodeStore = new FileSourceCodeStore(Paths.get(".").resolve(directory));
+
+        sourceCodeStore.write("programs/a.js", "abc");
+
+        assertEquals("abc", sourceCodeStore.read("programs/a.js"));
+        assertTrue(Files.exists(temporaryFolder.getRoot().toPath().resolve("relative/programs/a.js")));
+    }
+
+    @Test
+    public void write_outsideOfTheDirectoryIsRejected() throws Exception {
+        FileSourceCodeStore sourceCodeStore = new FileSourceCodeStore(temporaryFolder.newFolder("sources").toPath());
+
+        for (String filename : new String[]{"../a.js", "programs/../../a.js", "/tmp/a.js"}) {
+            try {
+                sourceCodeStore.write(filename, "abc");
+                fail("expected " + filename + " to be rejected");
+            } catch (IllegalArgumentException e) {
+                assertFalse(Files.exists(temporaryFolder.getRoot().toPath().resolve("a.js")));
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package il.ac.bgu.se.bp.service.code;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class InMemorySourceCodeStoreTest {
+    private static final int MAX_BYTES = 10;
+
+    private InMemorySourceCodeStore sourceCodeStore;
+
+    @Before
+    public void setUp() {
+        sourceCodeStore = new InMemorySourceCodeStore(MAX_BYTES);
+    }
+
+    @Test
+    public void write_readAndRemove() {
+        sourceCodeStore.write("a.js", "abc");
+
+        assertEquals("abc", sourceCodeStore.read("a.js"));
+        assertNull(sourceCodeStore.read("b.js"));
+
+        sourceCodeStore.remove("a.js");
+        assertNull(sourceCodeStore.read("a.js"));
+    }
+
+    @Test
+    public void write_sourceOverBudgetIsNotStored() {
+        sourceCodeStore.write("a.js", "123456");
+
+        try {
+            sourceCodeStore.write("b.js", "12345");
+            fail("expected the store to be full");
+        } catch (IllegalStateException e) {
+            assertNull(sourceCodeStore.read("b.js"));
+        }
+
+        sourceCodeStore.remove("a.js");
+        sourceCodeStore.write("b.js", "1234567890");
+        assertEquals("1234567890", sourceCodeStore.read("b.js"));
+    }
+
+    @Test
+    public void write_budgetCountsUtf8Bytes() {
+        try {
+            sourceCodeStore.write("a.js", "אבגדהו");
+            fail("expected 12 bytes not to fit in the store");
+        } catch (IllegalStateException e) {
+            assertNull(sourceCodeStore.read("a.js"));
+        }
+    }
+
+    @Test
+    public void write_overwriteOnlyCountsTheNewSource() {
+        sourceCodeStore.write("a.js", "12345678");
+        sourceCodeStore.write("a.js", "1234567890");
+        sourceCodeStore.write("a.js", "1");
+
+        sourceCodeStore.write("b.js", "123456789");
+        assertEquals("1", sourceCodeStore.read("a.js"));
+        assertEquals("123456789", sourceCodeStore.read("b.js"));
+    }
+}
@@ -0,0 +1,77 @@
+package il.ac.bgu.se.bp.service.manage;
+
+import il.ac.bgu.se.bp.debugger.BPJsDebugger;
+import il.ac.bgu.se.bp.rest.response.BooleanResponse;
+import il.ac.bgu.se.bp.service.code.SourceCodeHelperImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SessionHandlerImplTest {
+    private static final String USER_ID = "session-handler-test-user";
+    private static final String SESSION_ID = "session-handler-test-session";
+
+    @InjectMocks
+    private SessionHandlerImpl sessionHandler;
+
+    @Spy
+    private SourceCodeHelperImpl sourceCodeHelper = new SourceCodeHelperImpl();
+
+    @Mock
+    private StateDeltaTracker stateDeltaTracker;
+
+    @Mock
+    private BPJsDebugger<BooleanResponse> firstProgram;
+
+    @Mock
+    private BPJsDebugger<BooleanResponse> secondProgram;
+
+    @Before
+    public void setUp() {
+        sourceCodeHelper.onInit();
+        sessionHandler.addUser(SESSION_ID, USER_ID);
+    }
+
+    @After
+    public void tearDown() {
+        sessionHandler.removeUser(USER_ID);
+    }
+
+    @Test
+    public void addNewDebugExecution_replacedSessionReleasesItsSource() {
+        String firstFilename = sourceCodeHelper.createCodeFile("bp.log.info('first')");
+        sessionHandler.addNewDebugExecution(USER_ID, firstProgram, firstFilename);
+        String secondFilename = sourceCodeHelper.createCodeFile("bp.log.info('second')");
+
+        sessionHandler.addNewDebugExecution(USER_ID, secondProgram, secondFilename);
+
+        verify(firstProgram).deleteConsoleLog();
+        assertNull(sourceCodeHelper.readCodeFile(firstFilename));
+        assertEquals("bp.log.info('second')", sessionHandler.getUsersSourceCode(USER_ID));
+        assertSame(secondProgram, sessionHandler.getBPjsDebuggerByUser(USER_ID));
+    }
+
+    @Test
+    public void addNewDebugExecution_sameSourceIsKeptForTheNewSession() {
+        String firstFilename = sourceCodeHelper.createCodeFile("bp.log.info('same')");
+        sessionHandler.addNewDebugExecution(USER_ID, firstProgram, firstFilename);
+        String secondFilename = sourceCodeHelper.createCodeFile("bp.log.info('same')");
+
+        sessionHandler.addNewDebugExecution(USER_ID, secondProgram, secondFilename);
+
+        assertEquals(firstFilename, secondFilename);
+        assertEquals("bp.log.info('same')", sessionHandler.getUsersSourceCode(USER_ID));
+
+        sessionHandler.removeUser(USER_ID);
+        assertNull(sourceCodeHelper.readCodeFile(secondFilename));
+    }
+}
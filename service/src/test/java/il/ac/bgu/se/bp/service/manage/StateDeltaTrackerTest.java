@@ -0,0 +1,118 @@
+package il.ac.bgu.se.bp.service.manage;
+
+import il.ac.bgu.se.bp.socket.state.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class StateDeltaTrackerTest {
+    private static final String USER_ID = "user";
+
+    private StateDeltaTracker stateDeltaTracker;
+
+    @Before
+    public void setUp() {
+        stateDeltaTracker = new StateDeltaTracker();
+        stateDeltaTracker.toggleStateDelta(USER_ID, true);
+    }
+
+    @Test
+    public void nextDelta_firstStateIsFull() {
+        BPDebuggerState state = state(bThread("bt-1", "x", "1"), bThread("bt-2", "y", "2"));
+
+        BPDebuggerStateDelta delta = stateDeltaTracker.nextDelta(USER_ID, state);
+
+        assertTrue(delta.isFullState());
+        assertEquals(BPDebuggerStateDelta.NO_BASE_VERSION + 1, delta.getVersion());
+        assertEquals(BPDebuggerStateDelta.NO_BASE_VERSION, delta.getBaseVersion());
+        assertEquals(state.getbThreadInfoList(), delta.getbThreadInfoList());
+        assertEquals(state.getGlobalEnv(), delta.getGlobalEnv());
+        assertEquals(state.getEventsStatus(), delta.getEventsStatus());
+    }
+
+    @Test
+    public void nextDelta_unchangedStateIsEmpty() {
+        BPDebuggerStateDelta firstDelta = stateDeltaTracker.nextDelta(USER_ID, state(bThread("bt-1", "x", "1")));
+
+        BPDebuggerStateDelta delta = stateDeltaTracker.nextDelta(USER_ID, state(bThread("bt-1", "x", "1")));
+
+        assertFalse(delta.isFullState());
+        assertEquals(firstDelta.getVersion() + 1, delta.getVersion());
+        assertEquals(firstDelta.getVersion(), delta.getBaseVersion());
+        assertTrue(delta.isEmpty());
+    }
+
+    @Test
+    public void nextDelta_changedAndRemovedBThreads() {
+        stateDeltaTracker.nextDelta(USER_ID, state(bThread("bt-1", "x", "1"), bThread("bt-2", "y", "2"), bThread("bt-3", "z", "3")));
+
+        BPDebuggerStateDelta delta = stateDeltaTracker.nextDelta(USER_ID, state(bThread("bt-1", "x", "5"), bThread("bt-2", "y", "2")));
+
+        assertFalse(delta.isFullState());
+        assertEquals(Collections.singleton("bt-3"), delta.getRemovedBThreads());
+        assertEquals(1, delta.getbThreadInfoList().size());
+        BThreadInfo changedBThread = delta.getbThreadInfoList().get(0);
+        assertEquals("bt-1", changedBThread.getName());
+        assertEquals(Collections.singletonMap("x", "5"), changedBThread.getEnv().get(0).getVariables());
+    }
+
+    @Test
+    public void nextDelta_removedVariablesAndGlobals() {
+        BPDebuggerState oldState = state(bThread("bt-1", "x", "1"));
+        oldState.getbThreadInfoList().get(0).getEnv().get(0).getVariables().put("removed", "2");
+        oldState.getGlobalEnv().put("removedGlobal", "3");
+        stateDeltaTracker.nextDelta(USER_ID, oldState);
+
+        BPDebuggerStateDelta delta = stateDeltaTracker.nextDelta(USER_ID, state(bThread("bt-1", "x", "1")));
+
+        assertEquals(Collections.singletonMap("bt-1", Collections.singletonMap(0, Collections.singleton("removed"))), delta.getRemovedVariables());
+        assertEquals(Collections.singleton("removedGlobal"), delta.getRemovedGlobals());
+    }
+
+    @Test
+    public void nextDelta_fullStateAfterResync() {
+        BPDebuggerStateDelta firstDelta = stateDeltaTracker.nextDelta(USER_ID, state(bThread("bt-1", "x", "1")));
+        stateDeltaTracker.resync(USER_ID);
+
+        BPDebuggerStateDelta delta = stateDeltaTracker.nextDelta(USER_ID, state(bThread("bt-1", "x", "1")));
+
+        assertTrue(delta.isFullState());
+        assertEquals(firstDelta.getVersion() + 1, delta.getVersion());
+        assertEquals(1, delta.getbThreadInfoList().size());
+    }
+
+    @Test
+    public void nextDelta_fullStateAfterToggle() {
+        stateDeltaTracker.nextDelta(USER_ID, state(bThread("bt-1", "x", "1")));
+        stateDeltaTracker.toggleStateDelta(USER_ID, false);
+
+        assertFalse(stateDeltaTracker.isStateDelta(USER_ID));
+        assertNull(stateDeltaTracker.nextDelta(USER_ID, state(bThread("bt-1", "x", "1"))));
+
+        stateDeltaTracker.toggleStateDelta(USER_ID, true);
+        BPDebuggerStateDelta delta = stateDeltaTracker.nextDelta(USER_ID, state(bThread("bt-1", "x", "1")));
+
+        assertTrue(delta.isFullState());
+        assertEquals(BPDebuggerStateDelta.NO_BASE_VERSION + 1, delta.getVersion());
+    }
+
+    private static BPDebuggerState state(BThreadInfo... bThreads) {
+        Map<String, String> globalEnv = new LinkedHashMap<>();
+        globalEnv.put("global", "0");
+        EventsStatus eventsStatus = new EventsStatus(new ArrayList<>(), new ArrayList<>(),
+                new HashSet<>(Collections.singleton(new EventInfo("e"))), new ArrayList<>());
+        return new BPDebuggerState(new ArrayList<>(Arrays.asList(bThreads)), eventsStatus, new TreeMap<>(), null, null,
+                new DebuggerConfigs(false, false, false), new Boolean[0], globalEnv);
+    }
+
+    private static BThreadInfo bThread(String name, String variableName, String value) {
+        Map<String, String> variables = new LinkedHashMap<>();
+        variables.put(variableName, value);
+        Map<Integer, BThreadScope> env = new HashMap<>();
+        env.put(0, new BThreadScope("scope", "1", variables));
+        return new BThreadInfo(name, env, new HashSet<>(), new HashSet<>(), new HashSet<>());
+    }
+}
@@ -0,0 +1,45 @@
+package il.ac.bgu.se.bp.service.snapshot;
+
+import il.ac.bgu.se.bp.rest.response.SyncSnapshot;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class BinarySyncSnapshotFormatTest {
+    private static final String SOURCE_CODE = "bp.log.info('source')";
+
+    @Test
+    public void read_syncSnapshotWithinMaxSize() throws IOException {
+        SyncSnapshot syncSnapshot = BinarySyncSnapshotFormat.read(new ByteArrayInputStream(export(1024)), 1024);
+
+        assertEquals(SOURCE_CODE, syncSnapshot.getSourceCode());
+        assertArrayEquals(new byte[1024], syncSnapshot.getSyncSnapshot());
+    }
+
+    @Test
+    public void read_rejectsSyncSnapshotOverMaxSize() throws IOException {
+        byte[] export = export(4 * 1024 * 1024);
+        assertTrue("zeros compress to a small export", export.length < 64 * 1024);
+
+        try {
+            BinarySyncSnapshotFormat.read(new ByteArrayInputStream(export), 1024 * 1024);
+            fail("expected the sync snapshot to be over the max size");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("larger than"));
+        }
+    }
+
+    private static byte[] export(int syncSnapshotBytes) throws IOException {
+        ByteArrayOutputStream export = new ByteArrayOutputStream();
+        GZIPOutputStream content = BinarySyncSnapshotFormat.startContent(export, BinarySyncSnapshotFormat.MAGIC, BinarySyncSnapshotFormat.VERSION);
+        BinarySyncSnapshotFormat.writeSourceCode(content, SOURCE_CODE);
+        content.write(new byte[syncSnapshotBytes]);
+        content.finish();
+        return export.toByteArray();
+    }
+}